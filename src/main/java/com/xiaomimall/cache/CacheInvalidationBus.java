@@ -0,0 +1,69 @@
+package com.xiaomimall.cache;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 本地缓存失效广播
+ * 任一节点删除缓存后通过Redis Pub/Sub通知所有节点清除本地（一级）缓存。
+ * 消息格式：缓存名|键，键为空表示清空整个缓存。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CacheInvalidationBus implements MessageListener {
+
+    private static final String CHANNEL = "cache:invalidate";
+    private static final String SEPARATOR = "|";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    // 缓存名 -> 本地失效回调（参数为键，null表示全部）
+    private final Map<String, Consumer<String>> listeners = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    public void register(String cacheName, Consumer<String> localEvictor) {
+        listeners.put(cacheName, localEvictor);
+    }
+
+    // 广播失效，key为null表示清空整个缓存
+    public void publish(String cacheName, String key) {
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, cacheName + SEPARATOR + (key == null ? "" : key));
+        } catch (Exception e) {
+            // 广播失败时其他节点依赖本地缓存过期时间收敛
+            log.warn("缓存失效广播失败: cache={}, key={}", cacheName, key, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int index = body.indexOf(SEPARATOR);
+        if (index < 0) {
+            return;
+        }
+        Consumer<String> evictor = listeners.get(body.substring(0, index));
+        if (evictor != null) {
+            String key = body.substring(index + 1);
+            evictor.accept(key.isEmpty() ? null : key);
+        }
+    }
+}
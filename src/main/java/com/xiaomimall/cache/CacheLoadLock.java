@@ -0,0 +1,44 @@
+package com.xiaomimall.cache;
+
+import com.xiaomimall.redis.RedisScriptRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+
+/**
+ * 缓存加载锁（Redis SET NX PX）
+ * 热点键过期时各节点只有一个加载者回源；Redis不可用时视为加锁成功，降级为各节点各自加载。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CacheLoadLock {
+
+    // Lua脚本（resources/lua）：只有持有者才能释放
+    private static final String RELEASE_SCRIPT = "lease_release";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisScriptRegistry redisScriptRegistry;
+
+    public boolean tryLock(String lockKey, String owner, Duration ttl) {
+        try {
+            return Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(lockKey, owner, ttl));
+        } catch (Exception e) {
+            log.warn("获取缓存加载锁失败，直接加载: key={}", lockKey, e);
+            return true;
+        }
+    }
+
+    public void unlock(String lockKey, String owner) {
+        try {
+            redisScriptRegistry.execute(RELEASE_SCRIPT, Collections.singletonList(lockKey), owner);
+        } catch (Exception e) {
+            // 锁到期后自动释放
+            log.debug("释放缓存加载锁失败: key={}", lockKey, e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.xiaomimall.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaomimall.dto.OrderDTO;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Supplier;
+
+/**
+ * 订单详情缓存
+ * 按订单ID缓存组装好的OrderDTO（连同所属用户ID，读取时校验归属），
+ * 订单状态每次变化都删除，支付后客户端轮询详情不再每次查三张表。
+ * 事务提交前开始的加载可能读到旧数据、并在提交后的删除之后才回填，因此提交后再延迟删除一次。
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderDetailCache {
+
+    public static final String CACHE_NAME = "orderDetail";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final TwoLevelCacheManager cacheManager;
+    private final TaskScheduler taskScheduler;
+
+    @Value("${order.detail-cache.local-max-size:10000}")// 本地缓存的订单数上限
+    private long localMaxSize;
+
+    @Value("${order.detail-cache.local-ttl-seconds:30}")// 本地缓存过期时间（秒）
+    private long localTtlSeconds;
+
+    @Value("${order.detail-cache.redis-ttl-seconds:600}")// Redis缓存过期时间（秒）
+    private long redisTtlSeconds;
+
+    @Value("${order.detail-cache.delayed-evict-ms:1000}")// 提交后延迟再次删除的时间，需大于一次详情加载耗时（毫秒）
+    private long delayedEvictMillis;
+
+    private TwoLevelCache<Entry> cache;
+
+    /**
+     * 缓存条目：订单详情及其所属用户
+     */
+    public record Entry(Long userId, OrderDTO order) {
+    }
+
+    @PostConstruct
+    public void init() {
+        cache = new TwoLevelCache<>(CACHE_NAME, localMaxSize, Duration.ofSeconds(localTtlSeconds),
+                Duration.ofSeconds(redisTtlSeconds), Entry.class, stringRedisTemplate, objectMapper, cacheInvalidationBus);
+        cacheManager.register(cache);
+    }
+
+    public Entry get(Long orderId, Supplier<Entry> loader) {
+        return cache.get(orderId.toString(), loader);
+    }
+
+    public void evict(Long orderId) {
+        String key = orderId.toString();
+        cache.evict(key);
+        afterCommit(() -> taskScheduler.schedule(() -> cache.evict(key),
+                Instant.now().plusMillis(delayedEvictMillis)));
+    }
+
+    // 当前事务提交后执行，无事务时立即执行
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,28 @@
+package com.xiaomimall.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+/**
+ * 商品详情缓存失效
+ * products缓存中的商品详情带有库存与销量，库存扣减、归还、结算和销量累加后按商品清除；
+ * 在事务中调用时提交后会再清除一次（见TwoLevelCache.evict），避免提交前被并发读回填旧值。
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductCacheEvictor {
+
+    private final CacheManager cacheManager;
+
+    public void evict(Collection<Long> productIds) {
+        Cache cache = cacheManager.getCache("products");
+        if (cache == null) {
+            return;
+        }
+        productIds.forEach(cache::evict);
+    }
+}
@@ -0,0 +1,58 @@
+package com.xiaomimall.cache;
+
+import com.xiaomimall.dto.ProductQueryDTO;
+import org.springframework.util.DigestUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * 商品搜索缓存键
+ * 把查询条件规范化后拼成固定顺序的字符串再取MD5，语义相同的查询命中同一个键：
+ * 关键词去首尾空白并转小写（商品表排序规则不区分大小写），空关键词视为无关键词；
+ * 价格去掉末尾的0；排序只有SQL能识别的组合才保留，其余都视为默认排序；页码、每页数量取默认值；
+ * 传入游标时页码不参与查询，键中以游标代替页码。
+ */
+public final class ProductSearchKeyGenerator {
+
+    private ProductSearchKeyGenerator() {
+    }
+
+    public static String keyOf(ProductQueryDTO query) {
+        String canonical = "kw=" + normalizeKeyword(query.getKeyword())
+                + "&cat=" + nullToEmpty(query.getCategoryId())
+                + "&min=" + normalizePrice(query.getMinPrice())
+                + "&max=" + normalizePrice(query.getMaxPrice())
+                + "&st=" + nullToEmpty(query.getStatus())
+                + "&sort=" + normalizeSort(query.getSortBy(), query.getSortOrder())
+                + (query.getCursor() != null && !query.getCursor().isEmpty()
+                        ? "&c=" + query.getCursor()
+                        : "&p=" + (query.getPageNum() == null || query.getPageNum() < 1 ? 1 : query.getPageNum()))
+                + "&ps=" + (query.getPageSize() == null ? 10 : query.getPageSize());
+        return DigestUtils.md5DigestAsHex(canonical.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // 与查询实际使用的关键词保持一致（ProductServiceImpl同样会去除首尾空白）
+    public static String normalizeKeyword(String keyword) {
+        if (keyword == null) {
+            return "";
+        }
+        return keyword.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String normalizePrice(BigDecimal price) {
+        return price == null ? "" : price.stripTrailingZeros().toPlainString();
+    }
+
+    // 与ProductMapper中ORDER BY的判断保持一致（区分大小写）
+    private static String normalizeSort(String sortBy, String sortOrder) {
+        boolean knownField = "price".equals(sortBy) || "sales".equals(sortBy);
+        boolean knownOrder = "asc".equals(sortOrder) || "desc".equals(sortOrder);
+        return knownField && knownOrder ? sortBy + "_" + sortOrder : "";
+    }
+
+    private static String nullToEmpty(Object value) {
+        return value == null ? "" : value.toString();
+    }
+}
@@ -0,0 +1,444 @@
+package com.xiaomimall.cache;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 二级缓存
+ * 一级为本节点Caffeine缓存，二级为Redis（按声明类型序列化的JSON，不带类型信息、省略null字段），
+ * 都未命中时调用加载函数并回填两级。二级缓存时长为0时只使用一级缓存。
+ * 设置空值缓存时长后，加载结果为null也会短暂缓存，不存在的键不会反复回源（只对get(key, loader)生效）。
+ * 删除时同时清除两级并广播，其他节点收到后清除各自的一级缓存。
+ * Redis异常只降级为直接加载，不影响业务。
+ *
+ * 防击穿：同一节点同一个键同时只有一个加载在执行，其余请求等待它的结果；
+ * 开启分布式锁后，各节点的加载者再通过Redis锁竞争，未拿到锁的节点等待二级缓存被回填。
+ * 二级缓存条目记录过期时间，读取时按XFetch算法以一定概率提前重新加载，越接近过期概率越高，
+ * 热点键在过期前就已被某个请求刷新，过期时刻不会集中回源。
+ */
+@Slf4j
+public class TwoLevelCache<V> {
+
+    private static final String KEY_PREFIX = "cache:";
+    private static final int CLEAR_BATCH = 500;
+    // 加载锁键不在缓存键空间内，clear()按 cache:{name}:* 扫描删除时不会误删其他节点持有的锁
+    private static final String LOCK_PREFIX = "cache-lock:";
+    private static final long LOCK_POLL_MILLIS = 20;
+
+    // 一级缓存中的空值标记
+    private static final Object NULL_VALUE = new Object();
+
+    private final String name;
+    private final Cache<String, Object> local;
+    private final StringRedisTemplate redis;
+    private final ObjectMapper objectMapper;
+    private final JavaType envelopeType;
+    private final Duration localTtl;
+    private final Duration redisTtl;
+    private final CacheInvalidationBus invalidationBus;
+
+    // 正在执行的加载（键 -> 结果），同一节点同一个键只加载一次
+    private final Map<String, CompletableFuture<V>> inflight = new ConcurrentHashMap<>();
+
+    // 跨节点加载锁（为空表示不启用）
+    private CacheLoadLock loadLock;
+    private Duration lockTtl = Duration.ZERO;
+    private Duration lockWait = Duration.ZERO;
+
+    // 提前刷新系数，越大越早刷新，0表示不提前刷新
+    private double earlyRefreshBeta = 1.0;
+
+    // 空值缓存时长，0表示不缓存空值
+    private Duration nullTtl = Duration.ZERO;
+
+    // 命中与加载统计
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder remoteHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder coalescedLoads = new LongAdder();
+    private final LongAdder earlyRefreshes = new LongAdder();
+    private final LongAdder lockWaitHits = new LongAdder();
+    private final LongAdder nullHits = new LongAdder();
+
+    public TwoLevelCache(String name, long localMaxSize, Duration localTtl, Duration redisTtl, Class<V> valueType,
+                         StringRedisTemplate redis, ObjectMapper objectMapper, CacheInvalidationBus invalidationBus) {
+        this(name, localMaxSize, localTtl, redisTtl, objectMapper.constructType(valueType),
+                redis, objectMapper, invalidationBus);
+    }
+
+    public TwoLevelCache(String name, long localMaxSize, Duration localTtl, Duration redisTtl, JavaType valueType,
+                         StringRedisTemplate redis, ObjectMapper objectMapper, CacheInvalidationBus invalidationBus) {
+        this.name = name;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfter(Expiry.creating((String key, Object value) ->
+                        value == NULL_VALUE && nullTtl.compareTo(localTtl) < 0 ? nullTtl : localTtl))
+                .build();
+        this.redis = redis;
+        this.objectMapper = objectMapper.copy().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        this.envelopeType = this.objectMapper.getTypeFactory().constructParametricType(Envelope.class, valueType);
+        this.localTtl = localTtl;
+        this.redisTtl = redisTtl;
+        this.invalidationBus = invalidationBus;
+        invalidationBus.register(name, this::evictLocal);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // 启用跨节点加载锁：拿不到锁的节点最多等待lockWait，超时后自行加载
+    public void enableLoadLock(CacheLoadLock loadLock, Duration lockTtl, Duration lockWait) {
+        this.loadLock = loadLock;
+        this.lockTtl = lockTtl;
+        this.lockWait = lockWait;
+    }
+
+    public void setEarlyRefreshBeta(double earlyRefreshBeta) {
+        this.earlyRefreshBeta = earlyRefreshBeta;
+    }
+
+    public void setNullTtl(Duration nullTtl) {
+        this.nullTtl = nullTtl;
+    }
+
+    // 依次查一级、二级缓存，都未命中时加载并回填；加载结果为null时，设置了空值缓存时长则按该时长缓存空值标记，否则不缓存
+    public V get(String key, Supplier<V> loader) {
+        Object cached = local.getIfPresent(key);
+        if (cached != null) {
+            localHits.increment();
+            return unwrapLocal(cached);
+        }
+        Envelope<V> entry = getRemote(key);
+        if (entry == null) {
+            misses.increment();
+            return loadShared(key, loader);
+        }
+        remoteHits.increment();
+        if (entry.v() == null) {
+            nullHits.increment();
+            local.put(key, NULL_VALUE);
+            return null;
+        }
+        if (!shouldRefreshEarly(key, entry)) {
+            local.put(key, entry.v());
+            return entry.v();
+        }
+        // 提前刷新：由本请求重新加载，失败时继续使用未过期的旧值
+        earlyRefreshes.increment();
+        try {
+            V fresh = loadShared(key, loader);
+            if (fresh == null) {
+                // 数据已不存在（如商品已删除），不再返回旧值：清除旧条目，开启空值缓存时加载已写入空值
+                if (nullTtl.isZero()) {
+                    evictNow(key);
+                } else {
+                    invalidationBus.publish(name, key);
+                }
+            }
+            return fresh;
+        } catch (RuntimeException e) {
+            log.warn("提前刷新缓存失败，使用旧值: cache={}, key={}", name, key, e);
+            local.put(key, entry.v());
+            return entry.v();
+        }
+    }
+
+    // 只查缓存，二级命中时回填一级；命中提前刷新时视为未命中，由调用方重新加载并写入
+    public V getIfPresent(String key) {
+        Object cached = local.getIfPresent(key);
+        if (cached != null) {
+            localHits.increment();
+            return unwrapLocal(cached);
+        }
+        Envelope<V> entry = getRemote(key);
+        if (entry == null || entry.v() == null) {
+            misses.increment();
+            return null;
+        }
+        remoteHits.increment();
+        if (shouldRefreshEarly(key, entry)) {
+            earlyRefreshes.increment();
+            return null;
+        }
+        local.put(key, entry.v());
+        return entry.v();
+    }
+
+    // 写入两级缓存
+    public void put(String key, V value) {
+        put(key, value, 0);
+    }
+
+    // 清除两级缓存并广播；在事务中调用时，提交后再清除一次，避免提交前被并发读回填旧值
+    public void evict(String key) {
+        evictNow(key);
+        afterCommit(() -> evictNow(key));
+    }
+
+    // 清空整个缓存（SCAN分批删除二级缓存键），事务中调用时提交后再清空一次
+    public void clear() {
+        clearNow();
+        afterCommit(this::clearNow);
+    }
+
+    // 收到广播时只清除本地缓存
+    void evictLocal(String key) {
+        if (key == null) {
+            local.invalidateAll();
+        } else {
+            local.invalidate(key);
+        }
+    }
+
+    // 缓存统计
+    public Map<String, Object> getStats() {
+        long localHitCount = localHits.sum();
+        long remoteHitCount = remoteHits.sum();
+        long missCount = misses.sum();
+        long loadCount = loads.sum();
+        long requests = localHitCount + remoteHitCount + missCount;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("localSize", local.estimatedSize());
+        stats.put("localHits", localHitCount);
+        stats.put("remoteHits", remoteHitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", requests == 0 ? 0 : (double) (localHitCount + remoteHitCount) / requests);
+        stats.put("loads", loadCount);
+        stats.put("loadFailures", loadFailures.sum());
+        stats.put("avgLoadMicros", loadCount == 0 ? 0 : loadNanos.sum() / loadCount / 1000);
+        stats.put("evictions", evictions.sum());
+        stats.put("coalescedLoads", coalescedLoads.sum());
+        stats.put("earlyRefreshes", earlyRefreshes.sum());
+        stats.put("lockWaitHits", lockWaitHits.sum());
+        stats.put("nullHits", nullHits.sum());
+        stats.put("inflightLoads", inflight.size());
+        return stats;
+    }
+
+    // 同一节点同一个键只有一个请求执行加载，其余请求等待它的结果（包括异常）
+    private V loadShared(String key, Supplier<V> loader) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> running = inflight.putIfAbsent(key, future);
+        if (running != null) {
+            coalescedLoads.increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        try {
+            V value = loadWithLock(key, loader);
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(key, future);
+        }
+    }
+
+    // 启用加载锁时只有拿到锁的节点回源，其余节点轮询二级缓存，等待超时后自行加载
+    private V loadWithLock(String key, Supplier<V> loader) {
+        if (loadLock == null || !isRemoteEnabled()) {
+            return loadAndPut(key, loader);
+        }
+        String lockKey = LOCK_PREFIX + name + ":" + key;
+        String owner = UUID.randomUUID().toString();
+        if (loadLock.tryLock(lockKey, owner, lockTtl)) {
+            try {
+                return loadAndPut(key, loader);
+            } finally {
+                loadLock.unlock(lockKey, owner);
+            }
+        }
+        long deadline = System.currentTimeMillis() + lockWait.toMillis();
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(LOCK_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            Envelope<V> entry = getRemote(key);
+            if (entry != null) {
+                lockWaitHits.increment();
+                local.put(key, entry.v() == null ? NULL_VALUE : entry.v());
+                return entry.v();
+            }
+        }
+        return loadAndPut(key, loader);
+    }
+
+    private V loadAndPut(String key, Supplier<V> loader) {
+        long start = System.nanoTime();
+        V value;
+        try {
+            value = loader.get();
+        } catch (RuntimeException e) {
+            loadFailures.increment();
+            throw e;
+        } finally {
+            loads.increment();
+            loadNanos.add(System.nanoTime() - start);
+        }
+        if (value != null) {
+            put(key, value, (System.nanoTime() - start) / 1_000_000);
+        } else if (!nullTtl.isZero()) {
+            putRemote(key, null, 0, nullTtl);
+            local.put(key, NULL_VALUE);
+        }
+        return value;
+    }
+
+    private void put(String key, V value, long loadMillis) {
+        putRemote(key, value, loadMillis, redisTtl);
+        local.put(key, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V unwrapLocal(Object cached) {
+        if (cached == NULL_VALUE) {
+            nullHits.increment();
+            return null;
+        }
+        return (V) cached;
+    }
+
+    /**
+     * XFetch：now - window * beta * ln(random) >= 过期时间 时提前刷新。
+     * window取加载耗时与本地缓存时长的较大值：每个节点每个本地缓存周期才读一次二级缓存，
+     * 窗口至少覆盖一个周期，提前刷新才有机会发生。已有加载在执行时不再重复触发。
+     */
+    private boolean shouldRefreshEarly(String key, Envelope<V> entry) {
+        if (earlyRefreshBeta <= 0 || inflight.containsKey(key)) {
+            return false;
+        }
+        long window = Math.max(entry.d(), localTtl.toMillis());
+        double gap = -window * earlyRefreshBeta * Math.log(ThreadLocalRandom.current().nextDouble());
+        return System.currentTimeMillis() + gap >= entry.e();
+    }
+
+    private void evictNow(String key) {
+        evictions.increment();
+        local.invalidate(key);
+        if (isRemoteEnabled()) {
+            try {
+                redis.delete(redisKey(key));
+            } catch (Exception e) {
+                log.warn("删除二级缓存失败: cache={}, key={}", name, key, e);
+            }
+        }
+        invalidationBus.publish(name, key);
+    }
+
+    private void clearNow() {
+        evictions.increment();
+        local.invalidateAll();
+        if (isRemoteEnabled()) {
+            ScanOptions options = ScanOptions.scanOptions().match(KEY_PREFIX + name + ":*").count(CLEAR_BATCH).build();
+            try (Cursor<String> cursor = redis.scan(options)) {
+                List<String> batch = new ArrayList<>(CLEAR_BATCH);
+                while (cursor.hasNext()) {
+                    batch.add(cursor.next());
+                    if (batch.size() == CLEAR_BATCH) {
+                        redis.unlink(batch);
+                        batch.clear();
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    redis.unlink(batch);
+                }
+            } catch (Exception e) {
+                log.warn("清空二级缓存失败: cache={}", name, e);
+            }
+        }
+        invalidationBus.publish(name, null);
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    private boolean isRemoteEnabled() {
+        return !redisTtl.isZero();
+    }
+
+    private Envelope<V> getRemote(String key) {
+        if (!isRemoteEnabled()) {
+            return null;
+        }
+        try {
+            String json = redis.opsForValue().get(redisKey(key));
+            if (json == null) {
+                return null;
+            }
+            // v为空表示空值缓存
+            return objectMapper.readValue(json, envelopeType);
+        } catch (Exception e) {
+            log.warn("读取二级缓存失败，直接加载: cache={}, key={}", name, key, e);
+            return null;
+        }
+    }
+
+    private void putRemote(String key, V value, long loadMillis, Duration ttl) {
+        if (!isRemoteEnabled()) {
+            return;
+        }
+        try {
+            Envelope<V> entry = new Envelope<>(value, System.currentTimeMillis() + ttl.toMillis(), loadMillis);
+            redis.opsForValue().set(redisKey(key), objectMapper.writeValueAsString(entry), ttl);
+        } catch (Exception e) {
+            log.warn("写入二级缓存失败: cache={}, key={}", name, key, e);
+        }
+    }
+
+    private String redisKey(String key) {
+        return KEY_PREFIX + name + ":" + key;
+    }
+
+    /**
+     * 二级缓存条目：v值（为空表示空值缓存），e过期时间（毫秒时间戳），d加载耗时（毫秒）
+     */
+    record Envelope<V>(V v, long e, long d) {
+    }
+}
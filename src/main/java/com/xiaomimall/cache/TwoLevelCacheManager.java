@@ -0,0 +1,48 @@
+package com.xiaomimall.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 二级缓存管理器
+ * 只提供在CacheConfig中声明过的缓存（每个缓存有固定的值类型），未声明的缓存名直接报错；
+ * 业务代码直接使用的TwoLevelCache（如订单详情）也在这里登记，统一输出统计。
+ */
+public class TwoLevelCacheManager implements CacheManager {
+
+    private final Map<String, TwoLevelSpringCache> caches = new ConcurrentHashMap<>();
+    private final Map<String, TwoLevelCache<?>> allCaches = new ConcurrentHashMap<>();
+
+    public void addCache(TwoLevelCache<Object> cache) {
+        caches.put(cache.getName(), new TwoLevelSpringCache(cache));
+        register(cache);
+    }
+
+    // 登记不经过Spring Cache注解使用的缓存，只用于统计
+    public void register(TwoLevelCache<?> cache) {
+        allCaches.put(cache.getName(), cache);
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.get(name);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    // 各缓存的命中、加载统计
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new TreeMap<>();
+        allCaches.forEach((name, cache) -> stats.put(name, cache.getStats()));
+        return stats;
+    }
+}
@@ -0,0 +1,38 @@
+package com.xiaomimall.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 二级缓存配置（cache.*）
+ * defaults为默认规格，specs按缓存名覆盖；redis-ttl为0表示只使用本地缓存
+ */
+@Data
+@ConfigurationProperties(prefix = "cache")
+public class TwoLevelCacheProperties {
+
+    private Spec defaults = new Spec();
+
+    private Map<String, Spec> specs = new HashMap<>();
+
+    public Spec specOf(String cacheName) {
+        Spec spec = specs.get(cacheName);
+        return spec != null ? spec : defaults;
+    }
+
+    @Data
+    public static class Spec {
+        private long localMaxSize = 1000;                  // 本地缓存条目上限
+        private Duration localTtl = Duration.ofSeconds(60); // 本地缓存过期时间
+        private Duration redisTtl = Duration.ofMinutes(10); // Redis缓存过期时间
+        private Duration nullTtl = Duration.ZERO;           // 空值缓存时长，0表示不缓存空值
+        private double earlyRefreshBeta = 1.0;              // 提前刷新系数，0表示不提前刷新
+        private boolean distributedLock = false;            // 是否启用跨节点加载锁（热点缓存）
+        private Duration lockTtl = Duration.ofSeconds(5);   // 加载锁时长，需大于一次加载耗时
+        private Duration lockWait = Duration.ofSeconds(1);  // 未拿到锁时等待其他节点回填的最长时间
+    }
+}
@@ -0,0 +1,64 @@
+package com.xiaomimall.cache;
+
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Spring Cache适配器
+ * 让@Cacheable/@CacheEvict走TwoLevelCache，缓存键统一转为字符串，不缓存null。
+ */
+public class TwoLevelSpringCache extends AbstractValueAdaptingCache {
+
+    private final TwoLevelCache<Object> delegate;
+
+    public TwoLevelSpringCache(TwoLevelCache<Object> delegate) {
+        super(false);
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public TwoLevelCache<Object> getNativeCache() {
+        return delegate;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        return delegate.getIfPresent(key.toString());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return (T) delegate.get(key.toString(), () -> {
+            try {
+                return valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+        });
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            return;
+        }
+        delegate.put(key.toString(), value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(key.toString());
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+}
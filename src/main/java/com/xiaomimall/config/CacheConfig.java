@@ -0,0 +1,61 @@
+package com.xiaomimall.config;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.xiaomimall.cache.CacheInvalidationBus;
+import com.xiaomimall.cache.CacheLoadLock;
+import com.xiaomimall.cache.TwoLevelCache;
+import com.xiaomimall.cache.TwoLevelCacheManager;
+import com.xiaomimall.cache.TwoLevelCacheProperties;
+import com.xiaomimall.dto.BannerDTO;
+import com.xiaomimall.dto.CategoryDTO;
+import com.xiaomimall.dto.PageResponse;
+import com.xiaomimall.dto.ProductDTO;
+import com.xiaomimall.entity.PaymentConfig;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spring Cache配置
+ * 注解缓存统一使用二级缓存（Caffeine + Redis），每个缓存名声明值类型，
+ * Redis中按该类型存放不带类型信息的JSON；大小与过期时间见 cache.* 配置。
+ */
+@Configuration
+@EnableConfigurationProperties(TwoLevelCacheProperties.class)
+public class CacheConfig {
+
+    @Bean
+    public TwoLevelCacheManager cacheManager(TwoLevelCacheProperties properties, StringRedisTemplate stringRedisTemplate,
+                                             ObjectMapper objectMapper, CacheInvalidationBus cacheInvalidationBus,
+                                             CacheLoadLock cacheLoadLock) {
+        TypeFactory types = objectMapper.getTypeFactory();
+        Map<String, JavaType> valueTypes = new LinkedHashMap<>();
+        valueTypes.put("products", types.constructType(ProductDTO.class));
+        // 搜索结果只缓存商品ID，详情取自products
+        valueTypes.put("productSearch", types.constructParametricType(PageResponse.class, Long.class));
+        valueTypes.put("categories", types.constructCollectionType(List.class, CategoryDTO.class));
+        valueTypes.put("banners", types.constructCollectionType(List.class, BannerDTO.class));
+        valueTypes.put("paymentConfig", types.constructType(PaymentConfig.class));
+
+        TwoLevelCacheManager cacheManager = new TwoLevelCacheManager();
+        valueTypes.forEach((name, type) -> {
+            TwoLevelCacheProperties.Spec spec = properties.specOf(name);
+            TwoLevelCache<Object> cache = new TwoLevelCache<>(name, spec.getLocalMaxSize(), spec.getLocalTtl(),
+                    spec.getRedisTtl(), type, stringRedisTemplate, objectMapper, cacheInvalidationBus);
+            cache.setEarlyRefreshBeta(spec.getEarlyRefreshBeta());
+            cache.setNullTtl(spec.getNullTtl());
+            if (spec.isDistributedLock()) {
+                cache.enableLoadLock(cacheLoadLock, spec.getLockTtl(), spec.getLockWait());
+            }
+            cacheManager.addCache(cache);
+        });
+        return cacheManager;
+    }
+}
@@ -0,0 +1,136 @@
+package com.xiaomimall.config;
+
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RabbitMQ配置
+ * 声明秒杀异步下单使用的交换机、队列以及批量消费容器，以及订单事件的分区队列
+ */
+@Configuration
+public class RabbitMQConfig {
+
+    public static final String SECKILL_EXCHANGE = "seckill.exchange";
+    public static final String SECKILL_ORDER_QUEUE = "seckill.order.queue";
+    public static final String SECKILL_ORDER_ROUTING_KEY = "seckill.order";
+    // 落库暂时失败的消息在重试队列中延迟后回到下单队列，重试耗尽后转入死信队列
+    public static final String SECKILL_ORDER_RETRY_QUEUE = "seckill.order.retry.queue";
+    public static final String SECKILL_ORDER_DEAD_LETTER_QUEUE = "seckill.order.dlq";
+
+    // 订单事件：按订单ID分区，分区队列开启单活跃消费者（x-single-active-consumer），
+    // 多个节点都注册监听时只有一个消费者在收消息，保证同一订单的事件有序
+    public static final String ORDER_EVENT_EXCHANGE = "order.event.exchange";
+    public static final String ORDER_EVENT_QUEUE_PREFIX = "order.event.queue.";
+    public static final String ORDER_EVENT_ROUTING_KEY_PREFIX = "order.event.";
+    // 处理失败的事件按分区进入重试队列，过期后回到原分区；重试耗尽进入死信队列
+    public static final String ORDER_EVENT_RETRY_QUEUE_PREFIX = "order.event.retry.";
+    public static final String ORDER_EVENT_DEAD_LETTER_QUEUE = "order.event.dlq";
+
+    @Value("${seckill.async.batch-size:200}")// 每批最多消费的消息数
+    private int batchSize;
+
+    @Value("${seckill.async.batch-receive-timeout:100}")// 凑批等待时间（毫秒）
+    private long batchReceiveTimeout;
+
+    @Value("${order.outbox.partitions:4}")// 订单事件分区数（队列数）
+    private int orderEventPartitions;
+
+    @Bean
+    public DirectExchange seckillExchange() {
+        return new DirectExchange(SECKILL_EXCHANGE, true, false);
+    }
+
+    @Bean
+    public Queue seckillOrderQueue() {
+        return new Queue(SECKILL_ORDER_QUEUE, true);
+    }
+
+    @Bean
+    public Binding seckillOrderBinding(Queue seckillOrderQueue, DirectExchange seckillExchange) {
+        return BindingBuilder.bind(seckillOrderQueue).to(seckillExchange).with(SECKILL_ORDER_ROUTING_KEY);
+    }
+
+    @Bean
+    public Queue seckillOrderRetryQueue() {
+        return QueueBuilder.durable(SECKILL_ORDER_RETRY_QUEUE)
+                .deadLetterExchange(SECKILL_EXCHANGE)
+                .deadLetterRoutingKey(SECKILL_ORDER_ROUTING_KEY)
+                .build();
+    }
+
+    @Bean
+    public Queue seckillOrderDeadLetterQueue() {
+        return new Queue(SECKILL_ORDER_DEAD_LETTER_QUEUE, true);
+    }
+
+    // 订单事件交换机与分区队列
+    @Bean
+    public Declarables orderEventDeclarables() {
+        DirectExchange exchange = new DirectExchange(ORDER_EVENT_EXCHANGE, true, false);
+        List<Declarable> declarables = new ArrayList<>();
+        declarables.add(exchange);
+        for (int i = 0; i < orderEventPartitions; i++) {
+            // 已存在的不带该参数的队列需先删除再由应用重新声明
+            Queue queue = QueueBuilder.durable(orderEventQueue(i)).singleActiveConsumer().build();
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(exchange).with(orderEventRoutingKey(i)));
+            declarables.add(QueueBuilder.durable(orderEventRetryQueue(i))
+                    .deadLetterExchange(ORDER_EVENT_EXCHANGE)
+                    .deadLetterRoutingKey(orderEventRoutingKey(i))
+                    .build());
+        }
+        declarables.add(new Queue(ORDER_EVENT_DEAD_LETTER_QUEUE, true));
+        return new Declarables(declarables);
+    }
+
+    public static String orderEventQueue(int partition) {
+        return ORDER_EVENT_QUEUE_PREFIX + partition;
+    }
+
+    public static String orderEventRoutingKey(int partition) {
+        return ORDER_EVENT_ROUTING_KEY_PREFIX + partition;
+    }
+
+    public static String orderEventRetryQueue(int partition) {
+        return ORDER_EVENT_RETRY_QUEUE_PREFIX + partition;
+    }
+
+    // 使用JSON传输消息，RabbitTemplate与监听容器共用
+    @Bean
+    public MessageConverter rabbitMessageConverter() {
+        return new Jackson2JsonMessageConverter();
+    }
+
+    // 秒杀订单批量消费容器：一次拉取一批消息，合并写库
+    @Bean
+    public SimpleRabbitListenerContainerFactory seckillBatchContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            MessageConverter rabbitMessageConverter) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setMessageConverter(rabbitMessageConverter);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(batchReceiveTimeout);
+        factory.setPrefetchCount(batchSize * 2);
+        return factory;
+    }
+}
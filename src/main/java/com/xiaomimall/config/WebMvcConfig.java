@@ -1,9 +1,11 @@
 // 文件路径: com/xiaomimall/config/WebMvcConfig.java
 package com.xiaomimall.config;
 
+import com.xiaomimall.interceptor.SeckillRateLimitInterceptor;
 import com.xiaomimall.resolver.CurrentUserArgumentResolver;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 
@@ -13,13 +15,22 @@ import java.util.List;
 public class WebMvcConfig implements WebMvcConfigurer {
 
     private final CurrentUserArgumentResolver currentUserResolver;
+    private final SeckillRateLimitInterceptor seckillRateLimitInterceptor;
 
-    public WebMvcConfig(CurrentUserArgumentResolver currentUserResolver) {
+    public WebMvcConfig(CurrentUserArgumentResolver currentUserResolver,
+                        SeckillRateLimitInterceptor seckillRateLimitInterceptor) {
         this.currentUserResolver = currentUserResolver;
+        this.seckillRateLimitInterceptor = seckillRateLimitInterceptor;
     }
 
     @Override
     public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
         resolvers.add(currentUserResolver);
     }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // 秒杀下单接口限流
+        registry.addInterceptor(seckillRateLimitInterceptor).addPathPatterns("/api/seckill/*");
+    }
 }
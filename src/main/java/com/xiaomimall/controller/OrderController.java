@@ -1,17 +1,32 @@
 package com.xiaomimall.controller;
 
 import com.xiaomimall.dto.ApiResponse;
+import com.xiaomimall.dto.CursorPageResponse;
 import com.xiaomimall.dto.OrderCreateDTO;
 import com.xiaomimall.dto.OrderDTO;
+import com.xiaomimall.dto.OrderExportFormat;
+import com.xiaomimall.dto.OrderSummaryDTO;
+import com.xiaomimall.entity.OrderStatus;
 import com.xiaomimall.entity.User;
 import com.xiaomimall.security.CurrentUser;
+import com.xiaomimall.service.OrderExporter;
 import com.xiaomimall.service.OrderService;
+import com.xiaomimall.service.OrderSubmitTokenService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 @RestController
 @RequestMapping("/orders")
@@ -19,6 +34,16 @@ import java.util.List;
 public class OrderController {
     
     private final OrderService orderService;
+    private final OrderSubmitTokenService orderSubmitTokenService;
+    private final OrderExporter orderExporter;
+
+    private static final DateTimeFormatter EXPORT_FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMddHHmm");
+
+    // 获取一次性下单令牌，提交订单时携带，防止重复提交
+    @PostMapping("/submit-token")
+    public ResponseEntity<ApiResponse<String>> issueSubmitToken(@CurrentUser User user) {
+        return ResponseEntity.ok(ApiResponse.success(orderSubmitTokenService.issue(user.getId())));
+    }
 
     @PostMapping
     public ResponseEntity<ApiResponse<OrderDTO>> createOrder(
@@ -42,6 +67,16 @@ public class OrderController {
         return ResponseEntity.ok(ApiResponse.success(orders));
     }
 
+    // 游标分页获取订单历史，首页不传cursor，之后传上一页返回的nextCursor
+    @GetMapping("/history")
+    public ResponseEntity<ApiResponse<CursorPageResponse<OrderSummaryDTO>>> getUserOrderPage(
+            @CurrentUser User user,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") @Min(1) @Max(100) Integer pageSize) {
+        CursorPageResponse<OrderSummaryDTO> page = orderService.getUserOrderPage(user.getId(), cursor, pageSize);
+        return ResponseEntity.ok(ApiResponse.success(page));
+    }
+
     @PostMapping("/{orderId}/cancel")
     public ResponseEntity<ApiResponse<Void>> cancelOrder(
             @CurrentUser User user,
@@ -58,6 +93,29 @@ public class OrderController {
         return ResponseEntity.ok(ApiResponse.success());
     }
     
+    // 按下单时间范围和状态导出订单明细（CSV / NDJSON），逐行写出，不在内存中汇总
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/export")
+    public void exportOrders(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) Integer status,
+            @RequestParam(defaultValue = "CSV") OrderExportFormat format,
+            HttpServletResponse response) throws IOException {
+        if (!startTime.isBefore(endTime)) {
+            throw new IllegalArgumentException("开始时间必须早于结束时间");
+        }
+        if (status != null) {
+            OrderStatus.fromCode(status);
+        }
+        String filename = "orders-" + startTime.format(EXPORT_FILE_TIME) + "-" + endTime.format(EXPORT_FILE_TIME)
+                + "." + format.getExtension();
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+        orderExporter.export(startTime, endTime, status, format, response.getOutputStream());
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     @PostMapping("/{orderId}/deliver")
     public ResponseEntity<ApiResponse<Void>> deliverOrder(
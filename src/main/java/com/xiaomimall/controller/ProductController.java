@@ -1,5 +1,6 @@
 package com.xiaomimall.controller;
 
+import com.xiaomimall.cache.TwoLevelCacheManager;
 import com.xiaomimall.dto.ApiResponse;
 import com.xiaomimall.dto.PageResponse;
 import com.xiaomimall.dto.ProductDTO;
@@ -16,6 +17,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 商品控制器
@@ -27,6 +29,7 @@ import java.util.List;
 public class ProductController {
     
     private final ProductService productService;
+    private final TwoLevelCacheManager cacheManager;
 
     // 创建商品（需要管理员权限）
     @PostMapping
@@ -46,6 +49,15 @@ public class ProductController {
         return ResponseEntity.ok(ApiResponse.success(updatedProduct));
     }
 
+    // 切换商品库存预占模式（需要管理员权限）
+    @PutMapping("/{id}/stock-cache")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<Void>> updateStockCacheMode(@PathVariable @Positive Long id,
+                                                                  @RequestParam boolean enabled) {
+        productService.updateStockCacheMode(id, enabled);
+        return ResponseEntity.ok(ApiResponse.success());
+    }
+
     // 删除商品（需要管理员权限）
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
@@ -54,6 +66,13 @@ public class ProductController {
         return ResponseEntity.ok(ApiResponse.success());
     }
 
+    // 查看各缓存的命中与加载统计（管理员权限）
+    @GetMapping("/admin/cache/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<Map<String, Map<String, Object>>>> getCacheStats() {
+        return ResponseEntity.ok(ApiResponse.success(cacheManager.getStats()));
+    }
+
     // 获取商品详情（公开接口）
     @GetMapping("/{id}")
     public ResponseEntity<ApiResponse<ProductDTO>> getProductById(@PathVariable @Positive Long id) {
@@ -66,7 +85,7 @@ public class ProductController {
         return ResponseEntity.ok(ApiResponse.success(product));
     }
 
-    // 商品搜索（公开接口）
+    // 商品搜索（公开接口），传入上一页返回的nextCursor时按游标翻页，不传时仍按页码分页
     @GetMapping("/search")
     public ResponseEntity<ApiResponse<PageResponse<ProductDTO>>> searchProducts(
             @RequestParam(required = false) String keyword,
@@ -77,7 +96,8 @@ public class ProductController {
             @RequestParam(required = false) String sortBy,
             @RequestParam(required = false) String sortOrder,
             @RequestParam(defaultValue = "1") Integer pageNum,
-            @RequestParam(defaultValue = "10") @Min(1) @Max(100) Integer pageSize) {
+            @RequestParam(defaultValue = "10") @Min(1) @Max(100) Integer pageSize,
+            @RequestParam(required = false) String cursor) {
 
         ProductQueryDTO queryDTO = new ProductQueryDTO();
         queryDTO.setKeyword(keyword);
@@ -89,6 +109,7 @@ public class ProductController {
         queryDTO.setSortOrder(sortOrder);
         queryDTO.setPageNum(pageNum);
         queryDTO.setPageSize(pageSize);
+        queryDTO.setCursor(cursor);
 
         PageResponse<ProductDTO> response = productService.searchProducts(queryDTO);
         return ResponseEntity.ok(ApiResponse.success(response));
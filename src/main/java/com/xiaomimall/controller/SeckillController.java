@@ -3,10 +3,16 @@ package com.xiaomimall.controller;
 import com.xiaomimall.dto.ApiResponse;
 import com.xiaomimall.dto.SeckillActivityDTO;
 import com.xiaomimall.dto.SeckillResultDTO;
+import com.xiaomimall.dto.StockReconciliationDTO;
+import com.xiaomimall.dto.WaitingRoomStatusDTO;
 import com.xiaomimall.entity.PaymentType;
 import com.xiaomimall.entity.User;
+import com.xiaomimall.redis.RedisScriptRegistry;
 import com.xiaomimall.security.CurrentUser;
+import com.xiaomimall.service.SeckillRateLimiter;
 import com.xiaomimall.service.SeckillService;
+import com.xiaomimall.service.SeckillStockReconciler;
+import com.xiaomimall.service.SeckillWaitingRoom;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import lombok.NonNull;
@@ -16,6 +22,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/seckill")
@@ -23,6 +30,10 @@ import java.util.List;
 public class SeckillController {
     
     private final SeckillService seckillService;
+    private final SeckillRateLimiter seckillRateLimiter;
+    private final SeckillStockReconciler seckillStockReconciler;
+    private final SeckillWaitingRoom seckillWaitingRoom;
+    private final RedisScriptRegistry redisScriptRegistry;
 
     // 执行秒杀
     @PostMapping("/{seckillId}")
@@ -34,6 +45,31 @@ public class SeckillController {
         return ResponseEntity.ok(ApiResponse.success(result));
     }
 
+    // 查询秒杀结果（异步下单时轮询）
+    @GetMapping("/{seckillId}/result")
+    public ResponseEntity<ApiResponse<SeckillResultDTO>> getSeckillResult(
+            @CurrentUser @NonNull User user,
+            @PathVariable Long seckillId) {
+        SeckillResultDTO result = seckillService.getSeckillResult(user.getId(), seckillId);
+        return ResponseEntity.ok(ApiResponse.success(result));
+    }
+
+    // 进入排队，领取排队号
+    @PostMapping("/{seckillId}/queue")
+    public ResponseEntity<ApiResponse<WaitingRoomStatusDTO>> joinQueue(
+            @CurrentUser @NonNull User user,
+            @PathVariable Long seckillId) {
+        return ResponseEntity.ok(ApiResponse.success(seckillWaitingRoom.join(seckillId, user.getId())));
+    }
+
+    // 查询排队状态（放行后再调用秒杀接口）
+    @GetMapping("/{seckillId}/queue")
+    public ResponseEntity<ApiResponse<WaitingRoomStatusDTO>> getQueueStatus(
+            @CurrentUser @NonNull User user,
+            @PathVariable Long seckillId) {
+        return ResponseEntity.ok(ApiResponse.success(seckillWaitingRoom.status(seckillId, user.getId())));
+    }
+
     // 获取当前有效的秒杀活动
     @GetMapping("/active")
     public ResponseEntity<ApiResponse<List<SeckillActivityDTO>>> getActiveSeckills() {
@@ -67,6 +103,34 @@ public class SeckillController {
         return ResponseEntity.ok(ApiResponse.success(result));
     }
 
+    // 查看限流统计（管理员权限）
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/admin/rate-limit/stats")
+    public ResponseEntity<ApiResponse<Map<String, Long>>> getRateLimitStats() {
+        return ResponseEntity.ok(ApiResponse.success(seckillRateLimiter.getStats()));
+    }
+
+    // 查看Lua脚本调用统计（管理员权限）
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/admin/redis-scripts/stats")
+    public ResponseEntity<ApiResponse<Map<String, Map<String, Object>>>> getRedisScriptStats() {
+        return ResponseEntity.ok(ApiResponse.success(redisScriptRegistry.getStats()));
+    }
+
+    // 查看最近一次库存对账结果（管理员权限）
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/admin/stock/reconciliation")
+    public ResponseEntity<ApiResponse<List<StockReconciliationDTO>>> getStockReconciliation() {
+        return ResponseEntity.ok(ApiResponse.success(seckillStockReconciler.getLastReport()));
+    }
+
+    // 立即执行一次库存对账（管理员权限）
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/admin/stock/reconciliation")
+    public ResponseEntity<ApiResponse<List<StockReconciliationDTO>>> reconcileStock() {
+        return ResponseEntity.ok(ApiResponse.success(seckillStockReconciler.reconcile()));
+    }
+
     // 删除秒杀活动（管理员权限）
     @PreAuthorize("hasRole('ADMIN')")
     @DeleteMapping("/admin/activities/{id}")
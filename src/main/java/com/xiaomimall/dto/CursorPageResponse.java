@@ -0,0 +1,17 @@
+package com.xiaomimall.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 游标分页响应
+ * 键集分页不统计总数，客户端用nextCursor请求下一页，hasMore为false时表示已到末页
+ */
+@Data
+public class CursorPageResponse<T> {
+    private Integer pageSize;
+    private String nextCursor; // 下一页游标，没有更多数据时为null
+    private Boolean hasMore;
+    private List<T> list;      // 当前页数据
+}
@@ -19,6 +19,8 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 public class OrderCreateDTO {
+    private String submitToken;//下单令牌，通过 POST /orders/submit-token 获取，一次有效；灰度期间可不传
+
     @NotNull(message = "地址ID不能为空")
     private Long addressId;//地址ID
 
@@ -0,0 +1,24 @@
+package com.xiaomimall.dto;
+
+import com.xiaomimall.entity.OrderEventType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 订单事件消息
+ * 经发件箱投递到MQ，消费者按eventId去重（至少一次投递）
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderEventMessage {
+    private String eventId;
+    private OrderEventType eventType;
+    private Long orderId;
+    private Long userId;          // 批量超时取消时为空
+    private String orderNo;       // 批量超时取消时为空
+    private LocalDateTime occurredAt;
+}
@@ -0,0 +1,28 @@
+package com.xiaomimall.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 订单导出行DTO
+ * 订单与订单项连接后的扁平行，每个订单项一行，订单字段在各行重复
+ */
+@Data
+public class OrderExportRowDTO {
+    private Long orderId;
+    private String orderNo;
+    private Long userId;
+    private Integer status;
+    private Integer paymentType;
+    private BigDecimal totalAmount;
+    private BigDecimal paymentAmount;
+    private LocalDateTime createdAt;
+    private LocalDateTime payTime;
+    private Long productId;
+    private String productName;
+    private BigDecimal price;          // 商品单价
+    private Integer quantity;
+    private BigDecimal itemTotalPrice; // 订单项小计
+}
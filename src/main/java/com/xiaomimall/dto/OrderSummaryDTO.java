@@ -0,0 +1,23 @@
+package com.xiaomimall.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 订单列表项DTO
+ * 订单历史列表只返回概要信息，详情通过 /orders/{orderId} 获取
+ */
+@Data
+public class OrderSummaryDTO {
+    private Long id;
+    private String orderNo;
+    private Integer status;
+    private String statusDescription;
+    private BigDecimal paymentAmount;
+    private LocalDateTime createdAt;
+    private Integer itemCount;        // 商品件数
+    private List<String> thumbnails;  // 商品缩略图（最多前几个商品）
+}
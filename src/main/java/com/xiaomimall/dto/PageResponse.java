@@ -11,4 +11,5 @@ public class PageResponse<T> {
     private Long total;      // 总记录数
     private Integer pages;   // 总页数
     private List<T> list;    // 当前页数据
+    private String nextCursor; // 下一页游标（键集分页），没有更多数据时为null
 }
\ No newline at end of file
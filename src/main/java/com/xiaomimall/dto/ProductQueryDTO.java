@@ -20,6 +20,7 @@ public class ProductQueryDTO {
     private String sortBy;       // 排序字段（price/sales）
     private String sortOrder;    // 排序方向（asc/desc）
     private Integer pageNum = 1; // 页码
+    private String cursor;       // 键集分页游标（上一页返回的nextCursor），传入时忽略页码
     @Min(value = 1, message = "每页数量至少为1")
     @Max(value = 100, message = "每页数量不能超过100")
     private Integer pageSize = 10; // 每页数量
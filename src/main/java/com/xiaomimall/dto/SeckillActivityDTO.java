@@ -18,5 +18,7 @@ public class SeckillActivityDTO {
     private LocalDateTime startTime;
     private LocalDateTime endTime;
     private Boolean isActive;
+    private Integer userRateLimit;//每个用户每秒请求上限
+    private Integer activityRateLimit;//整个活动每秒请求上限
     private ProductDTO product; // 关联的商品信息
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.xiaomimall.dto;
+
+import com.xiaomimall.entity.PaymentType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 秒杀下单消息
+ * Redis预扣成功后投递到MQ，由消费者异步落库
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SeckillOrderMessage {
+    private Long userId;
+    private Long seckillId;
+    private String orderNo; // 预生成的订单号，同时作为排队凭证
+    private PaymentType paymentType;
+}
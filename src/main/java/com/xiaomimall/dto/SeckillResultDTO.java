@@ -16,4 +16,9 @@ public class SeckillResultDTO {
     private String message;
     private String orderNo; // 秒杀成功时返回订单号
     private Long waitTime; // 等待时间（毫秒）
-}
\ No newline at end of file
+    private Boolean queued; // 是否仍在排队落库（异步模式）
+
+    public SeckillResultDTO(Boolean success, String message, String orderNo, Long waitTime) {
+        this(success, message, orderNo, waitTime, false);
+    }
+}
@@ -0,0 +1,25 @@
+package com.xiaomimall.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 秒杀库存对账结果DTO
+ * 对比Redis库存、数据库库存和秒杀订单数
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockReconciliationDTO {
+    private Long seckillId;
+    private Long redisStock;    // Redis剩余库存（分片之和）
+    private Integer dbStock;    // 数据库剩余库存
+    private Integer orderCount; // 已落库的秒杀订单数
+    private Long pendingDelta;  // 本节点尚未落库的扣减
+    private Long drift;         // 偏差 = Redis库存 - (数据库库存 - 未落库扣减)
+    private Boolean repaired;   // 是否已自动修复
+    private LocalDateTime checkedAt;
+}
@@ -0,0 +1,19 @@
+package com.xiaomimall.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 库存不足明细
+ * 下单批量锁库存失败时，逐项说明哪个商品缺多少
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockShortageDTO {
+    private Long productId;
+    private String productName;
+    private Integer requested; // 请求数量（同一商品多行已合并）
+    private Integer available; // 当前可用库存
+}
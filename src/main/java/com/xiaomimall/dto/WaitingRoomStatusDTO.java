@@ -0,0 +1,23 @@
+package com.xiaomimall.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 秒杀排队状态DTO
+ * status: WAITING（排队中）/ ADMITTED（已放行，可发起秒杀）/ CLOSED（已售罄，排队关闭）/ NOT_QUEUED（未排队）
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class WaitingRoomStatusDTO {
+    public static final String WAITING = "WAITING";
+    public static final String ADMITTED = "ADMITTED";
+    public static final String CLOSED = "CLOSED";
+    public static final String NOT_QUEUED = "NOT_QUEUED";
+
+    private String status;
+    private Long position;        // 排队位置（从1开始），非排队中为0
+    private Long suggestedPollMs; // 建议的下次查询间隔（毫秒）
+}
@@ -0,0 +1,23 @@
+// OrderEventType.java
+package com.xiaomimall.entity;
+
+import lombok.Getter;
+
+/**
+ * 订单事件类型
+ * 订单状态变化时写入发件箱，由中继投递到MQ
+ */
+@Getter
+public enum OrderEventType {
+    ORDER_CREATED("订单已创建"),
+    ORDER_PAID("订单已支付"),
+    ORDER_CANCELLED("订单已取消"),
+    ORDER_SHIPPED("订单已发货"),
+    ORDER_COMPLETED("订单已完成");
+
+    private final String description;
+
+    OrderEventType(String description) {
+        this.description = description;
+    }
+}
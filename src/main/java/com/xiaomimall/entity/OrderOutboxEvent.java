@@ -0,0 +1,21 @@
+package com.xiaomimall.entity;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 订单事件发件箱记录
+ * 与订单状态变化在同一事务中写入，由中继按ID顺序投递到MQ
+ */
+@Data
+public class OrderOutboxEvent {
+    private Long id;
+    private Long orderId;         // 订单ID（决定投递分区，保证同一订单的事件有序）
+    private String eventType;     // 事件类型（OrderEventType）
+    private String payload;       // 消息体（JSON）
+    private Integer status;       // 0-待投递，1-已投递
+    private Integer attempts;     // 投递失败次数
+    private LocalDateTime createdAt;
+    private LocalDateTime sentAt;
+}
@@ -20,6 +20,7 @@ public class Product {
     private String description; // 商品描述
     private String detail;      // 商品详情（HTML格式）
     private Integer status;     // 商品状态（0-下架，1-上架）
+    private Boolean stockCacheEnabled; // 是否启用Redis库存预占模式
     private Boolean isDeleted;  // 是否删除（逻辑删除）
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
@@ -0,0 +1,18 @@
+package com.xiaomimall.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 商品库存结算流水
+ * 预占模式下与订单同事务写入，由结算任务批量合并到products后删除
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductStockJournal {
+    private Long id;
+    private Long productId;
+    private Integer quantity;     // 待扣减数量，负数表示归还
+}
@@ -18,6 +18,8 @@ public class SeckillActivity {
     private LocalDateTime startTime;
     private LocalDateTime endTime;
     private Boolean isActive;
+    private Integer userRateLimit;     // 每个用户每秒允许的请求数（为空时使用全局默认值）
+    private Integer activityRateLimit; // 整个活动每秒允许的请求数（为空时使用全局默认值）
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     
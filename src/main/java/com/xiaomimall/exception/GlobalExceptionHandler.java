@@ -89,6 +89,12 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(OutOfStockException.class)
     public ResponseEntity<ApiResponse<Object>> handleOutOfStockException(OutOfStockException ex) {
+        // 批量锁库存失败：返回每个缺货商品的明细
+        if (!ex.getShortages().isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new ApiResponse<>(400, ex.getMessage(), ex.getShortages()));
+        }
+
         // 解析异常信息，提供更详细的错误信息
         String message = ex.getMessage();
         if (message.contains("库存不足")) {
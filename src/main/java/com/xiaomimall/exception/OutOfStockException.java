@@ -1,8 +1,27 @@
 package com.xiaomimall.exception;
 
+import com.xiaomimall.dto.StockShortageDTO;
+
+import java.util.Collections;
+import java.util.List;
+
 // OutOfStockException.java
 public class OutOfStockException extends RuntimeException {
+
+    // 库存不足的商品明细，单商品场景下为空
+    private final List<StockShortageDTO> shortages;
+
     public OutOfStockException(String message) {
         super(message);
+        this.shortages = Collections.emptyList();
+    }
+
+    public OutOfStockException(String message, List<StockShortageDTO> shortages) {
+        super(message);
+        this.shortages = shortages == null ? Collections.emptyList() : List.copyOf(shortages);
+    }
+
+    public List<StockShortageDTO> getShortages() {
+        return shortages;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,98 @@
+package com.xiaomimall.interceptor;
+
+import com.xiaomimall.entity.User;
+import com.xiaomimall.service.SeckillActivityStateHolder;
+import com.xiaomimall.service.SeckillRateLimiter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * 秒杀限流拦截器
+ * 在进入Controller之前对 POST /api/seckill/{seckillId} 做限流，被限流的请求直接写回预先序列化好的响应。
+ * 不存在的活动在限流之前直接拒绝，随机活动ID既不占用限流名额，也不会穿透到业务层。
+ */
+@Component
+@RequiredArgsConstructor
+public class SeckillRateLimitInterceptor implements HandlerInterceptor {
+
+    // 预先序列化的限流响应，避免每次拒绝都构造对象和JSON
+    private static final byte[] REJECTED_BODY =
+            "{\"code\":429,\"message\":\"请求过于频繁，请稍后再试\",\"data\":null}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NOT_FOUND_BODY =
+            "{\"code\":404,\"message\":\"秒杀活动不存在\",\"data\":null}".getBytes(StandardCharsets.UTF_8);
+
+    private final SeckillRateLimiter seckillRateLimiter;
+    private final SeckillActivityStateHolder activityStateHolder;
+
+    @Override
+    public boolean preHandle(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                             @NonNull Object handler) throws Exception {
+        if (!HttpMethod.POST.matches(request.getMethod())) {
+            return true;
+        }
+        Long seckillId = resolveSeckillId(request);
+        if (seckillId == null) {
+            return true;
+        }
+
+        SeckillActivityStateHolder.Snapshot activity = activityStateHolder.getSnapshot(seckillId);
+        if (activity == null) {
+            // 活动不存在（快照持有者已短时间缓存缺失结果），不进入限流和业务层
+            return reject(response, HttpStatus.NOT_FOUND, NOT_FOUND_BODY);
+        }
+
+        SeckillRateLimiter.Decision decision = seckillRateLimiter.tryAcquire(seckillId, currentUserId(),
+                activity.activityRateLimit(), activity.userRateLimit());
+        if (decision == SeckillRateLimiter.Decision.ADMITTED) {
+            return true;
+        }
+        return reject(response, HttpStatus.TOO_MANY_REQUESTS, REJECTED_BODY);
+    }
+
+    private boolean reject(HttpServletResponse response, HttpStatus status, byte[] body) throws Exception {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+        return false;
+    }
+
+    // 从路径变量中解析秒杀活动ID
+    @SuppressWarnings("unchecked")
+    private Long resolveSeckillId(HttpServletRequest request) {
+        Object attribute = request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (!(attribute instanceof Map)) {
+            return null;
+        }
+        String value = ((Map<String, String>) attribute).get("seckillId");
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Long currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof User user) {
+            return user.getId();
+        }
+        return null;
+    }
+}
@@ -28,4 +28,19 @@ public interface OrderItemMapper {
     // 根据订单ID查询订单项
     @Select("SELECT * FROM order_items WHERE order_id = #{orderId}")
     List<OrderItem> findByOrderId(Long orderId);
+
+    // 批量查询多个订单的订单项
+    @Select("<script>" +
+            "SELECT * FROM order_items WHERE order_id IN " +
+            "<foreach collection='orderIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<OrderItem> findByOrderIds(@Param("orderIds") List<Long> orderIds);
+
+    // 批量查询订单列表展示用的缩略信息（只查图片和数量）
+    @Select("<script>" +
+            "SELECT order_id, product_image, quantity FROM order_items WHERE order_id IN " +
+            "<foreach collection='orderIds' item='id' open='(' separator=',' close=')'>#{id}</foreach> " +
+            "ORDER BY order_id, id" +
+            "</script>")
+    List<OrderItem> findThumbnailsByOrderIds(@Param("orderIds") List<Long> orderIds);
 }
\ No newline at end of file
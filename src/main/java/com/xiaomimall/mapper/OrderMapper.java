@@ -1,7 +1,10 @@
 package com.xiaomimall.mapper;
 
+import com.xiaomimall.dto.OrderExportRowDTO;
 import com.xiaomimall.entity.Order;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -17,6 +20,33 @@ public interface OrderMapper {
     // 更新订单状态
     @Update("UPDATE orders SET status = #{status} WHERE id = #{id} AND user_id = #{userId}")
     int updateOrderStatus(@Param("id") Long id, @Param("userId") Long userId, @Param("status") int status);
+
+    // 仅当订单处于指定状态时更新，防止支付与超时取消互相覆盖
+    @Update("UPDATE orders SET status = #{toStatus} WHERE id = #{id} AND user_id = #{userId} AND status = #{fromStatus}")
+    int updateOrderStatusFrom(@Param("id") Long id, @Param("userId") Long userId,
+                              @Param("fromStatus") int fromStatus, @Param("toStatus") int toStatus);
+
+    // 锁定一批订单中仍处于指定状态的订单，返回其ID、用户ID与订单号
+    @Select("<script>" +
+            "SELECT id, user_id, order_no FROM orders WHERE id IN " +
+            "<foreach collection='orderIds' item='id' open='(' separator=',' close=')'>#{id}</foreach> " +
+            "AND status = #{status} ORDER BY id FOR UPDATE" +
+            "</script>")
+    List<Order> lockByStatus(@Param("orderIds") List<Long> orderIds, @Param("status") int status);
+
+    // 兜底扫描创建时间早于指定时间、仍处于指定状态的订单ID，依赖索引 idx_status_created
+    @Select("SELECT id FROM orders WHERE status = #{status} AND created_at < #{createdBefore} " +
+            "ORDER BY created_at, id LIMIT #{limit}")
+    List<Long> findIdsByStatusCreatedBefore(@Param("status") int status,
+                                            @Param("createdBefore") LocalDateTime createdBefore,
+                                            @Param("limit") int limit);
+
+    // 批量更新订单状态
+    @Update("<script>" +
+            "UPDATE orders SET status = #{status} WHERE id IN " +
+            "<foreach collection='orderIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int updateStatusBatch(@Param("orderIds") List<Long> orderIds, @Param("status") int status);
     
     // 更新订单状态并设置物流信息
     @Update("UPDATE orders SET status = #{status}, tracking_number = #{trackingNumber}, delivered_at = #{deliveredAt} WHERE id = #{orderId}")
@@ -45,6 +75,37 @@ public interface OrderMapper {
     @Select("SELECT * FROM orders WHERE user_id = #{userId} ORDER BY created_at DESC")
     List<Order> findByUserId(Long userId);
 
+    // 键集分页查询用户订单（按创建时间、ID倒序），只查询列表需要的列
+    // 依赖索引 idx_user_created (user_id, created_at, id)
+    @Select("<script>" +
+            "SELECT id, order_no, status, payment_amount, created_at FROM orders WHERE user_id = #{userId} " +
+            "<if test='cursorCreatedAt != null'>" +
+            "AND (created_at &lt; #{cursorCreatedAt} OR (created_at = #{cursorCreatedAt} AND id &lt; #{cursorId})) " +
+            "</if>" +
+            "ORDER BY created_at DESC, id DESC LIMIT #{limit}" +
+            "</script>")
+    List<Order> findPageByUserId(@Param("userId") Long userId,
+                                 @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                 @Param("cursorId") Long cursorId,
+                                 @Param("limit") int limit);
+
     @Select("SELECT * FROM orders WHERE id = #{orderId} AND user_id = #{id}")
     Order findByIdAndUserId(Long orderId, Long id);
-}
\ No newline at end of file
+
+    // 流式查询导出行（订单连接订单项），按创建时间、订单ID排序，依赖索引 idx_created_at
+    // fetchSize = Integer.MIN_VALUE 让MySQL驱动逐行读取结果集，不在客户端缓存整个结果；
+    // 游标读取期间占用当前连接，必须在事务内消费完毕
+    @Select("<script>" +
+            "SELECT o.id AS order_id, o.order_no, o.user_id, o.status, o.payment_type, o.total_amount, " +
+            "o.payment_amount, o.created_at, o.pay_time, i.product_id, i.product_name, i.price, i.quantity, " +
+            "i.total_price AS item_total_price " +
+            "FROM orders o JOIN order_items i ON i.order_id = o.id " +
+            "WHERE o.created_at &gt;= #{startTime} AND o.created_at &lt; #{endTime} " +
+            "<if test='status != null'>AND o.status = #{status} </if>" +
+            "ORDER BY o.created_at, o.id" +
+            "</script>")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    Cursor<OrderExportRowDTO> streamExportRows(@Param("startTime") LocalDateTime startTime,
+                                               @Param("endTime") LocalDateTime endTime,
+                                               @Param("status") Integer status);
+}
@@ -0,0 +1,53 @@
+package com.xiaomimall.mapper;
+
+import com.xiaomimall.entity.OrderOutboxEvent;
+import org.apache.ibatis.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 订单事件发件箱Mapper
+ */
+@Mapper
+public interface OrderOutboxMapper {
+
+    // 批量写入事件（调用方事务内）
+    @Insert("<script>" +
+            "INSERT INTO order_outbox (order_id, event_type, payload, status, attempts, created_at) VALUES " +
+            "<foreach collection='events' item='e' separator=','>" +
+            "(#{e.orderId}, #{e.eventType}, #{e.payload}, 0, 0, NOW())" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("events") List<OrderOutboxEvent> events);
+
+    // 按ID顺序取待投递事件
+    @Select("SELECT id, order_id, event_type, payload FROM order_outbox WHERE status = 0 ORDER BY id LIMIT #{limit}")
+    List<OrderOutboxEvent> findPending(@Param("limit") int limit);
+
+    // 标记已投递
+    @Update("<script>" +
+            "UPDATE order_outbox SET status = 1, sent_at = NOW() WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int markSent(@Param("ids") List<Long> ids);
+
+    // 记录一次投递失败
+    @Update("UPDATE order_outbox SET attempts = attempts + 1 WHERE id = #{id}")
+    int incrementAttempts(@Param("id") Long id);
+
+    @Select("SELECT COUNT(*) FROM order_outbox WHERE status = 0")
+    long countPending();
+
+    // 消费端登记已处理的事件，与处理逻辑同一事务；返回0表示事件已处理过
+    @Insert("INSERT IGNORE INTO order_event_consumed (event_id, consumed_at) VALUES (#{eventId}, NOW())")
+    int insertConsumed(@Param("eventId") String eventId);
+
+    // 清理过期的消费记录（分批删除，避免长事务）
+    @Delete("DELETE FROM order_event_consumed WHERE consumed_at < #{before} LIMIT #{limit}")
+    int deleteConsumedBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
+
+    // 清理已投递的历史事件（分批删除，避免长事务）
+    @Delete("DELETE FROM order_outbox WHERE status = 1 AND sent_at < #{before} LIMIT #{limit}")
+    int deleteSentBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
+}
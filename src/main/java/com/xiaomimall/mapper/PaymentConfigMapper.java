@@ -5,6 +5,7 @@ import com.xiaomimall.entity.PaymentType;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 
 /**
@@ -20,6 +21,7 @@ public interface PaymentConfigMapper {
     PaymentConfig findByPaymentType(PaymentType paymentType);
     
     // 更新支付配置
+    @CacheEvict(value = "paymentConfig", key = "#p0.paymentType")
     @Update("UPDATE payment_configs SET app_id = #{appId}, merchant_id = #{merchantId}, " +
             "public_key = #{publicKey}, private_key = #{privateKey}, notify_url = #{notifyUrl}, " +
             "is_active = #{isActive} WHERE id = #{id}")
@@ -4,8 +4,10 @@ import com.xiaomimall.entity.ProductImage;
 import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -31,4 +33,14 @@ public interface ProductImageMapper {
     // 根据商品ID查询主图片
     @Select("SELECT * FROM product_images WHERE product_id = #{productId} AND is_main = true ORDER BY sort ASC LIMIT 1")
     ProductImage findMainImageByProductId(Long productId);
+
+    // 批量查询多个商品的主图：每个商品取主图，没有主图时取排序第一的图片
+    @Select("<script>" +
+            "SELECT id, product_id, url, sort, is_main FROM (" +
+            "SELECT pi.*, ROW_NUMBER() OVER (PARTITION BY pi.product_id ORDER BY pi.is_main DESC, pi.sort ASC, pi.id ASC) AS rn " +
+            "FROM product_images pi WHERE pi.product_id IN " +
+            "<foreach collection='productIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            ") ranked WHERE rn = 1" +
+            "</script>")
+    List<ProductImage> findMainImagesByProductIds(@Param("productIds") Collection<Long> productIds);
 }
\ No newline at end of file
@@ -1,10 +1,12 @@
 package com.xiaomimall.mapper;
 
+import com.xiaomimall.dto.CartItemDTO;
 import com.xiaomimall.dto.ProductQueryDTO;
 import com.xiaomimall.entity.Product;
 import org.apache.ibatis.annotations.*;
 import org.mybatis.spring.annotation.MapperScan;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
@@ -32,6 +34,15 @@ public interface ProductMapper {
     // 根据ID列表查询商品列表
     List<Product> findByIds(@Param("productIds") List<Long> productIds);
 
+    // 按ID分批读取未删除商品的ID（构建商品ID布隆过滤器）
+    @Select("SELECT id FROM products WHERE is_deleted = 0 AND id > #{afterId} ORDER BY id LIMIT #{limit}")
+    List<Long> findIdsAfter(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    // 按ID分批读取未删除商品的搜索字段（构建商品搜索索引）
+    @Select("SELECT id, name, category_id, price, sales, status, description FROM products " +
+            "WHERE is_deleted = 0 AND id > #{afterId} ORDER BY id LIMIT #{limit}")
+    List<Product> findSearchDocsAfter(@Param("afterId") long afterId, @Param("limit") int limit);
+
     @Select("SELECT COUNT(*) FROM products WHERE category_id = #{categoryId} AND is_deleted = 0")
     int countByCategoryId(Long categoryId);
 
@@ -45,6 +56,30 @@ public interface ProductMapper {
     @Update("UPDATE products SET stock = stock + #{quantity} WHERE id = #{productId}")
     int increaseStock(@Param("productId") Long productId, @Param("quantity") Integer quantity);
 
+    // 按ID升序批量查询并加行锁（SELECT ... FOR UPDATE），固定加锁顺序避免死锁
+    List<Product> findByIdsForUpdate(@Param("productIds") List<Long> productIds);
+
+    // 单条语句批量扣减库存，任一商品库存不足时该行不更新，返回实际更新行数
+    int reduceStockBatch(@Param("items") List<CartItemDTO> items);
+
+    // 单条语句批量结算库存增量（商品ID -> 扣减数量，负数表示归还），不校验库存
+    int settleStockBatch(@Param("deltas") Map<Long, Long> deltas);
+
+    // 单条语句批量累加销量（商品ID -> 销售数量）
+    int increaseSalesBatch(@Param("deltas") Map<Long, Long> deltas);
+
+    @Update("UPDATE products SET stock_cache_enabled = #{enabled} WHERE id = #{productId} AND is_deleted = 0")
+    int updateStockCacheEnabled(@Param("productId") Long productId, @Param("enabled") boolean enabled);
+
+    // 库存预占模式商品的可用库存（库存 - 未结算流水），一条语句读取，结算前后结果一致（库存对账）
+    @Select("SELECT p.id, p.stock - COALESCE(SUM(j.quantity), 0) AS stock FROM products p " +
+            "LEFT JOIN product_stock_journal j ON j.product_id = p.id " +
+            "WHERE p.stock_cache_enabled = 1 AND p.is_deleted = 0 GROUP BY p.id, p.stock")
+    List<Product> findStockCacheAvailable();
+
+    // 单条语句批量归还库存
+    int increaseStockBatch(@Param("items") List<CartItemDTO> items);
+
     @Select("SELECT p.*, " +
             "pi.id as image_id, pi.url as image_url, pi.is_main as image_is_main " +
             "FROM products p " +
@@ -54,6 +89,20 @@ public interface ProductMapper {
     @MapKey("id") // 指定使用id字段作为Map的key
     List<Map<String, Object>> findProductWithImagesById(Long id);
 
+    // 批量查询商品及图片（搜索结果当前页补全详情）
+    @Select({
+            "<script>",
+            "SELECT p.*, ",
+            "pi.id as image_id, pi.url as image_url, pi.is_main as image_is_main ",
+            "FROM products p ",
+            "LEFT JOIN product_images pi ON p.id = pi.product_id AND pi.is_deleted = 0 ",
+            "WHERE p.is_deleted = 0 AND p.id IN ",
+            "<foreach collection='productIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "ORDER BY p.id, pi.sort ASC",
+            "</script>"
+    })
+    List<Map<String, Object>> findProductsWithImagesByIds(@Param("productIds") List<Long> productIds);
+
     @Select({
             "<script>",
             "SELECT p.*, ",
@@ -61,27 +110,27 @@ public interface ProductMapper {
             "FROM products p ",
             "LEFT JOIN product_images pi ON p.id = pi.product_id AND pi.is_deleted = 0 ",
             "WHERE p.is_deleted = 0 ",
-            "<if test='keyword != null and keyword != \"\"'>",
-            "AND (p.name LIKE CONCAT('%', #{keyword}, '%') OR p.description LIKE CONCAT('%', #{keyword}, '%'))",
+            "<if test='queryDTO.keyword != null and queryDTO.keyword != \"\"'>",
+            "AND (p.name LIKE CONCAT('%', #{queryDTO.keyword}, '%') OR p.description LIKE CONCAT('%', #{queryDTO.keyword}, '%'))",
             "</if>",
-            "<if test='categoryId != null'>",
-            "AND p.category_id = #{categoryId}",
+            "<if test='queryDTO.categoryId != null'>",
+            "AND p.category_id = #{queryDTO.categoryId}",
             "</if>",
-            "<if test='minPrice != null'>",
-            "AND p.price >= #{minPrice}",
+            "<if test='queryDTO.minPrice != null'>",
+            "AND p.price >= #{queryDTO.minPrice}",
             "</if>",
-            "<if test='maxPrice != null'>",
-            "AND p.price <= #{maxPrice}",
+            "<if test='queryDTO.maxPrice != null'>",
+            "AND p.price &lt;= #{queryDTO.maxPrice}",
             "</if>",
-            "<if test='status != null'>",
-            "AND p.status = #{status}",
+            "<if test='queryDTO.status != null'>",
+            "AND p.status = #{queryDTO.status}",
             "</if>",
             "ORDER BY ",
             "<choose>",
-            "<when test='sortBy == \"price\" and sortOrder == \"desc\"'>p.price DESC</when>",
-            "<when test='sortBy == \"price\" and sortOrder == \"asc\"'>p.price ASC</when>",
-            "<when test='sortBy == \"sales\" and sortOrder == \"desc\"'>p.sales DESC</when>",
-            "<when test='sortBy == \"sales\" and sortOrder == \"asc\"'>p.sales ASC</when>",
+            "<when test='queryDTO.sortBy == \"price\" and queryDTO.sortOrder == \"desc\"'>p.price DESC, p.id DESC</when>",
+            "<when test='queryDTO.sortBy == \"price\" and queryDTO.sortOrder == \"asc\"'>p.price ASC, p.id ASC</when>",
+            "<when test='queryDTO.sortBy == \"sales\" and queryDTO.sortOrder == \"desc\"'>p.sales DESC, p.id DESC</when>",
+            "<when test='queryDTO.sortBy == \"sales\" and queryDTO.sortOrder == \"asc\"'>p.sales ASC, p.id ASC</when>",
             "<otherwise>p.id DESC</otherwise>",
             "</choose>",
             "LIMIT #{offset}, #{limit}",
@@ -91,6 +140,39 @@ public interface ProductMapper {
                                                        @Param("offset") int offset,
                                                        @Param("limit") int limit);
 
+    // 键集分页查询一页商品的ID和排序键：从游标位置之后按(排序列, id)继续读取，不使用OFFSET
+    // sortColumn只会是price/sales（由排序枚举给出），为null时按id倒序
+    @Select({
+            "<script>",
+            "SELECT p.id, p.price, p.sales FROM products p WHERE p.is_deleted = 0",
+            "<if test='queryDTO.keyword != null and queryDTO.keyword != \"\"'> AND (p.name LIKE CONCAT('%', #{queryDTO.keyword}, '%') OR p.description LIKE CONCAT('%', #{queryDTO.keyword}, '%')) </if>",
+            "<if test='queryDTO.categoryId != null'> AND p.category_id = #{queryDTO.categoryId} </if>",
+            "<if test='queryDTO.minPrice != null'> AND p.price >= #{queryDTO.minPrice} </if>",
+            "<if test='queryDTO.maxPrice != null'> AND p.price &lt;= #{queryDTO.maxPrice} </if>",
+            "<if test='queryDTO.status != null'> AND p.status = #{queryDTO.status} </if>",
+            "<if test='cursorId != null'>",
+            "<choose>",
+            "<when test='sortColumn == null'> AND p.id &lt; #{cursorId} </when>",
+            "<when test='descending'> AND (p.${sortColumn} &lt; #{cursorKey} OR (p.${sortColumn} = #{cursorKey} AND p.id &lt; #{cursorId})) </when>",
+            "<otherwise> AND (p.${sortColumn} > #{cursorKey} OR (p.${sortColumn} = #{cursorKey} AND p.id > #{cursorId})) </otherwise>",
+            "</choose>",
+            "</if>",
+            "ORDER BY ",
+            "<choose>",
+            "<when test='sortColumn == null'>p.id DESC</when>",
+            "<when test='descending'>p.${sortColumn} DESC, p.id DESC</when>",
+            "<otherwise>p.${sortColumn} ASC, p.id ASC</otherwise>",
+            "</choose>",
+            "LIMIT #{limit}",
+            "</script>"
+    })
+    List<Product> findSeekPage(@Param("queryDTO") ProductQueryDTO queryDTO,
+                               @Param("sortColumn") String sortColumn,
+                               @Param("descending") boolean descending,
+                               @Param("cursorKey") BigDecimal cursorKey,
+                               @Param("cursorId") Long cursorId,
+                               @Param("limit") int limit);
+
     /**
      * 根据条件统计商品数量
      */
@@ -100,7 +182,7 @@ public interface ProductMapper {
             "<if test='keyword != null and keyword != \"\"'> AND (p.name LIKE CONCAT('%', #{keyword}, '%') OR p.description LIKE CONCAT('%', #{keyword}, '%')) </if>",
             "<if test='categoryId != null'> AND p.category_id = #{categoryId} </if>",
             "<if test='minPrice != null'> AND p.price >= #{minPrice} </if>",
-            "<if test='maxPrice != null'> AND p.price <= #{maxPrice} </if>",
+            "<if test='maxPrice != null'> AND p.price &lt;= #{maxPrice} </if>",
             "<if test='status != null'> AND p.status = #{status} </if>",
             "</script>"
     })
@@ -0,0 +1,48 @@
+package com.xiaomimall.mapper;
+
+import com.xiaomimall.entity.ProductStockJournal;
+import org.apache.ibatis.annotations.*;
+
+import java.util.List;
+
+/**
+ * 商品库存结算流水Mapper
+ */
+@Mapper
+public interface ProductStockJournalMapper {
+
+    // 批量写入流水（调用方事务内）
+    @Insert("<script>" +
+            "INSERT INTO product_stock_journal (product_id, quantity, created_at) VALUES " +
+            "<foreach collection='entries' item='e' separator=','>" +
+            "(#{e.productId}, #{e.quantity}, NOW())" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("entries") List<ProductStockJournal> entries);
+
+    // 按ID顺序取一批待结算流水（不加锁，结算时再按ID锁定）
+    @Select("SELECT id, product_id, quantity FROM product_stock_journal ORDER BY id LIMIT #{limit}")
+    List<ProductStockJournal> findBatch(@Param("limit") int limit);
+
+    // 按ID锁定流水，已被其他节点结算删除的不再返回
+    @Select("<script>" +
+            "SELECT id, product_id, quantity FROM product_stock_journal WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            " FOR UPDATE" +
+            "</script>")
+    List<ProductStockJournal> lockByIds(@Param("ids") List<Long> ids);
+
+    @Delete("<script>" +
+            "DELETE FROM product_stock_journal WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int deleteByIds(@Param("ids") List<Long> ids);
+
+    // 各商品未结算的数量之和；加共享锁读取最新提交的流水，与商品行锁下读到的库存对应
+    @Select("<script>" +
+            "SELECT product_id, SUM(quantity) AS quantity FROM product_stock_journal WHERE product_id IN " +
+            "<foreach collection='productIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            " GROUP BY product_id LOCK IN SHARE MODE" +
+            "</script>")
+    List<ProductStockJournal> sumByProductIds(@Param("productIds") List<Long> productIds);
+}
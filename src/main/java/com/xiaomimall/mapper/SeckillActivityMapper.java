@@ -13,14 +13,17 @@ import java.util.List;
 public interface SeckillActivityMapper {
     
     // 插入秒杀活动
-    @Insert("INSERT INTO seckill_activities (product_id, seckill_price, stock, start_time, end_time, is_active) " +
-            "VALUES (#{productId}, #{seckillPrice}, #{stock}, #{startTime}, #{endTime}, #{isActive})")
+    @Insert("INSERT INTO seckill_activities (product_id, seckill_price, stock, start_time, end_time, is_active, " +
+            "user_rate_limit, activity_rate_limit) " +
+            "VALUES (#{productId}, #{seckillPrice}, #{stock}, #{startTime}, #{endTime}, #{isActive}, " +
+            "#{userRateLimit}, #{activityRateLimit})")
     @Options(useGeneratedKeys = true, keyProperty = "id")
     int insert(SeckillActivity activity);
     
     // 更新秒杀活动
     @Update("UPDATE seckill_activities SET seckill_price = #{seckillPrice}, stock = #{stock}, " +
-            "start_time = #{startTime}, end_time = #{endTime}, is_active = #{isActive} " +
+            "start_time = #{startTime}, end_time = #{endTime}, is_active = #{isActive}, " +
+            "user_rate_limit = #{userRateLimit}, activity_rate_limit = #{activityRateLimit} " +
             "WHERE id = #{id}")
     int update(SeckillActivity activity);
     
@@ -33,6 +36,12 @@ public interface SeckillActivityMapper {
     @Select("SELECT * FROM seckill_activities WHERE id = #{id}")
     SeckillActivity findById(Long id);
     
+    // 根据ID列表批量查询秒杀活动
+    @Select("<script>SELECT * FROM seckill_activities WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<SeckillActivity> findByIds(@Param("ids") List<Long> ids);
+    
     // 查询所有有效的秒杀活动
     @Select("SELECT * FROM seckill_activities WHERE is_active = true AND end_time > NOW() ORDER BY start_time ASC")
     List<SeckillActivity> findActiveActivities();
@@ -47,6 +56,13 @@ public interface SeckillActivityMapper {
     int updateStock(@Param("activityId") Long activityId,
                     @Param("newStock") Integer newStock);
 
+    // 仅当数据库库存仍为expected时改为newStock（对账校正，避免覆盖并发落库的扣减）
+    @Update("UPDATE seckill_activities SET stock = #{newStock} " +
+            "WHERE id = #{activityId} AND stock = #{expected}")
+    int compareAndSetStock(@Param("activityId") Long activityId,
+                           @Param("expected") Integer expected,
+                           @Param("newStock") Integer newStock);
+
     @Delete("DELETE FROM seckill_activities WHERE id = #{id}")
     int delete(Long id);
 }
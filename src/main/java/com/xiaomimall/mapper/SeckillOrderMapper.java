@@ -5,6 +5,8 @@ import com.xiaomimall.entity.PaymentType;
 import com.xiaomimall.entity.SeckillOrder;
 import org.apache.ibatis.annotations.*;
 
+import java.util.List;
+
 @Mapper
 public interface SeckillOrderMapper {
     
@@ -13,6 +15,15 @@ public interface SeckillOrderMapper {
             "VALUES (#{userId}, #{seckillId}, #{orderNo}, #{status}, #{paymentType, typeHandler=com.xiaomimall.config.PaymentTypeHandler}, NOW(), NOW())")
     @Options(useGeneratedKeys = true, keyProperty = "id")
     int insert(SeckillOrder order);
+
+    // 批量插入秒杀订单（异步下单消费者使用）
+    @Insert("<script>" +
+            "INSERT INTO seckill_orders (user_id, seckill_id, order_no, status, payment_type, created_at, updated_at) VALUES " +
+            "<foreach collection='orders' item='o' separator=','>" +
+            "(#{o.userId}, #{o.seckillId}, #{o.orderNo}, #{o.status}, #{o.paymentType, typeHandler=com.xiaomimall.config.PaymentTypeHandler}, NOW(), NOW())" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("orders") List<SeckillOrder> orders);
     
     // 更新秒杀订单状态
     @Update("UPDATE seckill_orders SET status = #{status} WHERE id = #{id}")
@@ -35,6 +46,10 @@ public interface SeckillOrderMapper {
     @Select("SELECT * FROM seckill_orders WHERE id = #{id}")
     SeckillOrder findById(Long id);
 
+    // 统计活动已落库的秒杀订单数（对账使用）
+    @Select("SELECT COUNT(*) FROM seckill_orders WHERE seckill_id = #{seckillId}")
+    int countBySeckillId(Long seckillId);
+
     @Delete("DELETE FROM seckill_orders WHERE order_no = #{orderNo}")
     void deleteByOrderNo(String orderNo);
 
@@ -0,0 +1,58 @@
+package com.xiaomimall.mq;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 消费失败消息的延迟重试
+ * 失败的消息带上重试次数发送到对应的重试队列，按指数退避设置过期时间，过期后经死信交换机回到原队列；
+ * 超过最大重试次数的消息转入死信队列，等待人工处理。
+ * 队列只在队头检查过期，退避时间较短的消息可能排在较长的之后，延迟只会变长不会丢失。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessageRetrier {
+
+    public static final String RETRY_COUNT_HEADER = "retry-count";
+
+    private final RabbitTemplate rabbitTemplate;
+
+    @Value("${mq.retry.max-retries:5}")// 最大重试次数，超过后转入死信队列
+    private int maxRetries;
+
+    @Value("${mq.retry.initial-delay-ms:1000}")// 首次重试延迟（毫秒），之后每次翻倍
+    private long initialDelayMillis;
+
+    @Value("${mq.retry.max-delay-ms:60000}")// 重试延迟上限（毫秒）
+    private long maxDelayMillis;
+
+    // 从消息头读取已重试次数
+    public static int retryCount(Object header) {
+        return header instanceof Number number ? number.intValue() : 0;
+    }
+
+    /**
+     * 发送到重试队列，超过最大重试次数时发送到死信队列
+     * payload可以是原始Message，也可以是待转换的对象
+     */
+    public void retryOrDeadLetter(String retryQueue, String deadLetterQueue, Object payload, int retries) {
+        if (retries >= maxRetries) {
+            log.error("消息重试{}次仍失败，转入死信队列: queue={}", retries, deadLetterQueue);
+            rabbitTemplate.convertAndSend("", deadLetterQueue, payload, message -> {
+                message.getMessageProperties().setHeader(RETRY_COUNT_HEADER, retries);
+                return message;
+            });
+            return;
+        }
+        long delay = Math.min(initialDelayMillis << Math.min(retries, 20), maxDelayMillis);
+        rabbitTemplate.convertAndSend("", retryQueue, payload, message -> {
+            message.getMessageProperties().setHeader(RETRY_COUNT_HEADER, retries + 1);
+            message.getMessageProperties().setExpiration(String.valueOf(delay));
+            return message;
+        });
+    }
+}
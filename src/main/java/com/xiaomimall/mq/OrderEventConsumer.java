@@ -0,0 +1,137 @@
+package com.xiaomimall.mq;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaomimall.cache.ProductCacheEvictor;
+import com.xiaomimall.config.RabbitMQConfig;
+import com.xiaomimall.dto.OrderEventMessage;
+import com.xiaomimall.entity.OrderItem;
+import com.xiaomimall.mapper.OrderItemMapper;
+import com.xiaomimall.mapper.OrderOutboxMapper;
+import com.xiaomimall.mapper.ProductMapper;
+import com.xiaomimall.service.ProductSearchIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListenerConfigurer;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerEndpoint;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistrar;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 订单事件消费者
+ * 每个分区队列注册一个单并发的监听端点，分区队列为单活跃消费者，多节点部署时同一时刻只有一个在消费，
+ * 同一订单的事件按发件箱顺序处理。
+ * 投递为至少一次：处理前先在同一事务内登记eventId，登记失败说明已处理过，直接确认跳过；
+ * 处理失败时登记随事务回滚，事件转入分区的重试队列按退避时间重新投递，重试耗尽后进入死信队列，
+ * 单个处理不了的事件不会阻塞整个分区（重试期间同一订单的后续事件可能先被处理）。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "order.outbox.consumer-enabled", havingValue = "true", matchIfMissing = true)
+public class OrderEventConsumer implements RabbitListenerConfigurer {
+
+    private static final int CLEANUP_BATCH = 1000;
+
+    private final ObjectMapper objectMapper;
+    private final OrderOutboxMapper orderOutboxMapper;
+    private final OrderItemMapper orderItemMapper;
+    private final ProductMapper productMapper;
+    private final ProductSearchIndex productSearchIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final MessageRetrier messageRetrier;
+    private final ProductCacheEvictor productCacheEvictor;
+
+    @Value("${order.outbox.consumed-retention-hours:168}")// 消费记录保留时长（小时）
+    private long consumedRetentionHours;
+
+    @Value("${order.outbox.partitions:4}")
+    private int partitions;
+
+    @Override
+    public void configureRabbitListeners(RabbitListenerEndpointRegistrar registrar) {
+        for (int i = 0; i < partitions; i++) {
+            SimpleRabbitListenerEndpoint endpoint = new SimpleRabbitListenerEndpoint();
+            endpoint.setId("orderEventConsumer-" + i);
+            endpoint.setQueueNames(RabbitMQConfig.orderEventQueue(i));
+            endpoint.setConcurrency("1");
+            int partition = i;
+            endpoint.setMessageListener(message -> onMessage(message, partition));
+            registrar.registerEndpoint(endpoint);
+        }
+    }
+
+    public void onMessage(Message message, int partition) {
+        OrderEventMessage event;
+        try {
+            event = objectMapper.readValue(message.getBody(), OrderEventMessage.class);
+        } catch (IOException e) {
+            // 无法解析的消息重试也不会成功，记录后丢弃
+            log.error("订单事件解析失败，丢弃: messageId={}", message.getMessageProperties().getMessageId(), e);
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (orderOutboxMapper.insertConsumed(event.getEventId()) == 0) {
+                    log.debug("订单事件已处理，跳过: eventId={}", event.getEventId());
+                    return;
+                }
+                handle(event);
+            });
+        } catch (Exception e) {
+            // 登记与处理一起回滚，转入重试队列；转发失败时抛出异常由容器重新投递
+            int retries = MessageRetrier.retryCount(message.getMessageProperties().getHeader(MessageRetrier.RETRY_COUNT_HEADER));
+            log.warn("订单事件处理失败，稍后重试: eventId={}, type={}, orderId={}, retries={}",
+                    event.getEventId(), event.getEventType(), event.getOrderId(), retries, e);
+            messageRetrier.retryOrDeadLetter(RabbitMQConfig.orderEventRetryQueue(partition),
+                    RabbitMQConfig.ORDER_EVENT_DEAD_LETTER_QUEUE, message, retries);
+        }
+    }
+
+    // 定期清理过期的消费记录
+    @Scheduled(fixedDelayString = "${order.outbox.cleanup-interval:3600000}")
+    public void cleanupConsumed() {
+        try {
+            LocalDateTime before = LocalDateTime.now().minusHours(consumedRetentionHours);
+            int deleted;
+            do {
+                deleted = orderOutboxMapper.deleteConsumedBefore(before, CLEANUP_BATCH);
+            } while (deleted == CLEANUP_BATCH);
+        } catch (Exception e) {
+            log.warn("清理订单事件消费记录失败", e);
+        }
+    }
+
+    private void handle(OrderEventMessage event) {
+        switch (event.getEventType()) {
+            case ORDER_PAID -> increaseSales(event.getOrderId());
+            default -> log.debug("订单事件: type={}, orderId={}", event.getEventType(), event.getOrderId());
+        }
+    }
+
+    // 支付成功后累加商品销量（单条UPDATE，与消费登记同一事务）
+    private void increaseSales(Long orderId) {
+        List<OrderItem> items = orderItemMapper.findByOrderIds(Collections.singletonList(orderId));
+        if (items.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> deltas = new TreeMap<>();
+        for (OrderItem item : items) {
+            deltas.merge(item.getProductId(), item.getQuantity().longValue(), Long::sum);
+        }
+        productMapper.increaseSalesBatch(deltas);
+        productCacheEvictor.evict(deltas.keySet());
+        productSearchIndex.salesChangedAfterCommit(deltas.keySet());
+    }
+}
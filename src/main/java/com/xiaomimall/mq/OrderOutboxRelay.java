@@ -0,0 +1,162 @@
+package com.xiaomimall.mq;
+
+import com.xiaomimall.config.RabbitMQConfig;
+import com.xiaomimall.entity.OrderOutboxEvent;
+import com.xiaomimall.mapper.OrderOutboxMapper;
+import com.xiaomimall.redis.RedisScriptRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 订单事件发件箱中继
+ * 只有持有Redis租约的节点执行投递：按ID顺序取一批待投递事件，按订单ID路由到分区队列，
+ * 整批发送后等待发布确认，再一条UPDATE标记已投递。
+ * 任一事件发送失败即停止本批，后续事件等下个周期，保证同一订单的事件不会乱序；
+ * 确认前宕机会导致重复投递，消费者按eventId去重。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "order.outbox.relay-enabled", havingValue = "true", matchIfMissing = true)
+public class OrderOutboxRelay {
+
+    private static final String LEADER_KEY = "order:outbox:relay:leader";
+
+    // Lua脚本（resources/lua）
+    private static final String RENEW_SCRIPT = "lease_renew";
+    private static final String RELEASE_SCRIPT = "lease_release";
+
+    private final OrderOutboxMapper orderOutboxMapper;
+    private final RabbitTemplate rabbitTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisScriptRegistry redisScriptRegistry;
+
+    @Value("${order.outbox.batch-size:500}")// 每批投递的事件数
+    private int batchSize;
+
+    @Value("${order.outbox.max-batches-per-tick:20}")// 每个周期最多连续投递的批数，积压较多时分多个周期追赶
+    private int maxBatchesPerTick;
+
+    @Value("${order.outbox.partitions:4}")
+    private int partitions;
+
+    @Value("${order.outbox.confirm-timeout-ms:5000}")// 等待发布确认的超时时间（毫秒）
+    private long confirmTimeoutMillis;
+
+    @Value("${order.outbox.leader-lease-ms:10000}")// 中继租约时长（毫秒）
+    private long leaderLeaseMillis;
+
+    @Value("${order.outbox.retention-hours:72}")// 已投递事件保留时长（小时）
+    private long retentionHours;
+
+    private final String owner = UUID.randomUUID().toString();
+
+    @Scheduled(fixedDelayString = "${order.outbox.relay-interval:200}")
+    public void relay() {
+        try {
+            if (!holdLeadership()) {
+                return;
+            }
+            // 一批投递完成且可能还有积压时继续下一批，单个周期的批数有上限，不长期占用调度线程
+            for (int i = 0; i < maxBatchesPerTick; i++) {
+                if (relayBatch() < batchSize || !holdLeadership()) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("订单事件中继异常，下个周期重试", e);
+        }
+    }
+
+    // 投递一批事件，返回成功投递的条数
+    private int relayBatch() {
+        List<OrderOutboxEvent> events = orderOutboxMapper.findPending(batchSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+        List<Long> sentIds = new ArrayList<>(events.size());
+        try {
+            rabbitTemplate.invoke(operations -> {
+                for (OrderOutboxEvent event : events) {
+                    int partition = (int) Math.floorMod(event.getOrderId(), (long) partitions);
+                    operations.send(RabbitMQConfig.ORDER_EVENT_EXCHANGE,
+                            RabbitMQConfig.orderEventRoutingKey(partition), toMessage(event));
+                    sentIds.add(event.getId());
+                }
+                operations.waitForConfirmsOrDie(confirmTimeoutMillis);
+                return null;
+            });
+        } catch (Exception e) {
+            // 未确认的整批都视为失败，下个周期从第一条重新投递
+            orderOutboxMapper.incrementAttempts(events.get(0).getId());
+            log.warn("订单事件投递失败: firstEventId={}, size={}", events.get(0).getId(), events.size(), e);
+            return 0;
+        }
+        orderOutboxMapper.markSent(sentIds);
+        return sentIds.size();
+    }
+
+    // 定期清理已投递的历史事件
+    @Scheduled(fixedDelayString = "${order.outbox.cleanup-interval:3600000}")
+    public void cleanup() {
+        try {
+            LocalDateTime before = LocalDateTime.now().minusHours(retentionHours);
+            int deleted;
+            do {
+                deleted = orderOutboxMapper.deleteSentBefore(before, 1000);
+            } while (deleted == 1000);
+        } catch (Exception e) {
+            log.warn("清理订单事件发件箱失败", e);
+        }
+    }
+
+    @PreDestroy
+    public void releaseLeadership() {
+        try {
+            redisScriptRegistry.execute(RELEASE_SCRIPT, Collections.singletonList(LEADER_KEY), owner);
+        } catch (Exception e) {
+            log.debug("释放订单事件中继租约失败", e);
+        }
+    }
+
+    // 抢占或续期中继租约
+    private boolean holdLeadership() {
+        Boolean acquired = stringRedisTemplate.opsForValue()
+                .setIfAbsent(LEADER_KEY, owner, Duration.ofMillis(leaderLeaseMillis));
+        if (Boolean.TRUE.equals(acquired)) {
+            return true;
+        }
+        Long renewed = redisScriptRegistry.execute(RENEW_SCRIPT, Collections.singletonList(LEADER_KEY),
+                owner, String.valueOf(leaderLeaseMillis));
+        return renewed != null && renewed == 1;
+    }
+
+    private Message toMessage(OrderOutboxEvent event) {
+        return MessageBuilder.withBody(event.getPayload().getBytes(StandardCharsets.UTF_8))
+                .setContentType(MessageProperties.CONTENT_TYPE_JSON)
+                .setContentEncoding(StandardCharsets.UTF_8.name())
+                .setMessageId(String.valueOf(event.getId()))
+                .setType(event.getEventType())
+                .setDeliveryMode(MessageDeliveryMode.PERSISTENT)
+                .build();
+    }
+}
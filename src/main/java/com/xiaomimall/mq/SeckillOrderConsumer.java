@@ -0,0 +1,75 @@
+package com.xiaomimall.mq;
+
+import com.xiaomimall.config.RabbitMQConfig;
+import com.xiaomimall.dto.SeckillOrderMessage;
+import com.xiaomimall.service.SeckillService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 秒杀订单消费者
+ * 批量消费Redis预扣成功的下单消息，合并写入秒杀订单与库存。
+ * 只有唯一索引冲突（重复投递或用户已有其他订单）视为确定性失败并回滚Redis；
+ * 数据库短暂不可用等其他异常经重试队列延迟重新投递，重试耗尽后转入死信队列，不回滚已扣的名额。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "seckill.async.enabled", havingValue = "true")
+public class SeckillOrderConsumer {
+
+    private final SeckillService seckillService;
+    private final MessageRetrier messageRetrier;
+
+    @RabbitListener(queues = RabbitMQConfig.SECKILL_ORDER_QUEUE, containerFactory = "seckillBatchContainerFactory")
+    public void onSeckillOrders(List<Message<SeckillOrderMessage>> messages) {
+        List<SeckillOrderMessage> payloads = messages.stream().map(Message::getPayload).collect(Collectors.toList());
+        try {
+            // 整批在一个事务内落库
+            seckillService.persistQueuedOrders(payloads);
+            return;
+        } catch (Exception e) {
+            // 批量失败（如重复投递、数据库异常），降级为逐条处理，定位失败的订单
+            log.warn("秒杀订单批量落库失败，降级逐条处理: size={}", messages.size(), e);
+        }
+        // 逐条处理的异常都在内部消化：整批重新投递会让已回滚Redis的消息再次落库，造成超卖
+        for (Message<SeckillOrderMessage> message : messages) {
+            persistOne(message);
+        }
+    }
+
+    private void persistOne(Message<SeckillOrderMessage> message) {
+        SeckillOrderMessage payload = message.getPayload();
+        try {
+            seckillService.persistQueuedOrders(Collections.singletonList(payload));
+            return;
+        } catch (DuplicateKeyException e) {
+            // 重复投递或用户已有其他订单，重试也不会成功，按已有订单确定结果
+            try {
+                seckillService.rejectQueuedOrder(payload, "系统异常，请重试");
+                return;
+            } catch (Exception ex) {
+                log.warn("秒杀订单冲突处理失败，稍后重试: orderNo={}", payload.getOrderNo(), ex);
+            }
+        } catch (Exception e) {
+            log.warn("秒杀订单落库失败，稍后重试: orderNo={}", payload.getOrderNo(), e);
+        }
+        int retries = MessageRetrier.retryCount(message.getHeaders().get(MessageRetrier.RETRY_COUNT_HEADER));
+        try {
+            messageRetrier.retryOrDeadLetter(RabbitMQConfig.SECKILL_ORDER_RETRY_QUEUE,
+                    RabbitMQConfig.SECKILL_ORDER_DEAD_LETTER_QUEUE, payload, retries);
+        } catch (Exception e) {
+            log.error("秒杀订单重试投递失败，需人工处理: userId={}, seckillId={}, orderNo={}",
+                    payload.getUserId(), payload.getSeckillId(), payload.getOrderNo(), e);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.xiaomimall.redis;
+
+import com.xiaomimall.util.OrderNoGenerator;
+import com.xiaomimall.util.SnowflakeIdGenerator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 雪花节点ID租约
+ * 启动时在Redis中用SET NX PX抢占一个空闲的节点ID（0 ~ 1023），定期续期，关闭时释放。
+ * 续期失败（如Redis长时间不可用导致租约过期）时重新抢占，避免两个节点使用同一ID。
+ * 每次抢占或续期成功后，以发起请求的时间 + 租约时长 - 安全余量作为节点ID有效期，
+ * 续期持续失败时在Redis租约过期前停止生成ID；启动时抢占失败则启动失败。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class NodeIdLease {
+
+    private static final String NODE_KEY_PREFIX = "idgen:node:";
+
+    // Lua脚本（resources/lua）
+    private static final String RENEW_SCRIPT = "lease_renew";
+    private static final String RELEASE_SCRIPT = "lease_release";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisScriptRegistry redisScriptRegistry;
+    private final OrderNoGenerator orderNoGenerator;
+
+    @Value("${id-generator.lease-ms:60000}")// 节点ID租约时长（毫秒），续期间隔为其三分之一
+    private long leaseMillis;
+
+    @Value("${id-generator.safety-margin-ms:10000}")// 有效期相对租约提前的余量，需大于时钟借用容忍值与节点间时钟偏差（毫秒）
+    private long safetyMarginMillis;
+
+    // 本实例的持有者标识
+    private final String owner = UUID.randomUUID().toString();
+
+    private volatile boolean leased;
+
+    // 租不到节点ID时启动失败，不使用可能与其他节点冲突的临时ID
+    @PostConstruct
+    public void init() {
+        try {
+            acquire();
+        } catch (Exception e) {
+            throw new IllegalStateException("节点ID租约获取失败", e);
+        }
+    }
+
+    // 定期续期，租约丢失时重新抢占
+    @Scheduled(fixedDelayString = "#{${id-generator.lease-ms:60000} / 3}")
+    public void renew() {
+        try {
+            if (leased) {
+                long requestedAt = System.currentTimeMillis();
+                Long renewed = redisScriptRegistry.execute(RENEW_SCRIPT,
+                        Collections.singletonList(nodeKey(orderNoGenerator.getNodeId())), owner, String.valueOf(leaseMillis));
+                if (renewed != null && renewed == 1) {
+                    orderNoGenerator.setValidUntil(validUntil(requestedAt));
+                    return;
+                }
+                // 租约已被他人持有，立即停止使用该节点ID
+                leased = false;
+                orderNoGenerator.setValidUntil(0);
+                log.warn("节点ID租约已丢失，重新抢占: nodeId={}", orderNoGenerator.getNodeId());
+            }
+            acquire();
+        } catch (Exception e) {
+            log.warn("节点ID租约续期失败: nodeId={}", orderNoGenerator.getNodeId(), e);
+        }
+    }
+
+    @PreDestroy
+    public void release() {
+        if (!leased) {
+            return;
+        }
+        try {
+            redisScriptRegistry.execute(RELEASE_SCRIPT,
+                    Collections.singletonList(nodeKey(orderNoGenerator.getNodeId())), owner);
+        } catch (Exception e) {
+            log.warn("节点ID租约释放失败，等待自然过期: nodeId={}", orderNoGenerator.getNodeId(), e);
+        }
+    }
+
+    // 从随机位置开始依次尝试，减少多个节点同时启动时的冲突
+    private void acquire() {
+        int slots = SnowflakeIdGenerator.MAX_NODE_ID + 1;
+        int start = ThreadLocalRandom.current().nextInt(slots);
+        for (int i = 0; i < slots; i++) {
+            int nodeId = (start + i) % slots;
+            long requestedAt = System.currentTimeMillis();
+            Boolean acquired = stringRedisTemplate.opsForValue()
+                    .setIfAbsent(nodeKey(nodeId), owner, Duration.ofMillis(leaseMillis));
+            if (Boolean.TRUE.equals(acquired)) {
+                orderNoGenerator.setNodeId(nodeId);
+                orderNoGenerator.setValidUntil(validUntil(requestedAt));
+                leased = true;
+                log.info("已租用雪花节点ID: {}", nodeId);
+                return;
+            }
+        }
+        throw new IllegalStateException("没有空闲的雪花节点ID");
+    }
+
+    // Redis中的租约不早于请求发出时开始计时，按请求时间推算的有效期偏保守
+    private long validUntil(long requestedAt) {
+        return requestedAt + leaseMillis - safetyMarginMillis;
+    }
+
+    private String nodeKey(int nodeId) {
+        return NODE_KEY_PREFIX + nodeId;
+    }
+}
@@ -0,0 +1,202 @@
+package com.xiaomimall.redis;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lua脚本注册表
+ * 启动时从 classpath:lua/*.lua 加载全部脚本（文件名即脚本名），计算SHA1并SCRIPT LOAD。
+ * 执行时只发送EVALSHA，Redis返回NOSCRIPT（重启、SCRIPT FLUSH）时回退EVAL，
+ * 并按脚本统计调用次数、耗时和回退次数。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RedisScriptRegistry {
+
+    private static final String SCRIPT_LOCATION = "classpath:lua/*.lua";
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    // 脚本名 -> 脚本（启动后只读）
+    private final Map<String, RegisteredScript> scripts = new LinkedHashMap<>();
+
+    // 单个脚本及其统计
+    private static final class RegisteredScript {
+        private final String name;
+        private final byte[] body;
+        private final String sha1;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder noScriptFallbacks = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        private RegisteredScript(String name, byte[] body, String sha1) {
+            this.name = name;
+            this.body = body;
+            this.sha1 = sha1;
+        }
+
+        private void record(long nanos) {
+            calls.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Resource[] resources = new PathMatchingResourcePatternResolver().getResources(SCRIPT_LOCATION);
+        for (Resource resource : resources) {
+            String filename = resource.getFilename();
+            if (filename == null) {
+                continue;
+            }
+            String name = filename.substring(0, filename.length() - ".lua".length());
+            byte[] body = resource.getContentAsByteArray();
+            scripts.put(name, new RegisteredScript(name, body, sha1(body)));
+        }
+        log.info("已注册Lua脚本: {}", scripts.keySet());
+
+        try {
+            loadAll();
+        } catch (Exception e) {
+            // Redis暂不可用时不影响启动，首次执行会通过EVAL回退加载
+            log.warn("Lua脚本预加载失败，将在首次执行时加载", e);
+        }
+    }
+
+    // SCRIPT LOAD全部脚本（Redis重启后可再次调用）
+    public void loadAll() {
+        stringRedisTemplate.execute((RedisCallback<Void>) connection -> {
+            for (RegisteredScript script : scripts.values()) {
+                connection.scriptingCommands().scriptLoad(script.body);
+            }
+            return null;
+        });
+    }
+
+    // 返回Redis脚本缓存中缺失的脚本名
+    public List<String> missingScripts() {
+        List<RegisteredScript> registered = new ArrayList<>(scripts.values());
+        String[] shas = registered.stream().map(s -> s.sha1).toArray(String[]::new);
+        List<Boolean> exists = stringRedisTemplate.execute(
+                (RedisCallback<List<Boolean>>) connection -> connection.scriptingCommands().scriptExists(shas));
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < registered.size(); i++) {
+            if (exists == null || !Boolean.TRUE.equals(exists.get(i))) {
+                missing.add(registered.get(i).name);
+            }
+        }
+        return missing;
+    }
+
+    // 执行返回整数的脚本（EVALSHA，NOSCRIPT时回退EVAL）
+    public Long execute(String name, List<String> keys, String... args) {
+        return run(name, ReturnType.INTEGER, keys, args);
+    }
+
+    // 执行返回数组的脚本，元素按UTF-8转为字符串
+    public List<String> executeForList(String name, List<String> keys, String... args) {
+        List<Object> result = run(name, ReturnType.MULTI, keys, args);
+        List<String> values = new ArrayList<>(result == null ? 0 : result.size());
+        if (result != null) {
+            for (Object value : result) {
+                values.add(value instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : String.valueOf(value));
+            }
+        }
+        return values;
+    }
+
+    private <T> T run(String name, ReturnType returnType, List<String> keys, String... args) {
+        RegisteredScript script = scripts.get(name);
+        if (script == null) {
+            throw new IllegalArgumentException("未注册的Lua脚本: " + name);
+        }
+        byte[][] keysAndArgs = new byte[keys.size() + args.length][];
+        int i = 0;
+        for (String key : keys) {
+            keysAndArgs[i++] = key.getBytes(StandardCharsets.UTF_8);
+        }
+        for (String arg : args) {
+            keysAndArgs[i++] = arg.getBytes(StandardCharsets.UTF_8);
+        }
+
+        long start = System.nanoTime();
+        try {
+            return stringRedisTemplate.execute((RedisCallback<T>) connection -> {
+                try {
+                    return connection.scriptingCommands().evalSha(script.sha1, returnType, keys.size(), keysAndArgs);
+                } catch (DataAccessException e) {
+                    if (!isNoScript(e)) {
+                        throw e;
+                    }
+                    // EVAL同时会把脚本写入Redis缓存，后续EVALSHA恢复命中
+                    script.noScriptFallbacks.increment();
+                    return connection.scriptingCommands().eval(script.body, returnType, keys.size(), keysAndArgs);
+                }
+            });
+        } catch (RuntimeException e) {
+            script.errors.increment();
+            throw e;
+        } finally {
+            script.record(System.nanoTime() - start);
+        }
+    }
+
+    // 各脚本的调用统计
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new TreeMap<>();
+        for (RegisteredScript script : scripts.values()) {
+            long calls = script.calls.sum();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("sha1", script.sha1);
+            item.put("calls", calls);
+            item.put("avgMicros", calls == 0 ? 0 : script.totalNanos.sum() / calls / 1000);
+            item.put("maxMicros", script.maxNanos.get() / 1000);
+            item.put("noScriptFallbacks", script.noScriptFallbacks.sum());
+            item.put("errors", script.errors.sum());
+            stats.put(script.name, item);
+        }
+        return stats;
+    }
+
+    private static boolean isNoScript(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String sha1(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.xiaomimall.security;
+
+import com.xiaomimall.entity.User;
+import com.xiaomimall.mapper.UserMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+// 按用户名加载用户，供JWT过滤器和登录认证使用（principal即User实体，@CurrentUser依赖于此）
+@Service
+@RequiredArgsConstructor
+public class UserDetailsServiceImpl implements UserDetailsService {
+
+    private final UserMapper userMapper;
+
+    @Override
+    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        User user = userMapper.findByUsername(username);
+        if (user == null) {
+            throw new UsernameNotFoundException("用户不存在: " + username);
+        }
+        return user;
+    }
+}
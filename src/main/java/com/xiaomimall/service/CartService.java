@@ -13,4 +13,5 @@ public interface CartService {
     void removeCartItem(Long userId, Long productId);
     void clearCart(Long userId);
     CartResponseDTO getCart(Long userId);
+    void evictProductCache(Long productId);//  商品新增、修改或删除后清除购物车使用的商品缓存
 }
\ No newline at end of file
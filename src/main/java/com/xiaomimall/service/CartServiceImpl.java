@@ -5,11 +5,12 @@ import com.xiaomimall.dto.CartResponseDTO;
 import com.xiaomimall.entity.Product;
 import com.xiaomimall.exception.NotFoundException;
 import com.xiaomimall.mapper.ProductMapper;
+import com.xiaomimall.redis.RedisScriptRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
-import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -27,6 +28,8 @@ public class CartServiceImpl implements CartService {
     
     private final RedisTemplate<String, Object> redisTemplate;
     private final ProductMapper productMapper;
+    private final RedisScriptRegistry redisScriptRegistry;
+    private final ProductIdFilter productIdFilter;
     
     // Redis键前缀
     private static final String CART_KEY_PREFIX = "cart:";
@@ -36,39 +39,20 @@ public class CartServiceImpl implements CartService {
     private static final long CART_EXPIRE_DAYS = 7;
     // 商品缓存有效期（1小时）
     private static final long PRODUCT_CACHE_EXPIRE_HOURS = 1;
+    // 不存在商品的空值缓存（30秒）
+    private static final String PRODUCT_NULL_MARKER = "NULL";
+    private static final long PRODUCT_NULL_EXPIRE_SECONDS = 30;
     
-    // Lua脚本：原子性添加商品到购物车
-    private static final String ADD_TO_CART_SCRIPT = 
-        "local cartKey = KEYS[1] " +
-        "local productId = ARGV[1] " +
-        "local quantity = tonumber(ARGV[2]) " +
-        "local currentQuantity = redis.call('HGET', cartKey, productId) " +
-        "local newQuantity = quantity " +
-        "if currentQuantity then " +
-        "  newQuantity = tonumber(currentQuantity) + quantity " +
-        "end " +
-        "redis.call('HSET', cartKey, productId, newQuantity) " +
-        "redis.call('EXPIRE', cartKey, 7 * 24 * 60 * 60) " +  // 7天过期
-        "return newQuantity";
-
-    // Lua脚本：原子性更新购物车商品数量
-    private static final String UPDATE_CART_ITEM_SCRIPT = 
-        "local cartKey = KEYS[1] " +
-        "local productId = ARGV[1] " +
-        "local quantity = tonumber(ARGV[2]) " +
-        "local exists = redis.call('HEXISTS', cartKey, productId) " +
-        "if exists == 0 then " +
-        "  return 0 " +  // 商品不存在
-        "end " +
-        "redis.call('HSET', cartKey, productId, quantity) " +
-        "return 1";     // 更新成功
+    // Lua脚本：原子性更新购物车商品数量（resources/lua）
+    private static final String UPDATE_CART_ITEM_SCRIPT = "cart_update_item";
 
     @Override
     public void addToCart(Long userId, CartItemDTO item) {
         String cartKey = getCartKey(userId);
 
-        // 检查商品是否存在
-        Product product = productMapper.findById(item.getProductId());
+        // 检查商品是否存在：以数据库为准，布隆过滤器判定不存在的ID不查数据库
+        Product product = productIdFilter.mightContain(item.getProductId())
+                ? productMapper.findById(item.getProductId()) : null;
         if (product == null || product.getStatus() != 1) {
             throw new NotFoundException("商品不存在或已下架");
         }
@@ -91,11 +75,10 @@ public class CartServiceImpl implements CartService {
         }
         
         // 使用Lua脚本原子性更新购物车商品数量
-        RedisScript<Long> script = new DefaultRedisScript<>(UPDATE_CART_ITEM_SCRIPT, Long.class);
-        Long result = redisTemplate.execute(script, Collections.singletonList(cartKey), 
-                                          item.getProductId().toString(), item.getQuantity().toString());
+        Long result = redisScriptRegistry.execute(UPDATE_CART_ITEM_SCRIPT, Collections.singletonList(cartKey),
+                item.getProductId().toString(), item.getQuantity().toString());
         
-        if (result == 0) {
+        if (result == null || result == 0) {
             throw new NotFoundException("购物车中不存在该商品");
         }
     }
@@ -170,22 +153,49 @@ public class CartServiceImpl implements CartService {
         return new CartResponseDTO(items, totalPrice, totalItems);
     }
     
+    // 清除商品缓存（含空值标记），在事务中调用时提交后再清除一次，避免提交前被并发读回填旧值
+    @Override
+    public void evictProductCache(Long productId) {
+        String productCacheKey = PRODUCT_CACHE_PREFIX + productId;
+        redisTemplate.delete(productCacheKey);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    redisTemplate.delete(productCacheKey);
+                }
+            });
+        }
+    }
+
     // 获取缓存的商品信息，如果缓存不存在则查询数据库并缓存
     private Product getCachedProduct(Long productId) {
+        // 布隆过滤器判定不存在，直接返回
+        if (!productIdFilter.mightContain(productId)) {
+            return null;
+        }
+
         String productCacheKey = PRODUCT_CACHE_PREFIX + productId;
         
-        // 尝试从缓存获取
-        Product product = (Product) redisTemplate.opsForValue().get(productCacheKey);
-        if (product != null) {
+        // 尝试从缓存获取（空值标记表示商品不存在）
+        Object cached = redisTemplate.opsForValue().get(productCacheKey);
+        if (cached instanceof Product product) {
             return product;
         }
+        if (PRODUCT_NULL_MARKER.equals(cached)) {
+            return null;
+        }
         
         // 缓存未命中，查询数据库
-        product = productMapper.findById(productId);
+        Product product = productMapper.findById(productId);
         if (product != null) {
             // 缓存商品信息
             redisTemplate.opsForValue().set(productCacheKey, product, 
                                           PRODUCT_CACHE_EXPIRE_HOURS, TimeUnit.HOURS);
+        } else {
+            // 已删除或布隆误判的商品，短时间缓存空值
+            redisTemplate.opsForValue().set(productCacheKey, PRODUCT_NULL_MARKER,
+                                          PRODUCT_NULL_EXPIRE_SECONDS, TimeUnit.SECONDS);
         }
         
         return product;
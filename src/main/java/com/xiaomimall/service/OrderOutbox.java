@@ -0,0 +1,66 @@
+package com.xiaomimall.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaomimall.dto.OrderEventMessage;
+import com.xiaomimall.entity.Order;
+import com.xiaomimall.entity.OrderEventType;
+import com.xiaomimall.entity.OrderOutboxEvent;
+import com.xiaomimall.mapper.OrderOutboxMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 订单事件发件箱
+ * 订单状态变化时在同一事务内写入事件，事务回滚事件一起回滚；
+ * 投递由OrderOutboxRelay异步完成，请求链路只多一次INSERT。
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderOutbox {
+
+    private final OrderOutboxMapper orderOutboxMapper;
+    private final ObjectMapper objectMapper;
+
+    // 写入单个订单事件，必须在订单状态变更的事务中调用
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(OrderEventType eventType, Order order) {
+        orderOutboxMapper.insertBatch(List.of(
+                toEvent(eventType, order.getId(), order.getUserId(), order.getOrderNo())));
+    }
+
+    // 批量写入同类事件（批量超时取消）
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void appendAll(OrderEventType eventType, List<Order> orders) {
+        if (orders.isEmpty()) {
+            return;
+        }
+        List<OrderOutboxEvent> events = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            events.add(toEvent(eventType, order.getId(), order.getUserId(), order.getOrderNo()));
+        }
+        orderOutboxMapper.insertBatch(events);
+    }
+
+    private OrderOutboxEvent toEvent(OrderEventType eventType, Long orderId, Long userId, String orderNo) {
+        // 事件ID独立生成，不占用订单号序列
+        OrderEventMessage message = new OrderEventMessage(UUID.randomUUID().toString(), eventType,
+                orderId, userId, orderNo, LocalDateTime.now());
+        OrderOutboxEvent event = new OrderOutboxEvent();
+        event.setOrderId(orderId);
+        event.setEventType(eventType.name());
+        try {
+            event.setPayload(objectMapper.writeValueAsString(message));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("订单事件序列化失败", e);
+        }
+        return event;
+    }
+}
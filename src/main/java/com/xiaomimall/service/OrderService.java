@@ -1,7 +1,9 @@
 package com.xiaomimall.service;
 
+import com.xiaomimall.dto.CursorPageResponse;
 import com.xiaomimall.dto.OrderCreateDTO;
 import com.xiaomimall.dto.OrderDTO;
+import com.xiaomimall.dto.OrderSummaryDTO;
 
 import java.util.List;
 
@@ -12,8 +14,10 @@ import java.util.List;
 public interface OrderService {
     OrderDTO createOrder(Long userId, OrderCreateDTO orderCreateDTO);//  创建订单
     void cancelOrder(Long userId, Long orderId);//  取消订单
+    int cancelExpiredOrders(List<Long> orderIds);//  批量取消超时未支付订单
     OrderDTO getOrderDetail(Long userId, Long orderId);//  获取订单详情
     List<OrderDTO> getUserOrders(Long userId);//  获取用户订单
+    CursorPageResponse<OrderSummaryDTO> getUserOrderPage(Long userId, String cursor, int pageSize);//  游标分页获取用户订单
     void payOrder(Long userId, Long orderId);//  支付订单
     void deliverOrder(Long orderId, String trackingNumber);//  发货
     void completeOrder(Long userId, Long orderId);//  完成订单
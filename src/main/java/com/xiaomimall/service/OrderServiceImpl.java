@@ -1,5 +1,7 @@
 package com.xiaomimall.service;
 
+import com.xiaomimall.cache.OrderDetailCache;
+import com.xiaomimall.cache.ProductCacheEvictor;
 import com.xiaomimall.dto.*;
 import com.xiaomimall.entity.*;
 import com.xiaomimall.exception.InvalidAddressException;
@@ -7,6 +9,7 @@ import com.xiaomimall.exception.InvalidCartException;
 import com.xiaomimall.exception.NotFoundException;
 import com.xiaomimall.exception.OutOfStockException;
 import com.xiaomimall.mapper.*;
+import com.xiaomimall.util.CursorCodec;
 import com.xiaomimall.util.OrderNoGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -19,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 /**
@@ -34,14 +38,31 @@ public class OrderServiceImpl implements OrderService {
     private final ProductMapper productMapper;
     private final AddressMapper addressMapper;
     private final PaymentMapper paymentMapper;
-    private final ProductImageMapper productImageMapper;
+    private final ProductStockCache productStockCache;
+    private final OrderTimeoutQueue orderTimeoutQueue;
+    private final ProductMainImageCache productMainImageCache;
+    private final OrderNoGenerator orderNoGenerator;
+    private final OrderDetailCache orderDetailCache;
+    private final OrderOutbox orderOutbox;
+    private final OrderSubmitTokenService orderSubmitTokenService;
+    private final ProductCacheEvictor productCacheEvictor;
 
     // 移除了原有的硬编码常量定义
 
+    // 订单列表每个订单最多展示的缩略图数
+    private static final int ORDER_LIST_THUMBNAILS = 4;
+    private static final int MAX_ORDER_PAGE_SIZE = 100;
+
     // 创建订单
     @Override
     @Transactional
     public OrderDTO createOrder(Long userId, OrderCreateDTO orderCreateDTO) {
+        // 0. 消费下单令牌，重复提交直接返回首次提交的订单
+        Long submittedOrderId = orderSubmitTokenService.consume(userId, orderCreateDTO.getSubmitToken());
+        if (submittedOrderId != null) {
+            return getOrderDetail(userId, submittedOrderId);
+        }
+
         // 1. 验证收货地址
         UserAddress address = addressMapper.findById(orderCreateDTO.getAddressId(), userId);
         if (address == null) {
@@ -54,8 +75,9 @@ public class OrderServiceImpl implements OrderService {
             throw new InvalidCartException("未选择任何商品");
         }
 
-        // 3. 验证库存并锁定
-        List<Product> products = validateAndLockStock(selectedItems);
+        // 3. 验证库存并锁定（订单号先生成，作为Redis库存预占的登记号）
+        String orderNo = orderNoGenerator.generateOrderNo();
+        List<Product> products = validateAndLockStock(orderNo, selectedItems);
 
         try {
             // 4. 计算订单总金额
@@ -63,7 +85,7 @@ public class OrderServiceImpl implements OrderService {
 
             // 5. 创建订单
             Order order = new Order();
-            order.setOrderNo(OrderNoGenerator.generateOrderNo());
+            order.setOrderNo(orderNo);
             order.setUserId(userId);
             order.setTotalAmount(totalAmount);
             order.setPaymentAmount(totalAmount); // 实际支付金额（暂不考虑优惠）
@@ -79,7 +101,12 @@ public class OrderServiceImpl implements OrderService {
             List<OrderItem> orderItems = createOrderItems(order.getId(), selectedItems, products);
             orderItemMapper.insertBatch(orderItems);
 
-            // 8. 返回订单详情
+            // 8. 登记支付截止时间，超时未支付自动取消
+            orderTimeoutQueue.register(order.getId());
+            orderOutbox.append(OrderEventType.ORDER_CREATED, order);
+            orderSubmitTokenService.complete(userId, orderCreateDTO.getSubmitToken(), order.getId());
+
+            // 9. 返回订单详情
             return convertToOrderDTO(order, orderItems, address);
 
         } catch (Exception e) {
@@ -106,36 +133,110 @@ public class OrderServiceImpl implements OrderService {
         return total;
     }
     
-    // 验证库存并锁定（保持不变）
-    private List<Product> validateAndLockStock(List<CartItemDTO> items) {
-        List<Product> products = new ArrayList<>();
-        
-        for (CartItemDTO item : items) {
-            Product product = productMapper.findById(item.getProductId());
+    // 验证库存并锁定
+    // 同一商品多行先合并、按商品ID升序排列。数据库模式的商品一次FOR UPDATE批量查询 + 一条CASE条件更新，
+    // 开启库存预占的商品由Redis一次原子预占，往返次数不再随购物车商品数增长；库存不足时一次性报告全部缺货商品
+    private List<Product> validateAndLockStock(String orderNo, List<CartItemDTO> items) {
+        List<CartItemDTO> merged = mergeItems(items);
+        List<Long> productIds = merged.stream().map(CartItemDTO::getProductId).collect(Collectors.toList());
+
+        // 先无锁读取商品，按库存模式分组；预占模式的商品不加数据库行锁
+        Map<Long, Product> productMap = productMapper.findByIds(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, p -> p));
+        List<CartItemDTO> dbItems = new ArrayList<>();
+        List<CartItemDTO> cachedItems = new ArrayList<>();
+        for (CartItemDTO item : merged) {
+            Product product = productMap.get(item.getProductId());
             if (product == null || product.getStatus() != 1) {
                 throw new NotFoundException("商品不存在或已下架: " + item.getProductId());
             }
-            
-            if (product.getStock() < item.getQuantity()) {
-                throw new OutOfStockException("商品库存不足: " + product.getName());
+            (productStockCache.isCached(product) ? cachedItems : dbItems).add(item);
+        }
+
+        List<StockShortageDTO> shortages = new ArrayList<>();
+        if (!dbItems.isEmpty()) {
+            List<Long> dbProductIds = dbItems.stream().map(CartItemDTO::getProductId).collect(Collectors.toList());
+            productMapper.findByIdsForUpdate(dbProductIds).forEach(p -> productMap.put(p.getId(), p));
+            // 刚从预占模式切回的商品可能还有未结算的流水和在途预占，需从可用库存中减去
+            Map<Long, Long> pending = productStockCache.pending(dbProductIds);
+            for (CartItemDTO item : dbItems) {
+                Product product = productMap.get(item.getProductId());
+                int available = (int) Math.max(0, product.getStock() - pending.getOrDefault(product.getId(), 0L));
+                if (available < item.getQuantity()) {
+                    shortages.add(new StockShortageDTO(product.getId(), product.getName(), item.getQuantity(), available));
+                }
             }
-            
-            // 锁定库存（减少库存）
-            int updated = productMapper.reduceStock(product.getId(), item.getQuantity());
-            if (updated == 0) {
-                throw new OutOfStockException("商品库存不足: " + product.getName());
+        }
+        if (!shortages.isEmpty()) {
+            if (!cachedItems.isEmpty()) {
+                shortages.addAll(productStockCache.findShortages(cachedItems, productMap));
             }
-            
-            products.add(product);
+            throw new OutOfStockException(shortageMessage(shortages), shortages);
         }
-        
-        return products;
+
+        if (!dbItems.isEmpty()) {
+            // 行已被锁定，正常情况下全部更新成功；条件更新仍保留库存校验兜底
+            int updated = productMapper.reduceStockBatch(dbItems);
+            if (updated != dbItems.size()) {
+                log.error("批量扣减库存行数不符: expected={}, updated={}", dbItems.size(), updated);
+                throw new OutOfStockException("商品库存不足，请刷新后重试");
+            }
+            productCacheEvictor.evict(dbItems.stream().map(CartItemDTO::getProductId).collect(Collectors.toList()));
+        }
+        if (!cachedItems.isEmpty()) {
+            // 预占失败时数据库部分随事务回滚
+            shortages = productStockCache.reserve(orderNo, cachedItems, productMap);
+            if (!shortages.isEmpty()) {
+                throw new OutOfStockException(shortageMessage(shortages), shortages);
+            }
+        }
+
+        return new ArrayList<>(productMap.values());
     }
-    
-    // 释放库存（回滚操作）（保持不变）
-    private void releaseStock(List<CartItemDTO> items) {
+
+    // 合并同一商品的多行，并按商品ID升序排列（固定加锁顺序）
+    private List<CartItemDTO> mergeItems(List<CartItemDTO> items) {
+        Map<Long, Integer> quantities = new TreeMap<>();
         for (CartItemDTO item : items) {
-            productMapper.increaseStock(item.getProductId(), item.getQuantity());
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        List<CartItemDTO> merged = new ArrayList<>(quantities.size());
+        quantities.forEach((productId, quantity) -> merged.add(new CartItemDTO(productId, quantity)));
+        return merged;
+    }
+
+    private String shortageMessage(List<StockShortageDTO> shortages) {
+        if (shortages.size() == 1) {
+            StockShortageDTO shortage = shortages.get(0);
+            return shortage.getAvailable() == null
+                    ? "商品 '" + shortage.getProductName() + "' 库存不足"
+                    : "商品 '" + shortage.getProductName() + "' 库存不足，剩余 " + shortage.getAvailable() + " 件";
+        }
+        return shortages.size() + " 件商品库存不足: " + shortages.stream()
+                .map(StockShortageDTO::getProductName)
+                .collect(Collectors.joining("、"));
+    }
+
+    // 释放库存（回滚操作）
+    // 按商品当前的库存模式归还：数据库模式直接加回，预占模式在事务提交后归还Redis并记入待结算增量
+    private void releaseStock(List<CartItemDTO> items) {
+        List<CartItemDTO> merged = mergeItems(items);
+        List<Long> productIds = merged.stream().map(CartItemDTO::getProductId).collect(Collectors.toList());
+        Map<Long, Product> productMap = productMapper.findByIds(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, p -> p));
+
+        List<CartItemDTO> dbItems = new ArrayList<>();
+        List<CartItemDTO> cachedItems = new ArrayList<>();
+        for (CartItemDTO item : merged) {
+            Product product = productMap.get(item.getProductId());
+            (product != null && productStockCache.isCached(product) ? cachedItems : dbItems).add(item);
+        }
+        if (!dbItems.isEmpty()) {
+            productMapper.increaseStockBatch(dbItems);
+            productCacheEvictor.evict(dbItems.stream().map(CartItemDTO::getProductId).collect(Collectors.toList()));
+        }
+        if (!cachedItems.isEmpty()) {
+            productStockCache.release(cachedItems);
         }
     }
     
@@ -144,6 +245,9 @@ public class OrderServiceImpl implements OrderService {
         Map<Long, Product> productMap = products.stream()
                 .collect(Collectors.toMap(Product::getId, p -> p));
         
+        // 一次批量获取全部商品主图
+        Map<Long, String> mainImages = productMainImageCache.getMainImages(productMap.keySet());
+
         List<OrderItem> orderItems = new ArrayList<>();
         
         for (CartItemDTO item : cartItems) {
@@ -154,7 +258,7 @@ public class OrderServiceImpl implements OrderService {
             orderItem.setOrderId(orderId);
             orderItem.setProductId(product.getId());
             orderItem.setProductName(product.getName());
-            orderItem.setProductImage(getMainImage(product.getId())); // 获取主图
+            orderItem.setProductImage(mainImages.get(product.getId())); // 主图
             orderItem.setPrice(product.getPrice());
             orderItem.setQuantity(item.getQuantity());
             orderItem.setTotalPrice(product.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
@@ -165,34 +269,6 @@ public class OrderServiceImpl implements OrderService {
         return orderItems;
     }
     
-    // 获取商品主图（保持不变）
-    private String getMainImage(Long productId) {
-        // 参数校验
-        if (productId == null) {
-            return "https://cdn.example.com/default-product.jpg";
-        }
-
-        try {
-            // 优先查询主图
-            ProductImage mainImage = productImageMapper.findMainImageByProductId(productId);
-
-            // 如果没有主图，则获取第一张图片作为降级方案
-            if (mainImage == null) {
-                List<ProductImage> images = productImageMapper.findByProductId(productId);
-                if (!images.isEmpty()) {
-                    mainImage = images.getFirst(); // 获取第一张图片
-                }
-            }
-            if (mainImage != null && mainImage.getUrl() != null && !mainImage.getUrl().trim().isEmpty()) {
-                return mainImage.getUrl();
-            }
-        } catch (Exception e) {log.error("获取商品主图时发生异常，商品ID：{}", productId, e);
-        }
-
-        // 返回默认图片
-        return "https://cdn.example.com/default-product.jpg";
-    }
-    
     // 取消订单
     @Override
     @Transactional
@@ -207,27 +283,69 @@ public class OrderServiceImpl implements OrderService {
             throw new IllegalStateException("订单状态为：" + OrderStatus.fromCode(order.getStatus()).getDescription() + "，只能取消待支付订单");
         }
 
-       int rowsAffected = orderMapper.updateOrderStatus(orderId, userId, OrderStatus.CANCELLED.getCode());
+        int rowsAffected = orderMapper.updateOrderStatusFrom(orderId, userId,
+                OrderStatus.PENDING.getCode(), OrderStatus.CANCELLED.getCode());
         if (rowsAffected == 0) {
             throw new IllegalStateException("订单取消失败，可能已被其他操作修改");
         }
+        orderTimeoutQueue.remove(orderId);
+        orderDetailCache.evict(orderId);
+        orderOutbox.append(OrderEventType.ORDER_CANCELLED, order);
 
         List<OrderItem> orderItems = orderItemMapper.findByOrderId(orderId);
         if (orderItems != null && !orderItems.isEmpty()) {
-            for (OrderItem item : orderItems) {
-                productMapper.increaseStock(item.getProductId(), item.getQuantity());
-            }
+            List<CartItemDTO> items = orderItems.stream()
+                    .map(item -> new CartItemDTO(item.getProductId(), item.getQuantity()))
+                    .collect(Collectors.toList());
+            releaseStock(items);
         }
     }
 
 
+    // 批量取消超时未支付订单：锁定仍待支付的订单，一条语句改状态，订单项合并后一次归还库存
+    @Override
+    @Transactional
+    public int cancelExpiredOrders(List<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+        // 已支付或已取消的订单不会被锁定，与支付、手动取消互不覆盖
+        List<Order> expiredOrders = orderMapper.lockByStatus(orderIds, OrderStatus.PENDING.getCode());
+        if (expiredOrders.isEmpty()) {
+            return 0;
+        }
+        List<Long> expiredIds = expiredOrders.stream().map(Order::getId).collect(Collectors.toList());
+        orderMapper.updateStatusBatch(expiredIds, OrderStatus.CANCELLED.getCode());
+        expiredIds.forEach(orderDetailCache::evict);
+        orderOutbox.appendAll(OrderEventType.ORDER_CANCELLED, expiredOrders);
+
+        List<CartItemDTO> items = orderItemMapper.findByOrderIds(expiredIds).stream()
+                .map(item -> new CartItemDTO(item.getProductId(), item.getQuantity()))
+                .collect(Collectors.toList());
+        if (!items.isEmpty()) {
+            releaseStock(items);
+        }
+        return expiredIds.size();
+    }
+
     // 获取订单详情（保持不变）
     @Override
     public OrderDTO getOrderDetail(Long userId, Long orderId) {
-        Order order = orderMapper.findByIdAndUserId(orderId, userId);
-        if (order == null) {
+        // 优先读二级缓存，缓存条目带有所属用户，不属于当前用户按不存在处理
+        OrderDetailCache.Entry entry = orderDetailCache.get(orderId, () -> loadOrderDetail(orderId));
+        if (entry == null || !entry.userId().equals(userId)) {
             throw new NotFoundException("订单不存在");
         }
+        return entry.order();
+    }
+
+    // 从数据库组装订单详情（订单、地址、订单项）
+    private OrderDetailCache.Entry loadOrderDetail(Long orderId) {
+        Order order = orderMapper.findById(orderId);
+        if (order == null) {
+            return null;
+        }
+        Long userId = order.getUserId();
 
         // 获取订单地址
         UserAddress address = addressMapper.findById(order.getAddressId(), userId);
@@ -243,7 +361,7 @@ public class OrderServiceImpl implements OrderService {
             orderItems = Collections.emptyList();
         }
 
-        return convertToOrderDTO(order, orderItems, address);
+        return new OrderDetailCache.Entry(userId, convertToOrderDTO(order, orderItems, address));
     }
 
 
@@ -257,6 +375,64 @@ public class OrderServiceImpl implements OrderService {
         }).collect(Collectors.toList());
     }
 
+    // 游标分页获取用户订单：按(created_at, id)倒序定位，每页订单项缩略信息一次批量查询
+    @Override
+    public CursorPageResponse<OrderSummaryDTO> getUserOrderPage(Long userId, String cursor, int pageSize) {
+        pageSize = Math.min(Math.max(pageSize, 1), MAX_ORDER_PAGE_SIZE);
+        LocalDateTime cursorCreatedAt = null;
+        Long cursorId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] parts = CursorCodec.decode(cursor, 2);
+            try {
+                cursorCreatedAt = LocalDateTime.parse(parts[0]);
+                cursorId = Long.valueOf(parts[1]);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("无效的分页游标", e);
+            }
+        }
+
+        // 多取一条判断是否还有下一页
+        List<Order> orders = orderMapper.findPageByUserId(userId, cursorCreatedAt, cursorId, pageSize + 1);
+        boolean hasMore = orders.size() > pageSize;
+        if (hasMore) {
+            orders = orders.subList(0, pageSize);
+        }
+
+        Map<Long, List<OrderItem>> itemsByOrder = orders.isEmpty() ? Collections.emptyMap()
+                : orderItemMapper.findThumbnailsByOrderIds(orders.stream().map(Order::getId).collect(Collectors.toList()))
+                        .stream().collect(Collectors.groupingBy(OrderItem::getOrderId));
+
+        List<OrderSummaryDTO> list = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            List<OrderItem> items = itemsByOrder.getOrDefault(order.getId(), Collections.emptyList());
+            OrderSummaryDTO dto = new OrderSummaryDTO();
+            dto.setId(order.getId());
+            dto.setOrderNo(order.getOrderNo());
+            dto.setStatus(order.getStatus());
+            try {
+                dto.setStatusDescription(OrderStatus.fromCode(order.getStatus()).getDescription());
+            } catch (IllegalArgumentException e) {
+                dto.setStatusDescription("未知状态");
+            }
+            dto.setPaymentAmount(order.getPaymentAmount());
+            dto.setCreatedAt(order.getCreatedAt());
+            dto.setItemCount(items.stream().mapToInt(OrderItem::getQuantity).sum());
+            dto.setThumbnails(items.stream().map(OrderItem::getProductImage)
+                    .limit(ORDER_LIST_THUMBNAILS).collect(Collectors.toList()));
+            list.add(dto);
+        }
+
+        CursorPageResponse<OrderSummaryDTO> page = new CursorPageResponse<>();
+        page.setPageSize(pageSize);
+        page.setHasMore(hasMore);
+        page.setList(list);
+        if (hasMore) {
+            Order last = orders.get(orders.size() - 1);
+            page.setNextCursor(CursorCodec.encode(last.getCreatedAt().toString(), last.getId().toString()));
+        }
+        return page;
+    }
+
     // 支付订单
     @Override
     @Transactional
@@ -270,12 +446,16 @@ public class OrderServiceImpl implements OrderService {
             throw new IllegalStateException("订单状态为：" + OrderStatus.fromCode(order.getStatus()).getDescription() + "，无法支付");
         }
 
-        int rowsAffected = orderMapper.updateOrderStatus(orderId, userId, OrderStatus.PAID.getCode());
+        int rowsAffected = orderMapper.updateOrderStatusFrom(orderId, userId,
+                OrderStatus.PENDING.getCode(), OrderStatus.PAID.getCode());
         if (rowsAffected == 0) {
             throw new IllegalStateException("支付失败，订单状态已被其他操作修改");
         }
+        orderTimeoutQueue.remove(orderId);
+        orderDetailCache.evict(orderId);
+        orderOutbox.append(OrderEventType.ORDER_PAID, order);
 
-      String paymentNo = OrderNoGenerator.generateOrderNo();
+        String paymentNo = orderNoGenerator.generatePaymentNo();
 
         // 记录支付信息
         Payment payment = new Payment();
@@ -312,6 +492,8 @@ public class OrderServiceImpl implements OrderService {
                 trackingNumber,
                 now
         );
+        orderDetailCache.evict(orderId);
+        orderOutbox.append(OrderEventType.ORDER_SHIPPED, order);
     }
 
 
@@ -341,6 +523,8 @@ public class OrderServiceImpl implements OrderService {
                 OrderStatus.COMPLETED.getCode(),
                 now
         );
+        orderDetailCache.evict(orderId);
+        orderOutbox.append(OrderEventType.ORDER_COMPLETED, order);
     }
 
 
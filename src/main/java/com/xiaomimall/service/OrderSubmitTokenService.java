@@ -0,0 +1,138 @@
+package com.xiaomimall.service;
+
+import com.xiaomimall.exception.ConflictException;
+import com.xiaomimall.redis.RedisScriptRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 下单令牌（防重复提交）
+ * 进入下单页时签发一次性令牌，提交时原子地把令牌从NEW切换为PENDING，
+ * 重复点击或客户端重试拿不到令牌，不会重复执行下单事务；
+ * 事务提交后令牌记录订单ID，重复请求直接返回首次提交的结果；
+ * 事务回滚时只有令牌仍处于本次请求设置的处理中状态才恢复可用，不覆盖处理中状态过期后其他请求的结果。
+ * 客户端全部升级前令牌可选（order.submit-token.required=false），未带令牌的请求不做防重。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderSubmitTokenService {
+
+    private static final String TOKEN_PREFIX = "order:submit:token:";
+    private static final String STATE_NEW = "NEW";
+    private static final String STATE_PENDING_PREFIX = "PENDING:";
+
+    // Lua脚本（resources/lua）
+    private static final String CONSUME_SCRIPT = "order_submit_token_consume";
+    private static final String RESET_SCRIPT = "order_submit_token_reset";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisScriptRegistry redisScriptRegistry;
+
+    @Value("${order.submit-token.ttl-seconds:1800}")// 令牌及下单结果的有效期（秒）
+    private long ttlSeconds;
+
+    @Value("${order.submit-token.pending-ttl-seconds:60}")// 处理中状态的有效期，需大于下单事务耗时（秒）
+    private long pendingTtlSeconds;
+
+    @Value("${order.submit-token.required:false}")// 是否强制下单令牌（灰度期间为false）
+    private boolean required;
+
+    // 签发下单令牌
+    public String issue(Long userId) {
+        String token = UUID.randomUUID().toString().replace("-", "");
+        stringRedisTemplate.opsForValue().set(tokenKey(userId, token), STATE_NEW, Duration.ofSeconds(ttlSeconds));
+        return token;
+    }
+
+    /**
+     * 消费下单令牌，必须在下单事务内调用
+     * 返回null表示消费成功（或未带令牌且不强制），调用方继续下单并在订单落库后调用complete；
+     * 返回订单ID表示该令牌已成功下单，调用方直接返回该订单
+     */
+    public Long consume(Long userId, String token) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("下单令牌必须在事务内消费");
+        }
+        if (token == null || token.isBlank()) {
+            if (required) {
+                throw new IllegalArgumentException("下单令牌不能为空");
+            }
+            return null;
+        }
+        String key = tokenKey(userId, token);
+        // 本次请求的标识，回滚时据此判断令牌是否仍由本次请求持有
+        String requestId = UUID.randomUUID().toString();
+        String pendingState = STATE_PENDING_PREFIX + requestId;
+        List<String> result = redisScriptRegistry.executeForList(CONSUME_SCRIPT, Collections.singletonList(key),
+                String.valueOf(pendingTtlSeconds * 1000), requestId);
+        switch (result.get(0)) {
+            case "1" -> {
+                // 事务回滚时恢复令牌，用户可用同一令牌重试
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status != STATUS_COMMITTED) {
+                            reset(key, pendingState);
+                        }
+                    }
+                });
+                return null;
+            }
+            case "2" -> throw new ConflictException("订单正在提交，请勿重复操作");
+            case "3" -> {
+                return Long.valueOf(result.get(1));
+            }
+            default -> throw new IllegalArgumentException("下单令牌无效或已过期，请刷新页面后重试");
+        }
+    }
+
+    // 订单已落库，事务提交后令牌记录订单ID（未带令牌时忽略）
+    public void complete(Long userId, String token, Long orderId) {
+        if (token == null || token.isBlank()) {
+            return;
+        }
+        String key = tokenKey(userId, token);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                setState(key, orderId.toString());
+            }
+        });
+    }
+
+    // 仍处于本次请求的处理中状态时恢复为NEW
+    private void reset(String key, String pendingState) {
+        try {
+            redisScriptRegistry.execute(RESET_SCRIPT, Collections.singletonList(key),
+                    pendingState, String.valueOf(ttlSeconds * 1000));
+        } catch (Exception e) {
+            // 令牌停留在处理中状态，到期后失效，用户刷新页面重新获取
+            log.warn("恢复下单令牌失败: key={}", key, e);
+        }
+    }
+
+    private void setState(String key, String state) {
+        try {
+            stringRedisTemplate.opsForValue().set(key, state, Duration.ofSeconds(ttlSeconds));
+        } catch (Exception e) {
+            // 令牌停留在处理中状态，到期后失效，用户刷新页面重新获取
+            log.warn("更新下单令牌状态失败: key={}", key, e);
+        }
+    }
+
+    private String tokenKey(Long userId, String token) {
+        return TOKEN_PREFIX + userId + ":" + token;
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.xiaomimall.service;
+
+import com.xiaomimall.entity.OrderStatus;
+import com.xiaomimall.mapper.OrderMapper;
+import com.xiaomimall.util.HashedTimingWheel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 超时未支付订单自动取消
+ * 定期从OrderTimeoutQueue认领预读窗口内即将到期的订单放入本地哈希时间轮，
+ * 时间轮每个刻度取出到期订单，按批取消并归还库存。
+ * 本地只保存预读窗口内的任务，待处理总量（百万级）只占用Redis ZSET。
+ * 截止时间登记到Redis失败（只记录日志）或Redis数据丢失的订单，由定期扫描数据库兜底取消。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderTimeoutCanceller {
+
+    private final OrderTimeoutQueue orderTimeoutQueue;
+    private final OrderService orderService;
+    private final OrderMapper orderMapper;
+
+    @Value("${order.timeout.enabled:true}")
+    private boolean enabled;
+
+    @Value("${order.timeout.lookahead-ms:60000}")// 预读窗口，认领截止时间在此范围内的订单（毫秒）
+    private long lookaheadMillis;
+
+    @Value("${order.timeout.claim-batch:1000}")// 每次认领的最大条数
+    private int claimBatch;
+
+    @Value("${order.timeout.max-in-wheel:100000}")// 时间轮中最多保存的任务数，超过后暂停认领
+    private int maxInWheel;
+
+    @Value("${order.timeout.cancel-batch:200}")// 每个事务取消的订单数
+    private int cancelBatch;
+
+    @Value("${order.timeout.pay-timeout-minutes:30}")// 下单后多久未支付自动取消（分钟）
+    private long payTimeoutMinutes;
+
+    @Value("${order.timeout.sweep-delay-ms:300000}")// 截止时间过后仍未取消多久才由兜底扫描处理（毫秒）
+    private long sweepDelayMillis;
+
+    @Value("${order.timeout.sweep-max-batches:50}")// 每次兜底扫描最多取消的批数
+    private int sweepMaxBatches;
+
+    @Value("${order.timeout.tick-ms:1000}")
+    private long tickMillis;
+
+    @Value("${order.timeout.wheel-size:512}")
+    private int wheelSize;
+
+    private volatile HashedTimingWheel<Long> wheel;
+
+    // 从Redis认领即将到期的订单放入时间轮
+    @Scheduled(initialDelayString = "${order.timeout.poll-interval:10000}",
+            fixedDelayString = "${order.timeout.poll-interval:10000}")
+    public void claimUpcoming() {
+        if (!enabled) {
+            return;
+        }
+        HashedTimingWheel<Long> timingWheel = wheel();
+        try {
+            long now = System.currentTimeMillis();
+            while (timingWheel.size() < maxInWheel) {
+                Map<Long, Long> claimed = orderTimeoutQueue.claim(now, now + lookaheadMillis, claimBatch);
+                claimed.forEach(timingWheel::add);
+                if (claimed.size() < claimBatch) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("认领超时订单失败，下个周期重试", e);
+        }
+    }
+
+    // 推进时间轮，取消到期订单
+    @Scheduled(fixedDelayString = "${order.timeout.tick-ms:1000}")
+    public void tick() {
+        if (!enabled) {
+            return;
+        }
+        List<Long> expired = wheel().advance(System.currentTimeMillis());
+        for (int from = 0; from < expired.size(); from += cancelBatch) {
+            List<Long> batch = expired.subList(from, Math.min(from + cancelBatch, expired.size()));
+            try {
+                int cancelled = orderService.cancelExpiredOrders(batch);
+                orderTimeoutQueue.complete(batch);
+                if (cancelled > 0) {
+                    log.info("超时未支付订单已取消: count={}, checked={}", cancelled, batch.size());
+                }
+            } catch (Exception e) {
+                // 保留在处理中集合，租约到期后重新认领
+                log.error("批量取消超时订单失败，等待租约到期后重试: orderIds={}", batch, e);
+            }
+        }
+    }
+
+    // 兜底扫描数据库中早已超过截止时间仍未支付的订单，正常情况下这些订单已由时间轮取消
+    @Scheduled(initialDelayString = "${order.timeout.sweep-interval:300000}",
+            fixedDelayString = "${order.timeout.sweep-interval:300000}")
+    public void sweepOverdue() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime createdBefore = LocalDateTime.now()
+                .minusMinutes(payTimeoutMinutes)
+                .minus(Duration.ofMillis(sweepDelayMillis));
+        int total = 0;
+        try {
+            for (int i = 0; i < sweepMaxBatches; i++) {
+                List<Long> overdue = orderMapper.findIdsByStatusCreatedBefore(
+                        OrderStatus.PENDING.getCode(), createdBefore, cancelBatch);
+                if (overdue.isEmpty()) {
+                    break;
+                }
+                int cancelled = orderService.cancelExpiredOrders(overdue);
+                total += cancelled;
+                if (overdue.size() < cancelBatch || cancelled == 0) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("兜底扫描超时订单失败，下个周期重试", e);
+        }
+        if (total > 0) {
+            log.warn("兜底扫描取消了未登记截止时间的超时订单: count={}", total);
+        }
+    }
+
+    private HashedTimingWheel<Long> wheel() {
+        if (wheel == null) {
+            synchronized (this) {
+                if (wheel == null) {
+                    wheel = new HashedTimingWheel<>(tickMillis, wheelSize, System.currentTimeMillis());
+                }
+            }
+        }
+        return wheel;
+    }
+}
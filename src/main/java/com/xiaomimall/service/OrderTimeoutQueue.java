@@ -0,0 +1,97 @@
+package com.xiaomimall.service;
+
+import com.xiaomimall.redis.RedisScriptRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 订单支付截止时间队列（Redis ZSET）
+ * 待处理集合以截止时间为score保存全部未支付订单，订单表无需轮询；
+ * 各节点按预读窗口认领即将到期的订单放入本地时间轮，认领期间记录在处理中集合（带租约），
+ * 节点宕机或处理失败时租约到期，任务自动回到待处理集合由其他节点接手。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderTimeoutQueue {
+
+    // 两个集合由认领脚本同时访问，共用哈希标签保证Redis Cluster下位于同一槽位
+    private static final String PENDING_KEY = "order:timeout:{q}:pending";
+    private static final String INFLIGHT_KEY = "order:timeout:{q}:inflight";
+
+    // Lua脚本（resources/lua）
+    private static final String CLAIM_SCRIPT = "order_timeout_claim";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisScriptRegistry redisScriptRegistry;
+
+    @Value("${order.timeout.pay-timeout-minutes:30}")// 下单后多久未支付自动取消（分钟）
+    private long payTimeoutMinutes;
+
+    @Value("${order.timeout.lease-ms:120000}")// 认领租约，超过截止时间这么久仍未处理则由其他节点接手（毫秒）
+    private long leaseMillis;
+
+    // 登记订单支付截止时间，当前事务提交后生效
+    public void register(Long orderId) {
+        long deadline = System.currentTimeMillis() + payTimeoutMinutes * 60_000;
+        afterCommit(() -> stringRedisTemplate.opsForZSet().add(PENDING_KEY, orderId.toString(), deadline));
+    }
+
+    // 订单已支付或已取消，移除截止时间（当前事务提交后生效）
+    public void remove(Long orderId) {
+        afterCommit(() -> stringRedisTemplate.opsForZSet().remove(PENDING_KEY, orderId.toString()));
+    }
+
+    // 认领截止时间不晚于horizonMillis的订单，返回 订单ID -> 截止时间
+    public Map<Long, Long> claim(long nowMillis, long horizonMillis, int limit) {
+        // 租约过期任务的回收数量同样按limit限制，积压时分多次认领回收
+        List<String> claimed = redisScriptRegistry.executeForList(CLAIM_SCRIPT, Arrays.asList(PENDING_KEY, INFLIGHT_KEY),
+                String.valueOf(nowMillis), String.valueOf(horizonMillis), String.valueOf(limit), String.valueOf(leaseMillis));
+        Map<Long, Long> deadlines = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < claimed.size(); i += 2) {
+            deadlines.put(Long.valueOf(claimed.get(i)), (long) Double.parseDouble(claimed.get(i + 1)));
+        }
+        return deadlines;
+    }
+
+    // 处理完成，从处理中集合移除
+    public void complete(List<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.opsForZSet().remove(INFLIGHT_KEY, orderIds.stream().map(String::valueOf).toArray());
+    }
+
+    // 待处理的截止时间数量
+    public long pendingCount() {
+        Long count = stringRedisTemplate.opsForZSet().zCard(PENDING_KEY);
+        return count == null ? 0 : count;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    action.run();
+                } catch (Exception e) {
+                    log.error("订单超时队列更新失败", e);
+                }
+            }
+        });
+    }
+}
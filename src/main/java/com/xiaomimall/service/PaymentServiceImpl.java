@@ -1,5 +1,6 @@
 package com.xiaomimall.service;
 
+import com.xiaomimall.cache.OrderDetailCache;
 import com.xiaomimall.dto.PaymentConfigDTO;
 import com.xiaomimall.dto.PaymentNotifyDTO;
 import com.xiaomimall.dto.PaymentRequestDTO;
@@ -7,12 +8,14 @@ import com.xiaomimall.dto.PaymentResponseDTO;
 import com.xiaomimall.entity.*;
 import com.xiaomimall.mapper.*;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
  * 支付服务实现（支付宝集成示例）
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class PaymentServiceImpl implements PaymentService {
@@ -22,6 +25,8 @@ public class PaymentServiceImpl implements PaymentService {
     private final SeckillOrderMapper seckillOrderMapper;
     private final PaymentMapper paymentMapper;
     private final SeckillActivityMapper seckillActivityMapper;
+    private final OrderDetailCache orderDetailCache;
+    private final OrderOutbox orderOutbox;
 
     @Override
     public PaymentResponseDTO createPayment(PaymentRequestDTO paymentRequest) {
@@ -220,7 +225,18 @@ public class PaymentServiceImpl implements PaymentService {
 
         // 更新订单状态
         if (notifyDTO.getStatus() == 1) { // 支付成功
-            orderMapper.updateOrderStatus(order.getId(), order.getUserId(), OrderStatus.PAID.getCode());// 已支付
+            int updated = orderMapper.updateOrderStatusFrom(order.getId(), order.getUserId(),
+                    OrderStatus.PENDING.getCode(), OrderStatus.PAID.getCode());// 已支付
+            if (updated == 0) {
+                if (order.getStatus() == OrderStatus.PAID.getCode()) {
+                    return true; // 重复通知
+                }
+                // 订单已超时取消，不再记录支付（需走退款流程）
+                log.warn("支付通知对应的订单不是待支付状态: orderNo={}, status={}", order.getOrderNo(), order.getStatus());
+                return false;
+            }
+            orderDetailCache.evict(order.getId());
+            orderOutbox.append(OrderEventType.ORDER_PAID, order);
             order.setPayTime(notifyDTO.getPayTime());
 
             // 记录支付信息
@@ -0,0 +1,164 @@
+package com.xiaomimall.service;
+
+import com.xiaomimall.mapper.ProductMapper;
+import com.xiaomimall.util.BloomFilter;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 商品ID布隆过滤器
+ * 启动时从数据库分批加载全部商品ID构建本地过滤器，并按位或合并到Redis位图；新建商品同时写入本地和Redis。
+ * 本地判定不存在时再查一次Redis位图（其他节点刚创建的商品只在Redis中），两者都不存在才确定不存在，
+ * 随机探测不存在的商品ID只消耗一次Redis请求，不访问数据库。
+ * 布隆过滤器无法删除，已删除商品仍判定为可能存在，由商品缓存的空值缓存兜底。
+ * 过滤器未构建完成或Redis异常时一律判定为可能存在。
+ * 各节点的位数与哈希个数必须一致，修改预计数量或误判率后需删除Redis键 product:bloom:ids。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductIdFilter {
+
+    private static final String BLOOM_KEY = "product:bloom:ids";
+    private static final int LOAD_BATCH = 10000;
+
+    private final ProductMapper productMapper;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    @Value("${product.id-filter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${product.id-filter.expected-insertions:1000000}")// 预计商品数量
+    private long expectedInsertions;
+
+    @Value("${product.id-filter.fpp:0.01}")// 期望误判率
+    private double fpp;
+
+    private BloomFilter filter;
+
+    // 构建完成前一律判定为可能存在
+    private volatile boolean ready;
+
+    @PostConstruct
+    public void init() {
+        int numBits = BloomFilter.optimalNumBits(expectedInsertions, fpp);
+        filter = new BloomFilter(numBits, BloomFilter.optimalNumHashes(expectedInsertions, numBits));
+    }
+
+    // 构建期间新建的商品由add写入同一个过滤器和Redis，构建结束时合并Redis位图不会遗漏
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (!enabled) {
+            return;
+        }
+        long count = 0;
+        try {
+            long afterId = 0;
+            List<Long> ids;
+            do {
+                ids = productMapper.findIdsAfter(afterId, LOAD_BATCH);
+                for (Long id : ids) {
+                    filter.put(id);
+                }
+                count += ids.size();
+                if (!ids.isEmpty()) {
+                    afterId = ids.get(ids.size() - 1);
+                }
+            } while (ids.size() == LOAD_BATCH);
+        } catch (Exception e) {
+            log.warn("构建商品ID布隆过滤器失败，不启用过滤", e);
+            return;
+        }
+        publishToRedis();
+        ready = true;
+        log.info("商品ID布隆过滤器构建完成: products={}, bits={}", count, filter.getNumBits());
+    }
+
+    // 返回false表示商品一定不存在
+    public boolean mightContain(Long productId) {
+        if (!ready || productId == null || filter.mightContain(productId)) {
+            return true;
+        }
+        return mightContainInRedis(productId);
+    }
+
+    // 新建商品后调用，本地立即生效，Redis位图供其他节点判定
+    public void add(Long productId) {
+        if (!enabled) {
+            return;
+        }
+        filter.put(productId);
+        long[] positions = filter.positions(productId);
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (long position : positions) {
+                    conn.setBit(BLOOM_KEY, position, true);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("写入商品ID布隆位图失败: productId={}", productId, e);
+        }
+    }
+
+    // 本地不存在时查Redis位图，存在则合并到本地，下次无需再查
+    private boolean mightContainInRedis(Long productId) {
+        long[] positions = filter.positions(productId);
+        List<Object> bits;
+        try {
+            bits = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (long position : positions) {
+                    conn.getBit(BLOOM_KEY, position);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("读取商品ID布隆位图失败，按存在处理: productId={}", productId, e);
+            return true;
+        }
+        for (Object bit : bits) {
+            if (!Boolean.TRUE.equals(bit)) {
+                return false;
+            }
+        }
+        filter.put(productId);
+        return true;
+    }
+
+    // 本地过滤器按位或合并到Redis位图，保留其他节点写入的位
+    private void publishToRedis() {
+        byte[] key = BLOOM_KEY.getBytes(StandardCharsets.UTF_8);
+        byte[] tmpKey = (BLOOM_KEY + ":tmp:" + System.nanoTime()).getBytes(StandardCharsets.UTF_8);
+        byte[] bitmap = filter.toBytes();
+        try {
+            stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+                connection.stringCommands().set(tmpKey, bitmap);
+                connection.stringCommands().bitOp(RedisStringCommands.BitOperation.OR, key, key, tmpKey);
+                connection.keyCommands().del(tmpKey);
+                return null;
+            });
+            // 合并其他节点在本节点启动期间写入的位
+            byte[] merged = stringRedisTemplate.execute((RedisCallback<byte[]>) connection ->
+                    connection.stringCommands().get(key));
+            if (merged != null) {
+                filter.merge(merged);
+            }
+        } catch (Exception e) {
+            log.warn("同步商品ID布隆位图到Redis失败", e);
+        }
+    }
+}
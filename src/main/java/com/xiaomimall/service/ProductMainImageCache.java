@@ -0,0 +1,96 @@
+package com.xiaomimall.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.xiaomimall.entity.ProductImage;
+import com.xiaomimall.mapper.ProductImageMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 商品主图本地缓存
+ * 下单时一次批量解析整单商品的主图（主图优先，否则取第一张），未命中的商品合并为一条SQL。
+ * 商品图片在后台更新时失效；其他节点依赖过期时间收敛。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductMainImageCache {
+
+    public static final String DEFAULT_IMAGE = "https://cdn.example.com/default-product.jpg";
+
+    // 没有图片的商品也缓存，避免反复查询
+    private static final String NO_IMAGE = "";
+
+    private final ProductImageMapper productImageMapper;
+
+    @Value("${product.main-image-cache.max-size:100000}")// 最多缓存的商品数
+    private long maxSize;
+
+    @Value("${product.main-image-cache.expire-minutes:10}")// 写入后过期时间（分钟）
+    private long expireMinutes;
+
+    private Cache<Long, String> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(expireMinutes))
+                .build();
+    }
+
+    // 批量获取商品主图，没有图片或查询失败时返回默认图片
+    public Map<Long, String> getMainImages(Collection<Long> productIds) {
+        Map<Long, String> urls;
+        try {
+            urls = cache.getAll(productIds, this::load);
+        } catch (Exception e) {
+            log.error("批量获取商品主图时发生异常，商品ID：{}", productIds, e);
+            urls = Map.of();
+        }
+        Map<Long, String> result = new HashMap<>();
+        for (Long productId : productIds) {
+            String url = urls.get(productId);
+            result.put(productId, url == null || url.isEmpty() ? DEFAULT_IMAGE : url);
+        }
+        return result;
+    }
+
+    // 商品图片变更后失效（当前事务提交后执行）
+    public void evict(Long productId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.invalidate(productId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.invalidate(productId);
+            }
+        });
+    }
+
+    private Map<Long, String> load(Set<? extends Long> productIds) {
+        Map<Long, String> urls = new HashMap<>();
+        for (ProductImage image : productImageMapper.findMainImagesByProductIds(Set.copyOf(productIds))) {
+            String url = image.getUrl();
+            urls.put(image.getProductId(), url == null ? NO_IMAGE : url.trim());
+        }
+        for (Long productId : productIds) {
+            urls.putIfAbsent(productId, NO_IMAGE);
+        }
+        return urls;
+    }
+}
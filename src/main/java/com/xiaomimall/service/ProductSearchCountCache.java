@@ -0,0 +1,72 @@
+package com.xiaomimall.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.xiaomimall.cache.ProductSearchKeyGenerator;
+import com.xiaomimall.dto.ProductQueryDTO;
+import com.xiaomimall.mapper.ProductMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+/**
+ * 商品搜索总数本地缓存（数据库查询路径）
+ * 按筛选条件缓存COUNT结果，与排序和页码无关，同一搜索翻页时只统计一次。
+ * 超过刷新间隔后仍先返回旧值，后台异步重新统计，总数是近似值。
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductSearchCountCache {
+
+    private final ProductMapper productMapper;
+
+    @Value("${product.search-count-cache.max-size:10000}")// 最多缓存的筛选条件数
+    private long maxSize;
+
+    @Value("${product.search-count-cache.refresh-seconds:60}")// 写入多久后异步刷新（秒）
+    private long refreshSeconds;
+
+    @Value("${product.search-count-cache.expire-seconds:600}")// 写入后过期时间（秒），长期无人访问的条件直接丢弃
+    private long expireSeconds;
+
+    // 规范化后的筛选条件
+    private record Filter(String keyword, Long categoryId, BigDecimal minPrice, BigDecimal maxPrice, Integer status) {
+    }
+
+    private LoadingCache<Filter, Long> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .refreshAfterWrite(Duration.ofSeconds(refreshSeconds))
+                .expireAfterWrite(Duration.ofSeconds(expireSeconds))
+                .build(this::count);
+    }
+
+    public long get(ProductQueryDTO queryDTO) {
+        String keyword = ProductSearchKeyGenerator.normalizeKeyword(queryDTO.getKeyword());
+        Filter filter = new Filter(keyword.isEmpty() ? null : keyword, queryDTO.getCategoryId(),
+                normalizePrice(queryDTO.getMinPrice()), normalizePrice(queryDTO.getMaxPrice()), queryDTO.getStatus());
+        return cache.get(filter);
+    }
+
+    private Long count(Filter filter) {
+        ProductQueryDTO query = new ProductQueryDTO();
+        query.setKeyword(filter.keyword());
+        query.setCategoryId(filter.categoryId());
+        query.setMinPrice(filter.minPrice());
+        query.setMaxPrice(filter.maxPrice());
+        query.setStatus(filter.status());
+        Long total = productMapper.countByCondition(query);
+        return total == null ? 0L : total;
+    }
+
+    private static BigDecimal normalizePrice(BigDecimal price) {
+        return price == null ? null : price.stripTrailingZeros();
+    }
+}
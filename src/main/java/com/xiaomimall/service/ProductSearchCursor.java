@@ -0,0 +1,77 @@
+package com.xiaomimall.service;
+
+import com.xiaomimall.util.CursorCodec;
+
+import java.math.BigDecimal;
+
+/**
+ * 商品搜索键集分页游标
+ * 记录上一页最后一个商品的排序键和商品ID，下一页从该位置之后继续，不再跳过前面的行。
+ * 游标中带有排序方式，与本次查询的排序不一致时视为无效游标。
+ *
+ * @param key 价格或销量，按ID排序时为null
+ */
+public record ProductSearchCursor(Sort sort, BigDecimal key, long id) {
+
+    /**
+     * 搜索排序方式，相同排序键按商品ID同方向排列，保证顺序唯一
+     */
+    public enum Sort {
+        ID_DESC(null, true),
+        PRICE_ASC("price", false),
+        PRICE_DESC("price", true),
+        SALES_ASC("sales", false),
+        SALES_DESC("sales", true);
+
+        private final String column;
+        private final boolean descending;
+
+        Sort(String column, boolean descending) {
+            this.column = column;
+            this.descending = descending;
+        }
+
+        // 排序列名，只会是固定的price/sales，可直接拼入SQL
+        public String getColumn() {
+            return column;
+        }
+
+        public boolean isDescending() {
+            return descending;
+        }
+
+        // 与原有排序参数的识别规则一致（区分大小写），无法识别的组合按商品ID倒序
+        public static Sort of(String sortBy, String sortOrder) {
+            boolean desc = "desc".equals(sortOrder);
+            if (!desc && !"asc".equals(sortOrder)) {
+                return ID_DESC;
+            }
+            if ("price".equals(sortBy)) {
+                return desc ? PRICE_DESC : PRICE_ASC;
+            }
+            if ("sales".equals(sortBy)) {
+                return desc ? SALES_DESC : SALES_ASC;
+            }
+            return ID_DESC;
+        }
+    }
+
+    public String encode() {
+        return CursorCodec.encode(sort.name(), key == null ? "" : key.toPlainString(), String.valueOf(id));
+    }
+
+    // 解码游标并校验排序方式，无效时抛出IllegalArgumentException
+    public static ProductSearchCursor decode(String cursor, Sort expected) {
+        String[] parts = CursorCodec.decode(cursor, 3);
+        try {
+            Sort sort = Sort.valueOf(parts[0]);
+            BigDecimal key = parts[1].isEmpty() ? null : new BigDecimal(parts[1]);
+            if (sort != expected || (key == null) != (sort.column == null)) {
+                throw new IllegalArgumentException("分页游标与排序方式不匹配");
+            }
+            return new ProductSearchCursor(sort, key, Long.parseLong(parts[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("无效的分页游标", e);
+        }
+    }
+}
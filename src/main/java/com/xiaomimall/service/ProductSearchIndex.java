@@ -0,0 +1,517 @@
+package com.xiaomimall.service;
+
+import com.xiaomimall.cache.CacheInvalidationBus;
+import com.xiaomimall.dto.ProductQueryDTO;
+import com.xiaomimall.entity.Product;
+import com.xiaomimall.mapper.ProductMapper;
+import com.xiaomimall.util.PostingList;
+import com.xiaomimall.util.SearchTokenizer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * 商品搜索内存倒排索引
+ * 启动时从products分批构建名称、描述两个字段的倒排索引（中日韩二元分词，压缩倒排列表），
+ * 并在内存中保存分类、价格、销量、状态，搜索时的关键词匹配、筛选、排序、分页都不访问数据库，
+ * 只返回当前页的商品ID，由调用方从缓存或数据库补全详情。
+ * 支持按页码和按游标两种分页：游标分页只保留排在游标之后的文档再取前N个，深翻页与首页开销相同。
+ * 商品增删改提交后本节点按ID从数据库重新索引，并通过缓存失效广播通知其他节点（忽略本节点发出的消息）；
+ * 同一商品的读库和写索引在同一把分段锁内完成，并发更新按读库先后生效。
+ * 更新时旧文档只标记删除、新内容追加为新文档，已删除文档在定时全量重建时合并；
+ * 销量变化（支付后累加）广播到各节点，按周期批量从数据库读取最新销量原地更新。
+ * 未构建完成时返回null，调用方回退到数据库查询。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductSearchIndex {
+
+    // 复用缓存失效广播的通道，键为商品ID
+    private static final String BUS_NAME = "productSearchIndex";
+    private static final String SALES_BUS_NAME = "productSearchSales";
+    private static final String ORIGIN_SEPARATOR = ":";
+    private static final int REINDEX_LOCK_STRIPES = 64;
+    private static final int LOAD_BATCH = 5000;
+    private static final long NO_PRICE = Long.MIN_VALUE;
+
+    private final ProductMapper productMapper;
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    @Value("${product.search-index.enabled:true}")
+    private boolean enabled;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    // 本节点标识，广播消息带上来源，收到自己发出的消息时跳过
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // 按商品ID分段的重新索引锁
+    private final Object[] reindexLocks = Stream.generate(Object::new).limit(REINDEX_LOCK_STRIPES).toArray();
+
+    // 销量已变化、等待刷新的商品ID
+    private final Set<Long> salesChanged = ConcurrentHashMap.newKeySet();
+
+    // 当前索引，构建完成前为null
+    private Segment segment;
+
+    // 全量重建期间变更的商品ID，重建完成后补做增量
+    private volatile Set<Long> changedDuringRebuild;
+
+    // 搜索结果：符合条件的总数、当前页商品ID（已按排序规则排列）和下一页游标（没有更多时为null）
+    public record Hits(long total, List<Long> productIds, String nextCursor) {
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        cacheInvalidationBus.register(BUS_NAME, key -> {
+            Long productId = fromOtherNode(key);
+            if (productId != null) {
+                reindex(productId);
+            }
+        });
+        cacheInvalidationBus.register(SALES_BUS_NAME, key -> {
+            Long productId = fromOtherNode(key);
+            if (productId != null) {
+                salesChanged.add(productId);
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        rebuild();
+    }
+
+    // 定时全量重建：清理已删除文档，兜底同步丢失广播的变更
+    @Scheduled(initialDelayString = "${product.search-index.rebuild-interval:600000}",
+            fixedDelayString = "${product.search-index.rebuild-interval:600000}")
+    public void rebuild() {
+        if (!enabled || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        Set<Long> changed = ConcurrentHashMap.newKeySet();
+        changedDuringRebuild = changed;
+        try {
+            long start = System.currentTimeMillis();
+            Segment fresh = new Segment();
+            long afterId = 0;
+            List<Product> products;
+            do {
+                products = productMapper.findSearchDocsAfter(afterId, LOAD_BATCH);
+                for (Product product : products) {
+                    fresh.add(product);
+                }
+                if (!products.isEmpty()) {
+                    afterId = products.get(products.size() - 1).getId();
+                }
+            } while (products.size() == LOAD_BATCH);
+            fresh.trim();
+
+            lock.writeLock().lock();
+            try {
+                segment = fresh;
+                changedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            for (Long productId : changed) {
+                reindex(productId);
+            }
+            log.info("商品搜索索引构建完成: products={}, terms={}, postingBytes={}, cost={}ms",
+                    fresh.docByProduct.size(), fresh.termCount(), fresh.postingBytes(),
+                    System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            changedDuringRebuild = null;
+            log.warn("构建商品搜索索引失败，保留原索引", e);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    // 商品增删改后调用（当前事务提交后执行），本节点立即重新索引并通知其他节点
+    public void reindexAfterCommit(Long productId) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(() -> {
+            reindex(productId);
+            cacheInvalidationBus.publish(BUS_NAME, nodeId + ORIGIN_SEPARATOR + productId);
+        });
+    }
+
+    // 商品销量累加后调用（当前事务提交后执行），各节点在下个刷新周期读取最新销量
+    public void salesChangedAfterCommit(Collection<Long> productIds) {
+        if (!enabled || productIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(productIds);
+        afterCommit(() -> {
+            salesChanged.addAll(ids);
+            ids.forEach(id -> cacheInvalidationBus.publish(SALES_BUS_NAME, nodeId + ORIGIN_SEPARATOR + id));
+        });
+    }
+
+    // 按ID从数据库重新索引单个商品，商品不存在或已删除时移出索引
+    // 同一商品的读库与写索引串行执行，后读到的数据一定后写入，并发更新不会被旧数据覆盖
+    public void reindex(Long productId) {
+        if (!enabled) {
+            return;
+        }
+        Set<Long> changed = changedDuringRebuild;
+        if (changed != null) {
+            changed.add(productId);
+        }
+        synchronized (reindexLocks[(int) Math.floorMod(productId, (long) REINDEX_LOCK_STRIPES)]) {
+            Product product;
+            try {
+                product = productMapper.findById(productId);
+            } catch (Exception e) {
+                log.warn("重新索引商品失败，等待全量重建: productId={}", productId, e);
+                return;
+            }
+            lock.writeLock().lock();
+            try {
+                if (segment == null) {
+                    return;
+                }
+                segment.remove(productId);
+                if (product != null) {
+                    segment.add(product);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // 定期批量刷新销量变化的商品，只原地更新销量列，不追加新文档
+    @Scheduled(fixedDelayString = "${product.search-index.sales-refresh-interval:5000}")
+    public void refreshSales() {
+        if (!enabled || salesChanged.isEmpty()) {
+            return;
+        }
+        List<Long> productIds = new ArrayList<>(salesChanged);
+        salesChanged.removeAll(productIds);
+        Set<Long> changed = changedDuringRebuild;
+        if (changed != null) {
+            // 重建读到的可能是旧销量，替换后再按ID重新索引
+            changed.addAll(productIds);
+        }
+        try {
+            for (int from = 0; from < productIds.size(); from += LOAD_BATCH) {
+                List<Product> products = productMapper.findByIds(
+                        productIds.subList(from, Math.min(from + LOAD_BATCH, productIds.size())));
+                lock.writeLock().lock();
+                try {
+                    if (segment == null) {
+                        return;
+                    }
+                    products.forEach(segment::updateSales);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        } catch (Exception e) {
+            salesChanged.addAll(productIds);
+            log.warn("刷新商品销量失败，下个周期重试: count={}", productIds.size(), e);
+        }
+    }
+
+    // 解析广播键（来源节点:商品ID），本节点发出的消息返回null
+    private Long fromOtherNode(String key) {
+        if (key == null) {
+            return null;
+        }
+        int index = key.lastIndexOf(ORIGIN_SEPARATOR);
+        if (index < 0 || key.substring(0, index).equals(nodeId)) {
+            return null;
+        }
+        return Long.valueOf(key.substring(index + 1));
+    }
+
+    // 当前事务提交后执行，无事务时立即执行
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    // 搜索，after不为null时按游标分页（忽略offset）；索引不可用或关键词无可索引字符时返回null
+    public Hits search(ProductQueryDTO queryDTO, ProductSearchCursor.Sort sort, ProductSearchCursor after,
+                       int offset, int limit) {
+        List<SearchTokenizer.Term> terms = SearchTokenizer.queryTerms(queryDTO.getKeyword());
+        boolean hasKeyword = queryDTO.getKeyword() != null && !queryDTO.getKeyword().isEmpty();
+        if (hasKeyword && terms.isEmpty()) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            if (segment == null) {
+                return null;
+            }
+            BitSet matched = hasKeyword
+                    ? segment.match(terms)
+                    : (BitSet) segment.live.clone();
+            segment.filter(matched, queryDTO);
+            return segment.page(matched, sort, after, offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 索引数据，文档号按写入顺序递增，列式保存筛选和排序字段
+     */
+    private static final class Segment {
+
+        private final TreeMap<String, PostingList> nameTerms = new TreeMap<>();
+        private final TreeMap<String, PostingList> descriptionTerms = new TreeMap<>();
+        private final Map<Long, Integer> docByProduct = new HashMap<>();
+        private final BitSet live = new BitSet();
+
+        private long[] productIds = new long[1024];
+        private long[] categoryIds = new long[1024];
+        private long[] prices = new long[1024];
+        private int[] sales = new int[1024];
+        private int[] statuses = new int[1024];
+        private int docCount;
+
+        void add(Product product) {
+            int doc = docCount++;
+            if (doc == productIds.length) {
+                int capacity = productIds.length << 1;
+                productIds = Arrays.copyOf(productIds, capacity);
+                categoryIds = Arrays.copyOf(categoryIds, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                sales = Arrays.copyOf(sales, capacity);
+                statuses = Arrays.copyOf(statuses, capacity);
+            }
+            productIds[doc] = product.getId();
+            categoryIds[doc] = product.getCategoryId() == null ? -1 : product.getCategoryId();
+            prices[doc] = product.getPrice() == null ? NO_PRICE : toCents(product.getPrice(), RoundingMode.HALF_UP);
+            sales[doc] = product.getSales() == null ? 0 : product.getSales();
+            statuses[doc] = product.getStatus() == null ? -1 : product.getStatus();
+            for (String term : SearchTokenizer.indexTerms(product.getName())) {
+                nameTerms.computeIfAbsent(term, t -> new PostingList()).add(doc);
+            }
+            for (String term : SearchTokenizer.indexTerms(product.getDescription())) {
+                descriptionTerms.computeIfAbsent(term, t -> new PostingList()).add(doc);
+            }
+            docByProduct.put(product.getId(), doc);
+            live.set(doc);
+        }
+
+        // 原地更新销量列，商品不在索引中时忽略
+        void updateSales(Product product) {
+            Integer doc = docByProduct.get(product.getId());
+            if (doc != null) {
+                sales[doc] = product.getSales() == null ? 0 : product.getSales();
+            }
+        }
+
+        void remove(Long productId) {
+            Integer doc = docByProduct.remove(productId);
+            if (doc != null) {
+                live.clear(doc);
+            }
+        }
+
+        // 名称或描述任一字段包含全部查询词即匹配
+        BitSet match(List<SearchTokenizer.Term> terms) {
+            BitSet matched = matchField(nameTerms, terms);
+            matched.or(matchField(descriptionTerms, terms));
+            matched.and(live);
+            return matched;
+        }
+
+        private BitSet matchField(TreeMap<String, PostingList> dictionary, List<SearchTokenizer.Term> terms) {
+            BitSet result = null;
+            for (SearchTokenizer.Term term : terms) {
+                BitSet docs = new BitSet(docCount);
+                if (term.prefix()) {
+                    for (PostingList postings : dictionary.subMap(term.text(), term.text() + Character.MAX_VALUE).values()) {
+                        postings.orInto(docs);
+                    }
+                } else {
+                    PostingList postings = dictionary.get(term.text());
+                    if (postings != null) {
+                        postings.orInto(docs);
+                    }
+                }
+                if (result == null) {
+                    result = docs;
+                } else {
+                    result.and(docs);
+                }
+                if (result.isEmpty()) {
+                    break;
+                }
+            }
+            return result == null ? new BitSet() : result;
+        }
+
+        // 分类、价格区间、状态筛选，与SQL条件一致（空值不满足任何比较）
+        void filter(BitSet matched, ProductQueryDTO queryDTO) {
+            Long categoryId = queryDTO.getCategoryId();
+            long minPrice = queryDTO.getMinPrice() == null ? NO_PRICE : toCents(queryDTO.getMinPrice(), RoundingMode.CEILING);
+            long maxPrice = queryDTO.getMaxPrice() == null ? Long.MAX_VALUE : toCents(queryDTO.getMaxPrice(), RoundingMode.FLOOR);
+            boolean priceFilter = queryDTO.getMinPrice() != null || queryDTO.getMaxPrice() != null;
+            Integer status = queryDTO.getStatus();
+            if (categoryId == null && !priceFilter && status == null) {
+                return;
+            }
+            for (int doc = matched.nextSetBit(0); doc >= 0; doc = matched.nextSetBit(doc + 1)) {
+                boolean keep = (categoryId == null || categoryIds[doc] == categoryId)
+                        && (!priceFilter || (prices[doc] != NO_PRICE && prices[doc] >= minPrice && prices[doc] <= maxPrice))
+                        && (status == null || statuses[doc] == status);
+                if (!keep) {
+                    matched.clear(doc);
+                }
+            }
+        }
+
+        // 排序规则与SQL一致：price/sales按指定方向，其余按商品ID倒序；相同值按商品ID同方向排列
+        Hits page(BitSet matched, ProductSearchCursor.Sort sort, ProductSearchCursor after, int offset, int limit) {
+            int total = matched.cardinality();
+            int remaining = total;
+            if (after != null) {
+                // 游标分页：去掉游标及之前的文档，从剩余文档中取第一页
+                offset = 0;
+                for (int doc = matched.nextSetBit(0); doc >= 0; doc = matched.nextSetBit(doc + 1)) {
+                    if (!isAfter(doc, after)) {
+                        matched.clear(doc);
+                        remaining--;
+                    }
+                }
+            }
+            if (offset >= remaining || limit <= 0) {
+                return new Hits(total, List.of(), null);
+            }
+            Comparator<Integer> order = comparator(sort);
+            int need = offset + limit;
+            List<Integer> top;
+            if (need >= remaining) {
+                top = new ArrayList<>(remaining);
+                matched.stream().forEach(top::add);
+                top.sort(order);
+            } else {
+                // 只保留前need个，堆顶为当前最靠后的文档
+                PriorityQueue<Integer> heap = new PriorityQueue<>(need + 1, order.reversed());
+                for (int doc = matched.nextSetBit(0); doc >= 0; doc = matched.nextSetBit(doc + 1)) {
+                    heap.offer(doc);
+                    if (heap.size() > need) {
+                        heap.poll();
+                    }
+                }
+                top = new ArrayList<>(heap);
+                top.sort(order);
+            }
+            List<Long> ids = new ArrayList<>(limit);
+            for (int i = offset; i < Math.min(need, top.size()); i++) {
+                ids.add(productIds[top.get(i)]);
+            }
+            String nextCursor = need < remaining ? cursorOf(top.get(need - 1), sort).encode() : null;
+            return new Hits(total, ids, nextCursor);
+        }
+
+        private Comparator<Integer> comparator(ProductSearchCursor.Sort sort) {
+            if (sort.getColumn() == null) {
+                return (a, b) -> Long.compare(productIds[b], productIds[a]);
+            }
+            Comparator<Integer> ascending = (a, b) -> {
+                int c = Long.compare(sortKey(sort, a), sortKey(sort, b));
+                return c != 0 ? c : Long.compare(productIds[a], productIds[b]);
+            };
+            return sort.isDescending() ? ascending.reversed() : ascending;
+        }
+
+        // 文档是否排在游标之后
+        private boolean isAfter(int doc, ProductSearchCursor cursor) {
+            ProductSearchCursor.Sort sort = cursor.sort();
+            int c = 0;
+            if (sort.getColumn() != null) {
+                long key = "price".equals(sort.getColumn())
+                        ? toCents(cursor.key(), RoundingMode.HALF_UP)
+                        : cursor.key().longValue();
+                c = Long.compare(sortKey(sort, doc), key);
+            }
+            if (c == 0) {
+                c = Long.compare(productIds[doc], cursor.id());
+            }
+            return sort.isDescending() ? c < 0 : c > 0;
+        }
+
+        private ProductSearchCursor cursorOf(int doc, ProductSearchCursor.Sort sort) {
+            BigDecimal key = null;
+            if ("price".equals(sort.getColumn())) {
+                key = BigDecimal.valueOf(prices[doc], 2);
+            } else if ("sales".equals(sort.getColumn())) {
+                key = BigDecimal.valueOf(sales[doc]);
+            }
+            return new ProductSearchCursor(sort, key, productIds[doc]);
+        }
+
+        private long sortKey(ProductSearchCursor.Sort sort, int doc) {
+            return "price".equals(sort.getColumn()) ? prices[doc] : sales[doc];
+        }
+
+        void trim() {
+            nameTerms.values().forEach(PostingList::trim);
+            descriptionTerms.values().forEach(PostingList::trim);
+        }
+
+        int termCount() {
+            return nameTerms.size() + descriptionTerms.size();
+        }
+
+        long postingBytes() {
+            long bytes = 0;
+            for (PostingList postings : nameTerms.values()) {
+                bytes += postings.bytes();
+            }
+            for (PostingList postings : descriptionTerms.values()) {
+                bytes += postings.bytes();
+            }
+            return bytes;
+        }
+
+        private static long toCents(BigDecimal price, RoundingMode roundingMode) {
+            return price.movePointRight(2).setScale(0, roundingMode).longValue();
+        }
+    }
+}
@@ -16,6 +16,7 @@ public interface ProductService {
     void deleteProduct(Long id);
     ProductDTO getProductById(Long id);
     PageResponse<ProductDTO> searchProducts(ProductQueryDTO queryDTO);
+    void updateStockCacheMode(Long id, boolean enabled);
     
     // 分类管理
     List<CategoryDTO> getAllCategories();
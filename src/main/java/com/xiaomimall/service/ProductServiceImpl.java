@@ -1,5 +1,6 @@
 package com.xiaomimall.service;
 
+import com.xiaomimall.cache.ProductSearchKeyGenerator;
 import com.xiaomimall.dto.*;
 import com.xiaomimall.entity.Banner;
 import com.xiaomimall.entity.Category;
@@ -12,6 +13,8 @@ import com.xiaomimall.mapper.CategoryMapper;
 import com.xiaomimall.mapper.ProductImageMapper;
 import com.xiaomimall.mapper.ProductMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
@@ -35,11 +38,22 @@ public class ProductServiceImpl implements ProductService {
     private final CategoryMapper categoryMapper;
     private final ProductImageMapper productImageMapper;
     private final BannerMapper bannerMapper;
+    private final ProductStockCache productStockCache;
+    private final ProductMainImageCache productMainImageCache;
+    private final ProductIdFilter productIdFilter;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductSearchCountCache productSearchCountCache;
+    private final CacheManager cacheManager;
+    private final CartService cartService;
     private static final int MAX_CATEGORY_LEVEL = 3;
 
     // 创建商品
     @Override
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "products", key = "#result.id"),// 清除可能存在的空值缓存
+            @CacheEvict(cacheNames = "productSearch", allEntries = true)
+    })
     public ProductDTO createProduct(ProductDTO productDTO) {
         // 验证分类是否存在
         Category category = categoryMapper.findById(productDTO.getCategoryId());
@@ -58,6 +72,9 @@ public class ProductServiceImpl implements ProductService {
         product.setStatus(productDTO.getStatus());
 
         productMapper.insert(product);
+        cartService.evictProductCache(product.getId());// 清除可能存在的空值标记
+        productIdFilter.add(product.getId());
+        productSearchIndex.reindexAfterCommit(product.getId());
 
         // 保存商品图片
         saveProductImages(product.getId(), productDTO.getImages());
@@ -72,7 +89,7 @@ public class ProductServiceImpl implements ProductService {
     @Transactional
     @Caching(evict = {
             @CacheEvict(cacheNames = "products", key = "#id"),
-            @CacheEvict(cacheNames = "products", key = "'search_' + #productDTO.getPageNum() + '_' + #productDTO.getPageSize()")
+            @CacheEvict(cacheNames = "productSearch", allEntries = true)
     })
     public ProductDTO updateProduct(Long id, ProductDTO productDTO) {
         // 检查商品是否存在
@@ -91,17 +108,39 @@ public class ProductServiceImpl implements ProductService {
         existingProduct.setStatus(productDTO.getStatus());
 
         productMapper.update(existingProduct);
+        cartService.evictProductCache(id);
+        if (productStockCache.isCached(existingProduct)) {
+            // 后台改了库存，Redis库存键按新库存重新加载
+            productStockCache.evict(id);
+        }
 
         // 删除原有图片并保存新图片
         productImageMapper.deleteByProductId(id);
         saveProductImages(id, productDTO.getImages());
+        productMainImageCache.evict(id);
+        productSearchIndex.reindexAfterCommit(id);
 
         return convertToProductDTO(existingProduct);
     }
 
+    // 切换商品库存模式（Redis预占 / 数据库直接扣减）
+    @Override
+    @Transactional
+    public void updateStockCacheMode(Long id, boolean enabled) {
+        if (productMapper.updateStockCacheEnabled(id, enabled) == 0) {
+            throw new NotFoundException("商品不存在");
+        }
+        // 两个方向都丢弃旧的Redis库存键，重新开启时按 数据库库存 - 待结算扣减 重新加载
+        // 各节点尚未落库的扣减仍按周期结算，切回数据库扣减期间由下单路径从可用库存中减去
+        productStockCache.evict(id);
+    }
+
     // 删除商品（逻辑删除）
     @Override
-    @CacheEvict(cacheNames = "products", key = "#id")
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "products", key = "#id"),
+            @CacheEvict(cacheNames = "productSearch", allEntries = true)
+    })
     @Transactional
     public void deleteProduct(Long id) {
         Product product = productMapper.findById(id);
@@ -109,12 +148,22 @@ public class ProductServiceImpl implements ProductService {
             throw new NotFoundException("商品不存在");
         }
         productMapper.deleteById(id);
+        cartService.evictProductCache(id);
+        productSearchIndex.reindexAfterCommit(id);
     }
 
-    // 根据ID获取商品详情
+    // 根据ID获取商品详情，布隆过滤器判定不存在的ID不经过缓存（避免随机ID挤占缓存），也不查数据库
+    // 其余经products缓存，未命中时同一节点同一商品只有一个请求回源，其余等待结果（等同@Cacheable sync=true）
     @Override
-    @Cacheable(cacheNames = "products", key = "#id", unless = "#result == null")
     public ProductDTO getProductById(Long id) {
+        if (!productIdFilter.mightContain(id)) {
+            return null;
+        }
+        Cache cache = cacheManager.getCache("products");
+        return cache == null ? loadProductById(id) : cache.get(id, () -> loadProductById(id));
+    }
+
+    private ProductDTO loadProductById(Long id) {
         try {
             List<Map<String, Object>> results = productMapper.findProductWithImagesById(id);
             if (results == null || results.isEmpty()) {
@@ -156,22 +205,144 @@ public class ProductServiceImpl implements ProductService {
     }
 
 
-    // 商品搜索
+    // 商品搜索，优先走内存倒排索引，索引不可用时查库，查库结果按规范化后的查询条件缓存（商品增删改时整体清空，其余由短过期时间兜底）
+    // 只保存当前页的商品ID，详情经products缓存补全，库存、销量变化后随products失效，不会展示旧值
     @Override
     public PageResponse<ProductDTO> searchProducts(ProductQueryDTO queryDTO) {
-        // 1. 查询总数
-        Long total = productMapper.countByCondition(queryDTO);
+        // 关键词去首尾空白，与缓存键的规范化保持一致
+        if (queryDTO.getKeyword() != null) {
+            queryDTO.setKeyword(queryDTO.getKeyword().trim());
+        }
+        PageResponse<Long> page = searchProductIds(queryDTO);
+
+        PageResponse<ProductDTO> response = new PageResponse<>();
+        response.setPageNum(page.getPageNum());
+        response.setPageSize(page.getPageSize());
+        response.setTotal(page.getTotal());
+        response.setPages(page.getPages());
+        response.setList(loadProducts(page.getList()));
+        response.setNextCursor(page.getNextCursor());
+        return response;
+    }
 
-        // 2. 计算总页数
+    // 查询一页商品ID
+    // 传入游标时按键集分页：从上一页最后一个商品的排序键之后继续，深翻页与首页开销相同
+    private PageResponse<Long> searchProductIds(ProductQueryDTO queryDTO) {
         int pageSize = queryDTO.getPageSize();
         int pageNum = queryDTO.getPageNum();
+        int offset = (pageNum - 1) * pageSize;
+        ProductSearchCursor.Sort sort = ProductSearchCursor.Sort.of(queryDTO.getSortBy(), queryDTO.getSortOrder());
+        ProductSearchCursor after = queryDTO.getCursor() == null || queryDTO.getCursor().isEmpty()
+                ? null : ProductSearchCursor.decode(queryDTO.getCursor(), sort);
+
+        // 1. 优先走内存倒排索引，结果已是最新，不再缓存
+        ProductSearchIndex.Hits hits = productSearchIndex.search(queryDTO, sort, after, offset, pageSize);
+        if (hits != null) {
+            return pageOf(queryDTO, after, hits.total(), hits.productIds(), hits.nextCursor());
+        }
+        // 2. 索引不可用时查库，结果进入productSearch缓存
+        Cache cache = cacheManager.getCache("productSearch");
+        return cache == null ? searchDatabase(queryDTO, sort, after)
+                : cache.get(ProductSearchKeyGenerator.keyOf(queryDTO), () -> searchDatabase(queryDTO, sort, after));
+    }
+
+    // 从数据库查询一页商品ID
+    private PageResponse<Long> searchDatabase(ProductQueryDTO queryDTO, ProductSearchCursor.Sort sort,
+                                              ProductSearchCursor after) {
+        int pageSize = queryDTO.getPageSize();
+        int offset = (queryDTO.getPageNum() - 1) * pageSize;
+        long total;
+        List<Long> list;
+        String nextCursor;
+        if (after != null) {
+            // 索引不可用时按游标查库：多取一条判断是否还有下一页，总数取缓存的近似值
+            List<Product> products = productMapper.findSeekPage(queryDTO, sort.getColumn(), sort.isDescending(),
+                    after.key(), after.id(), pageSize + 1);
+            boolean hasMore = products.size() > pageSize;
+            if (hasMore) {
+                products = products.subList(0, pageSize);
+            }
+            total = productSearchCountCache.get(queryDTO);
+            list = products.stream().map(Product::getId).collect(Collectors.toList());
+            nextCursor = hasMore ? cursorOf(products.get(products.size() - 1), sort).encode() : null;
+        } else {
+            // 索引不可用时按页码查库，总数取缓存的近似值
+            total = productSearchCountCache.get(queryDTO);
+            List<Map<String, Object>> results = productMapper.findByConditionWithImages(queryDTO, offset, pageSize);
+            list = new ArrayList<>(groupProductRows(results).keySet());
+            nextCursor = null;
+            if (!results.isEmpty() && offset + pageSize < total) {
+                Map<String, Object> last = results.get(results.size() - 1);
+                Product product = new Product();
+                product.setId((Long) last.get("id"));
+                product.setPrice((BigDecimal) last.get("price"));
+                product.setSales((Integer) last.get("sales"));
+                nextCursor = cursorOf(product, sort).encode();
+            }
+        }
+        return pageOf(queryDTO, after, total, list, nextCursor);
+    }
+
+    // 构建分页响应
+    private PageResponse<Long> pageOf(ProductQueryDTO queryDTO, ProductSearchCursor after, long total,
+                                      List<Long> list, String nextCursor) {
+        int pageSize = queryDTO.getPageSize();
         int pages = (int) Math.ceil((double) total / pageSize);
+        PageResponse<Long> response = new PageResponse<>();
+        response.setPageNum(after == null ? queryDTO.getPageNum() : null);
+        response.setPageSize(pageSize);
+        response.setTotal(total);
+        response.setPages(pages);
+        response.setList(list);
+        response.setNextCursor(nextCursor);
 
-        // 3. 查询当前页数据
-        int offset = (pageNum - 1) * pageSize;
-        List<Map<String, Object>> results = productMapper.findByConditionWithImages(queryDTO, offset, pageSize);
+        return response;
+    }
+
+    // 以商品的排序键生成游标
+    private ProductSearchCursor cursorOf(Product product, ProductSearchCursor.Sort sort) {
+        BigDecimal key = null;
+        if ("price".equals(sort.getColumn())) {
+            key = product.getPrice();
+        } else if ("sales".equals(sort.getColumn())) {
+            key = BigDecimal.valueOf(product.getSales() == null ? 0 : product.getSales());
+        }
+        return new ProductSearchCursor(sort, key, product.getId());
+    }
+
+    // 按给定顺序批量获取商品详情：先查商品缓存，未命中的一次查库后写入缓存
+    private List<ProductDTO> loadProducts(List<Long> productIds) {
+        Cache cache = cacheManager.getCache("products");
+        Map<Long, ProductDTO> found = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long productId : productIds) {
+            ProductDTO dto = cache == null ? null : cache.get(productId, ProductDTO.class);
+            if (dto != null) {
+                found.put(productId, dto);
+            } else {
+                missing.add(productId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (ProductDTO dto : groupProductRows(productMapper.findProductsWithImagesByIds(missing)).values()) {
+                found.put(dto.getId(), dto);
+                if (cache != null) {
+                    cache.put(dto.getId(), dto);
+                }
+            }
+        }
+        List<ProductDTO> products = new ArrayList<>(productIds.size());
+        for (Long productId : productIds) {
+            ProductDTO dto = found.get(productId);
+            if (dto != null) {
+                products.add(dto);
+            }
+        }
+        return products;
+    }
 
-        // 4. 分组处理商品及图片
+    // 商品与图片的联表结果按商品分组（保持行顺序）
+    private Map<Long, ProductDTO> groupProductRows(List<Map<String, Object>> results) {
         Map<Long, ProductDTO> productMap = new LinkedHashMap<>();
         for (Map<String, Object> row : results) {
             Long productId = (Long) row.get("id");
@@ -201,16 +372,7 @@ public class ProductServiceImpl implements ProductService {
                 productMap.get(productId).getImages().add(imageDTO);
             }
         }
-
-        // 5. 构建分页响应
-        PageResponse<ProductDTO> response = new PageResponse<>();
-        response.setPageNum(pageNum);
-        response.setPageSize(pageSize);
-        response.setTotal(total);
-        response.setPages(pages);
-        response.setList(new ArrayList<>(productMap.values()));
-
-        return response;
+        return productMap;
     }
 
     // 获取所有分类（树形结构）
@@ -229,6 +391,7 @@ public class ProductServiceImpl implements ProductService {
     // 创建大分类，例如：大类电子产品1，中类手机或者电脑2，小类智能手机3
     @Override
     @Transactional//开启事务
+    @CacheEvict(cacheNames = "categories", key = "'all'")
     public CategoryDTO createCategory(CategoryDTO categoryDTO) {
         Long parentId = categoryDTO.getParentId() != null ? categoryDTO.getParentId() : 0L;
         if (parentId != 0) {
@@ -336,6 +499,7 @@ public class ProductServiceImpl implements ProductService {
     // 创建轮播图
     @Override
     @Transactional
+    @CacheEvict(cacheNames = "banners", key = "'active'")
     public BannerDTO createBanner(BannerDTO bannerDTO) {
         // 业务逻辑时间验证
         validateBannerTime(bannerDTO);
@@ -355,6 +519,7 @@ public class ProductServiceImpl implements ProductService {
     // 更新轮播图
     @Override
     @Transactional
+    @CacheEvict(cacheNames = "banners", key = "'active'")
     public BannerDTO updateBanner(Long id, BannerDTO bannerDTO) {
         Banner banner = bannerMapper.findById(id);
         if (banner == null) {
@@ -377,7 +542,7 @@ public class ProductServiceImpl implements ProductService {
     // 删除轮播图
     @Override
     @Transactional
-    @CacheEvict(cacheNames = "banners", key = "#id")
+    @CacheEvict(cacheNames = "banners", key = "'active'")
     public void deleteBanner(Long id) {
         Banner banner = bannerMapper.findById(id);
         if (banner == null) {
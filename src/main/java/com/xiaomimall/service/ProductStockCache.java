@@ -0,0 +1,312 @@
+package com.xiaomimall.service;
+
+import com.xiaomimall.dto.CartItemDTO;
+import com.xiaomimall.dto.StockShortageDTO;
+import com.xiaomimall.entity.Product;
+import com.xiaomimall.mapper.ProductMapper;
+import com.xiaomimall.redis.RedisScriptRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 普通商品库存预占（Redis）
+ * 按商品开启后，库存镜像到Redis计数器，下单时由Lua一次性原子预占整单，
+ * 并在订单事务内写入结算流水（ProductStockWriteBehind），由结算任务批量落库；事务回滚或订单取消时归还。
+ * 预占到订单事务结束之间的数量记为在途，按订单号登记，事务提交后确认、回滚后撤销；
+ * 节点在此期间退出留下的登记由对账任务（ProductStockReconciler）按订单是否存在确认或撤销。
+ * Redis中的库存 = 数据库库存 - 未结算流水 - 在途预占，键缺失时按此公式在行锁下重新加载。
+ * 所有键共用哈希标签{stock}，Redis Cluster下位于同一槽位，整单预占可以在一次Lua调用中完成，
+ * 代价是普通商品库存的读写集中在一个节点上。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductStockCache {
+
+    private static final String KEY_PREFIX = "product:{stock}:";
+    // 在途预占：商品ID -> 数量
+    private static final String INFLIGHT_KEY = KEY_PREFIX + "inflight";
+    // 预占登记：订单号 -> "商品ID:数量,..."
+    private static final String RESERVATIONS_KEY = KEY_PREFIX + "reservations";
+    // 预占时间：订单号 -> 预占时间（毫秒）
+    private static final String RESERVED_AT_KEY = KEY_PREFIX + "reserved-at";
+    // 库存键加载代数：商品ID -> 加载次数
+    private static final String GENERATIONS_KEY = KEY_PREFIX + "generations";
+
+    // Lua脚本（resources/lua）
+    private static final String RESERVE_SCRIPT = "product_stock_reserve";
+    private static final String CONFIRM_SCRIPT = "product_stock_confirm";
+    private static final String RELEASE_SCRIPT = "product_stock_release";
+    private static final String RETURN_SCRIPT = "product_stock_return";
+    private static final String LOAD_SCRIPT = "product_stock_load";
+    private static final String SNAPSHOT_SCRIPT = "product_stock_snapshot";
+    private static final String ADJUST_SCRIPT = "product_stock_adjust";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisScriptRegistry redisScriptRegistry;
+    private final ProductMapper productMapper;
+    private final ProductStockWriteBehind productStockWriteBehind;
+
+    @Value("${product.stock-cache.enabled:true}")// 全局开关，关闭后所有商品都直接扣减数据库库存
+    private boolean enabled;
+
+    // 商品是否走Redis预占模式
+    public boolean isCached(Product product) {
+        return enabled && Boolean.TRUE.equals(product.getStockCacheEnabled());
+    }
+
+    // 原子预占整单库存，成功返回空列表，库存不足时不扣减并返回缺货明细
+    // 结算流水随当前事务提交，提交后确认预占，回滚则归还Redis库存
+    public List<StockShortageDTO> reserve(String orderNo, List<CartItemDTO> items, Map<Long, Product> products) {
+        List<String> keys = reservationKeys(items);
+        String[] args = Stream.concat(Stream.of(itemArgs(items)),
+                Stream.of(orderNo, String.valueOf(System.currentTimeMillis()))).toArray(String[]::new);
+
+        Long result = redisScriptRegistry.execute(RESERVE_SCRIPT, keys, args);
+        if (result != null && result < 0) {
+            // 有库存键未加载（首次开启或Redis重启），加载后重试一次
+            load(items);
+            result = redisScriptRegistry.execute(RESERVE_SCRIPT, keys, args);
+        }
+        if (result == null || result < 0) {
+            throw new IllegalStateException("商品库存加载失败，请稍后重试");
+        }
+        if (result > 0) {
+            List<StockShortageDTO> shortages = findShortages(items, products);
+            if (shortages.isEmpty()) {
+                // 判定与读取之间库存又被归还，按脚本返回的商品报告
+                CartItemDTO item = items.get(result.intValue() - 1);
+                Product product = products.get(item.getProductId());
+                shortages.add(new StockShortageDTO(product.getId(), product.getName(), item.getQuantity(), null));
+            }
+            return shortages;
+        }
+
+        try {
+            productStockWriteBehind.append(items, 1);
+        } catch (RuntimeException e) {
+            cancelReservation(orderNo, items);
+            throw e;
+        }
+        afterCompletion(status -> {
+            if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                confirmReservation(orderNo);
+            } else {
+                cancelReservation(orderNo, items);
+            }
+        });
+        return List.of();
+    }
+
+    // 订单取消等场景归还已结算的预占库存，归还流水随当前事务提交，提交后加回Redis库存
+    public void release(List<CartItemDTO> items) {
+        // 提交前读取加载代数，提交后键被重新加载过（已按数据库计入本次归还）则不再重复加回
+        List<String> generations = generations(items);
+        productStockWriteBehind.append(items, -1);
+        afterCompletion(status -> {
+            if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                returnStock(items, generations);
+            }
+        });
+    }
+
+    // 只读检查Redis库存，返回不足的商品明细（未加载的商品视为数据库库存）
+    public List<StockShortageDTO> findShortages(List<CartItemDTO> items, Map<Long, Product> products) {
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(stockKeys(items));
+        List<StockShortageDTO> shortages = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            CartItemDTO item = items.get(i);
+            Product product = products.get(item.getProductId());
+            String value = values == null ? null : values.get(i);
+            int available = value == null ? product.getStock() : Math.max(0, Integer.parseInt(value));
+            if (available < item.getQuantity()) {
+                shortages.add(new StockShortageDTO(product.getId(), product.getName(), item.getQuantity(), available));
+            }
+        }
+        return shortages;
+    }
+
+    // 尚未落库的扣减（商品ID -> 数量）：未结算流水 + 在途预占，数据库扣减路径在行锁下按 库存 - 该值 判断
+    public Map<Long, Long> pending(List<Long> productIds) {
+        Map<Long, Long> pending = new HashMap<>(productStockWriteBehind.unsettled(productIds));
+        if (!enabled || productIds.isEmpty()) {
+            return pending;
+        }
+        List<Object> values = stringRedisTemplate.opsForHash().multiGet(INFLIGHT_KEY,
+                productIds.stream().map(String::valueOf).collect(Collectors.toList()));
+        for (int i = 0; i < productIds.size(); i++) {
+            Object value = values.get(i);
+            if (value != null) {
+                pending.merge(productIds.get(i), Long.parseLong(value.toString()), Long::sum);
+            }
+        }
+        return pending;
+    }
+
+    // 删除商品的库存键（切换模式或后台修改库存后），下次预占时从数据库重新加载
+    public void evict(Long productId) {
+        afterCompletion(status -> {
+            if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                stringRedisTemplate.delete(stockKey(productId));
+            }
+        });
+    }
+
+    // 预占时间早于指定时间的订单号（对账处理节点退出遗留的登记）
+    public Set<String> staleReservations(long reservedBefore, int limit) {
+        return stringRedisTemplate.opsForZSet().rangeByScore(RESERVED_AT_KEY, 0, reservedBefore, 0, limit);
+    }
+
+    // 处理遗留的预占登记：订单已提交则确认，否则撤销并归还库存
+    public void resolveReservation(String orderNo, boolean committed) {
+        if (committed) {
+            confirmReservation(orderNo);
+            return;
+        }
+        Object entry = stringRedisTemplate.opsForHash().get(RESERVATIONS_KEY, orderNo);
+        if (entry == null) {
+            // 已被确认或撤销，只清理时间索引
+            stringRedisTemplate.opsForZSet().remove(RESERVED_AT_KEY, orderNo);
+            return;
+        }
+        List<CartItemDTO> items = new ArrayList<>();
+        for (String part : entry.toString().split(",")) {
+            String[] fields = part.split(":");
+            CartItemDTO item = new CartItemDTO();
+            item.setProductId(Long.parseLong(fields[0]));
+            item.setQuantity(Integer.parseInt(fields[1]));
+            items.add(item);
+        }
+        cancelReservation(orderNo, items);
+    }
+
+    // 同一时刻读取各商品的Redis库存与在途数量（商品ID -> {库存, 在途}），库存键未加载的商品不返回
+    public Map<Long, long[]> snapshot(List<Long> productIds) {
+        List<String> keys = productIds.stream().map(ProductStockCache::stockKey).collect(Collectors.toList());
+        keys.add(INFLIGHT_KEY);
+        List<String> values = redisScriptRegistry.executeForList(SNAPSHOT_SCRIPT, keys,
+                productIds.stream().map(String::valueOf).toArray(String[]::new));
+        Map<Long, long[]> snapshot = new HashMap<>();
+        for (int i = 0; i < productIds.size(); i++) {
+            String stock = values.get(2 * i);
+            if (!stock.isEmpty()) {
+                snapshot.put(productIds.get(i), new long[]{Long.parseLong(stock), Long.parseLong(values.get(2 * i + 1))});
+            }
+        }
+        return snapshot;
+    }
+
+    // 按对账偏差调整库存键，返回调整后的库存，键不存在时返回null
+    public Long adjust(Long productId, long delta) {
+        return redisScriptRegistry.execute(ADJUST_SCRIPT, List.of(stockKey(productId)), String.valueOf(delta));
+    }
+
+    // 在数据库行锁下加载缺失的库存键，保证加载时没有进行中的数据库扣减和结算
+    // 已切回数据库扣减的商品不再加载，本次预占按加载失败处理
+    private void load(List<CartItemDTO> items) {
+        List<Long> productIds = items.stream().map(CartItemDTO::getProductId).collect(Collectors.toList());
+        List<Product> products = productMapper.findByIdsForUpdate(productIds).stream()
+                .filter(this::isCached)
+                .collect(Collectors.toList());
+        Map<Long, Long> pending = pending(products.stream().map(Product::getId).collect(Collectors.toList()));
+        for (Product product : products) {
+            long stock = product.getStock() - pending.getOrDefault(product.getId(), 0L);
+            Long loaded = redisScriptRegistry.execute(LOAD_SCRIPT, List.of(stockKey(product.getId()), GENERATIONS_KEY),
+                    String.valueOf(stock), String.valueOf(product.getId()));
+            if (loaded != null && loaded == 1) {
+                log.info("商品库存已加载到Redis: productId={}, stock={}", product.getId(), stock);
+            }
+        }
+    }
+
+    // 订单已提交，减去在途数量并删除登记
+    private void confirmReservation(String orderNo) {
+        try {
+            redisScriptRegistry.execute(CONFIRM_SCRIPT, List.of(INFLIGHT_KEY, RESERVATIONS_KEY, RESERVED_AT_KEY), orderNo);
+        } catch (Exception e) {
+            // 登记保留，由对账任务按订单已存在确认
+            log.warn("确认商品库存预占失败，等待对账处理: orderNo={}", orderNo, e);
+        }
+    }
+
+    // 订单未提交，归还Redis库存并减去在途数量
+    private void cancelReservation(String orderNo, List<CartItemDTO> items) {
+        try {
+            String[] args = Stream.concat(Stream.of(itemArgs(items)), Stream.of(orderNo)).toArray(String[]::new);
+            redisScriptRegistry.execute(RELEASE_SCRIPT, reservationKeys(items), args);
+        } catch (Exception e) {
+            // 登记保留，由对账任务按订单不存在撤销
+            log.warn("撤销商品库存预占失败，等待对账处理: orderNo={}, items={}", orderNo, items, e);
+        }
+    }
+
+    // 取消订单提交后加回Redis库存，失败时Redis库存偏少，由对账任务发现
+    private void returnStock(List<CartItemDTO> items, List<String> generations) {
+        try {
+            List<String> keys = new ArrayList<>(stockKeys(items));
+            keys.add(GENERATIONS_KEY);
+            String[] args = Stream.concat(Stream.of(itemArgs(items)), generations.stream()).toArray(String[]::new);
+            redisScriptRegistry.execute(RETURN_SCRIPT, keys, args);
+        } catch (Exception e) {
+            log.error("归还商品Redis库存失败: items={}", items, e);
+        }
+    }
+
+    // 各商品库存键的加载代数，未加载过为"0"
+    private List<String> generations(List<CartItemDTO> items) {
+        List<Object> values = stringRedisTemplate.opsForHash().multiGet(GENERATIONS_KEY,
+                items.stream().map(item -> String.valueOf(item.getProductId())).collect(Collectors.toList()));
+        return values.stream().map(value -> value == null ? "0" : value.toString()).collect(Collectors.toList());
+    }
+
+    private static String stockKey(Long productId) {
+        return KEY_PREFIX + productId;
+    }
+
+    private List<String> stockKeys(List<CartItemDTO> items) {
+        return items.stream().map(item -> stockKey(item.getProductId())).collect(Collectors.toList());
+    }
+
+    // 预占/撤销脚本的KEYS：各商品库存键 + 在途数量 + 预占登记 + 预占时间
+    private List<String> reservationKeys(List<CartItemDTO> items) {
+        List<String> keys = new ArrayList<>(stockKeys(items));
+        keys.add(INFLIGHT_KEY);
+        keys.add(RESERVATIONS_KEY);
+        keys.add(RESERVED_AT_KEY);
+        return keys;
+    }
+
+    // 各商品数量 + 各商品ID
+    private String[] itemArgs(List<CartItemDTO> items) {
+        return Stream.concat(items.stream().map(item -> String.valueOf(item.getQuantity())),
+                items.stream().map(item -> String.valueOf(item.getProductId()))).toArray(String[]::new);
+    }
+
+    // 在当前事务结束后执行，无事务时立即按已提交处理
+    private void afterCompletion(IntConsumer action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.accept(TransactionSynchronization.STATUS_COMMITTED);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                action.accept(status);
+            }
+        });
+    }
+}
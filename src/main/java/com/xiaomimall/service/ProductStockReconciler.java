@@ -0,0 +1,109 @@
+package com.xiaomimall.service;
+
+import com.xiaomimall.entity.Product;
+import com.xiaomimall.mapper.OrderMapper;
+import com.xiaomimall.mapper.ProductMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 普通商品库存对账
+ * 先处理节点退出遗留的预占登记：超过时限仍未确认的，订单已存在则确认，否则撤销并归还Redis库存。
+ * 再对比Redis库存与 数据库库存 - 未结算流水 - 在途预占，取消订单提交后未能加回Redis等情况会留下偏差。
+ * 开启修复后，同一偏差连续两轮出现（排除进行中的下单和结算）才按数据库校正Redis库存。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductStockReconciler {
+
+    private static final int RESERVATION_BATCH_SIZE = 500;
+
+    private final ProductMapper productMapper;
+    private final OrderMapper orderMapper;
+    private final ProductStockCache productStockCache;
+
+    @Value("${product.stock-cache.reservation-timeout:300000}")// 预占登记超过该时长未确认视为节点已退出（毫秒），需大于下单事务的最长耗时
+    private long reservationTimeoutMillis;
+
+    @Value("${product.stock-cache.reconcile.repair:false}")// 是否自动校正Redis库存
+    private boolean repairEnabled;
+
+    // 上一轮发现的偏差，用于确认偏差稳定
+    private final Map<Long, Long> previousDrifts = new ConcurrentHashMap<>();
+
+    @Scheduled(initialDelayString = "${product.stock-cache.reconcile.interval:60000}",
+            fixedDelayString = "${product.stock-cache.reconcile.interval:60000}")
+    public void scheduledReconcile() {
+        try {
+            resolveStaleReservations();
+            reconcile();
+        } catch (Exception e) {
+            log.warn("商品库存对账失败", e);
+        }
+    }
+
+    // 处理超时未确认的预占登记，返回处理条数
+    public int resolveStaleReservations() {
+        Set<String> orderNos = productStockCache.staleReservations(
+                System.currentTimeMillis() - reservationTimeoutMillis, RESERVATION_BATCH_SIZE);
+        if (orderNos == null) {
+            return 0;
+        }
+        for (String orderNo : orderNos) {
+            boolean committed = orderMapper.findByOrderNo(orderNo) != null;
+            productStockCache.resolveReservation(orderNo, committed);
+            log.warn("处理遗留的商品库存预占: orderNo={}, committed={}", orderNo, committed);
+        }
+        return orderNos.size();
+    }
+
+    // 执行一轮对账，返回存在偏差的商品（商品ID -> 偏差）
+    public Map<Long, Long> reconcile() {
+        List<Product> products = productMapper.findStockCacheAvailable();
+        if (products.isEmpty()) {
+            previousDrifts.clear();
+            return Map.of();
+        }
+        Map<Long, long[]> snapshot = productStockCache.snapshot(
+                products.stream().map(Product::getId).collect(Collectors.toList()));
+
+        Map<Long, Long> drifts = new HashMap<>();
+        for (Product product : products) {
+            Long productId = product.getId();
+            long[] redis = snapshot.get(productId);
+            if (redis == null) {
+                // 库存键未加载，下次预占时从数据库加载，不参与对账
+                previousDrifts.remove(productId);
+                continue;
+            }
+            long expected = product.getStock() - redis[1];
+            long drift = redis[0] - expected;
+            if (drift == 0) {
+                previousDrifts.remove(productId);
+                continue;
+            }
+            drifts.put(productId, drift);
+            log.warn("商品库存存在偏差: productId={}, redisStock={}, available={}, inflight={}, drift={}",
+                    productId, redis[0], product.getStock(), redis[1], drift);
+            Long previous = previousDrifts.put(productId, drift);
+            if (repairEnabled && previous != null && previous == drift) {
+                Long stock = productStockCache.adjust(productId, -drift);
+                previousDrifts.remove(productId);
+                log.warn("商品Redis库存已按数据库校正: productId={}, drift={}, stock={}", productId, drift, stock);
+            }
+        }
+        previousDrifts.keySet().retainAll(drifts.keySet());
+        return drifts;
+    }
+}
@@ -0,0 +1,109 @@
+package com.xiaomimall.service;
+
+import com.xiaomimall.cache.ProductCacheEvictor;
+import com.xiaomimall.dto.CartItemDTO;
+import com.xiaomimall.entity.ProductStockJournal;
+import com.xiaomimall.mapper.ProductMapper;
+import com.xiaomimall.mapper.ProductStockJournalMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * 普通商品库存结算
+ * 库存预占模式下，Redis完成库存判定，数据库库存的变化先作为流水与订单同事务写入product_stock_journal
+ * （下单为正、取消为负），每个周期由任一节点把一批流水按商品合并，用一条CASE语句写入products后删除，
+ * 热点商品不再逐单争抢行锁；节点退出不会丢失已提交订单的扣减。
+ * 加载库存键和数据库扣减路径都按 库存 - 未结算流水 - 在途预占 判断。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductStockWriteBehind {
+
+    private final ProductMapper productMapper;
+    private final ProductStockJournalMapper productStockJournalMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ProductCacheEvictor productCacheEvictor;
+
+    @Value("${product.stock-cache.settle-batch-size:1000}")// 每个结算事务处理的流水条数
+    private int batchSize;
+
+    // 记录库存变化流水（quantity为正表示扣减，sign为-1表示归还），需在订单事务内调用
+    public void append(List<CartItemDTO> items, int sign) {
+        productStockJournalMapper.insertBatch(items.stream()
+                .map(item -> new ProductStockJournal(null, item.getProductId(), sign * item.getQuantity()))
+                .collect(Collectors.toList()));
+    }
+
+    // 未结算流水之和（商品ID -> 数量），在商品行锁下调用
+    public Map<Long, Long> unsettled(List<Long> productIds) {
+        Map<Long, Long> unsettled = new TreeMap<>();
+        if (productIds.isEmpty()) {
+            return unsettled;
+        }
+        for (ProductStockJournal sum : productStockJournalMapper.sumByProductIds(productIds)) {
+            unsettled.put(sum.getProductId(), sum.getQuantity().longValue());
+        }
+        return unsettled;
+    }
+
+    // 定时把流水合并写入数据库，一批结算满时继续下一批
+    @Scheduled(fixedDelayString = "${product.stock-cache.flush-interval:1000}")
+    public void flush() {
+        try {
+            Integer settled;
+            do {
+                settled = transactionTemplate.execute(status -> settleBatch());
+            } while (settled != null && settled >= batchSize);
+        } catch (Exception e) {
+            // 事务整体回滚，流水保留到下个周期重试
+            log.warn("商品库存结算异常，下个周期重试", e);
+        }
+    }
+
+    // 应用关闭前结算剩余的流水
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    // 结算一批流水，返回本批读取的条数
+    // 先按ID升序锁商品行、再锁流水，与下单路径（商品行锁 -> 读取流水）加锁顺序一致
+    private int settleBatch() {
+        List<ProductStockJournal> candidates = productStockJournalMapper.findBatch(batchSize);
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+        productMapper.findByIdsForUpdate(candidates.stream().map(ProductStockJournal::getProductId)
+                .distinct().sorted().collect(Collectors.toList()));
+        // 其他节点并发结算过的流水已删除，只结算仍存在的
+        List<ProductStockJournal> entries = productStockJournalMapper.lockByIds(
+                candidates.stream().map(ProductStockJournal::getId).collect(Collectors.toList()));
+        if (entries.isEmpty()) {
+            return candidates.size();
+        }
+        Map<Long, Long> deltas = new TreeMap<>();
+        entries.forEach(entry -> deltas.merge(entry.getProductId(), entry.getQuantity().longValue(), Long::sum));
+        deltas.values().removeIf(delta -> delta == 0);
+        if (!deltas.isEmpty()) {
+            int updateCount = productMapper.settleStockBatch(deltas);
+            if (updateCount != deltas.size()) {
+                // 商品已被物理删除等情况，对应增量无法落库
+                log.error("商品库存结算行数不符: expected={}, updated={}, deltas={}", deltas.size(), updateCount, deltas);
+            }
+            productCacheEvictor.evict(deltas.keySet());
+        }
+        productStockJournalMapper.deleteByIds(entries.stream().map(ProductStockJournal::getId).collect(Collectors.toList()));
+        return candidates.size();
+    }
+}
@@ -0,0 +1,242 @@
+package com.xiaomimall.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.xiaomimall.entity.SeckillActivity;
+import com.xiaomimall.mapper.SeckillActivityMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 秒杀活动本地状态
+ * 每个节点缓存活动快照和售罄标记，售罄后的请求无需访问MySQL和Redis即可拒绝。
+ * 售罄/重置/失效事件通过Redis Pub/Sub在节点间同步，定时刷新时按Redis剩余库存兜底清除售罄标记。
+ * 不存在的活动ID短时间记为缺失，随机ID的请求不会反复查询MySQL。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SeckillActivityStateHolder implements MessageListener {
+
+    private static final String STATE_CHANNEL = "seckill:state";
+    private static final String SOLD_OUT = "SOLD_OUT";
+    private static final String RESET = "RESET";
+    private static final String EVICT = "EVICT";
+
+    private final SeckillActivityMapper seckillActivityMapper;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final SeckillStockManager seckillStockManager;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private final Map<Long, ActivityState> states = new ConcurrentHashMap<>();
+
+    @Value("${seckill.local-state.missing-ttl-seconds:30}")// 不存在的活动ID缓存时长（秒）
+    private long missingTtlSeconds;
+
+    @Value("${seckill.local-state.missing-max-size:100000}")// 最多记录的不存在活动ID数
+    private long missingMaxSize;
+
+    // 数据库中不存在的活动ID
+    private Cache<Long, Boolean> missing;
+
+    /**
+     * 活动快照（不可变），只包含秒杀校验和限流需要的字段
+     */
+    public record Snapshot(Long id, Long productId, BigDecimal seckillPrice,
+                           LocalDateTime startTime, LocalDateTime endTime, boolean active,
+                           Integer userRateLimit, Integer activityRateLimit) {
+
+        static Snapshot of(SeckillActivity activity) {
+            return new Snapshot(activity.getId(), activity.getProductId(), activity.getSeckillPrice(),
+                    activity.getStartTime(), activity.getEndTime(), Boolean.TRUE.equals(activity.getIsActive()),
+                    activity.getUserRateLimit(), activity.getActivityRateLimit());
+        }
+    }
+
+    // 单个活动的本地状态：快照整体替换，售罄位原子翻转
+    private static final class ActivityState {
+        private volatile Snapshot snapshot;
+        private final AtomicBoolean soldOut = new AtomicBoolean(false);
+
+        private ActivityState(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        missing = Caffeine.newBuilder()
+                .maximumSize(missingMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(missingTtlSeconds))
+                .build();
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(STATE_CHANNEL));
+    }
+
+    // 获取活动快照，本地不存在时从数据库加载；活动不存在返回null，并在短时间内不再查库
+    public Snapshot getSnapshot(Long seckillId) {
+        ActivityState state = states.get(seckillId);
+        if (state != null) {
+            return state.snapshot;
+        }
+        if (missing.getIfPresent(seckillId) != null) {
+            return null;
+        }
+        SeckillActivity activity = seckillActivityMapper.findById(seckillId);
+        if (activity == null) {
+            missing.put(seckillId, Boolean.TRUE);
+            return null;
+        }
+        return states.computeIfAbsent(seckillId, id -> new ActivityState(Snapshot.of(activity))).snapshot;
+    }
+
+    // 预热：直接写入最新快照，保留已有的售罄标记
+    public void preload(SeckillActivity activity) {
+        missing.invalidate(activity.getId());
+        Snapshot snapshot = Snapshot.of(activity);
+        ActivityState state = states.putIfAbsent(activity.getId(), new ActivityState(snapshot));
+        if (state != null) {
+            state.snapshot = snapshot;
+        }
+    }
+
+    // 本地是否已有活动快照
+    public boolean isLoaded(Long seckillId) {
+        return states.containsKey(seckillId);
+    }
+
+    // 是否已售罄（纯内存读取）
+    public boolean isSoldOut(Long seckillId) {
+        ActivityState state = states.get(seckillId);
+        return state != null && state.soldOut.get();
+    }
+
+    // 标记售罄，首次翻转时广播给其他节点
+    public void markSoldOut(Long seckillId) {
+        ActivityState state = states.get(seckillId);
+        if (state != null && state.soldOut.compareAndSet(false, true)) {
+            publish(SOLD_OUT, seckillId);
+        }
+    }
+
+    // 库存回补（回滚、补货）后清除售罄标记
+    // 归还库存的节点（如MQ消费者）本地可能没有状态或未见过售罄，无论本地状态如何都要广播
+    public void resetSoldOut(Long seckillId) {
+        ActivityState state = states.get(seckillId);
+        if (state != null) {
+            state.soldOut.set(false);
+        }
+        publish(RESET, seckillId);
+    }
+
+    // 活动被创建、修改或删除时丢弃本地状态，下次访问重新加载
+    public void evict(Long seckillId) {
+        states.remove(seckillId);
+        missing.invalidate(seckillId);
+        publish(EVICT, seckillId);
+    }
+
+    // 定时从数据库刷新已缓存的活动快照
+    @Scheduled(fixedDelayString = "${seckill.local-state.refresh-interval:5000}")
+    public void refreshSnapshots() {
+        if (states.isEmpty()) {
+            return;
+        }
+        try {
+            List<Long> ids = new ArrayList<>(states.keySet());
+            Map<Long, SeckillActivity> latest = new ConcurrentHashMap<>();
+            for (SeckillActivity activity : seckillActivityMapper.findByIds(ids)) {
+                latest.put(activity.getId(), activity);
+            }
+            for (Long id : ids) {
+                SeckillActivity activity = latest.get(id);
+                if (activity == null) {
+                    states.remove(id);
+                    continue;
+                }
+                ActivityState state = states.get(id);
+                if (state != null) {
+                    state.snapshot = Snapshot.of(activity);
+                    clearSoldOutIfRestocked(id, state);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("刷新秒杀活动快照失败", e);
+        }
+    }
+
+    // RESET广播丢失时的兜底：Redis中仍有库存则清除售罄标记
+    private void clearSoldOutIfRestocked(Long seckillId, ActivityState state) {
+        if (!state.soldOut.get()) {
+            return;
+        }
+        Long remaining = seckillStockManager.remainingStock(seckillId);
+        if (remaining != null && remaining > 0) {
+            state.soldOut.set(false);
+        }
+    }
+
+    // 处理其他节点的广播
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(':');
+        if (separator <= 0) {
+            return;
+        }
+        String type = body.substring(0, separator);
+        Long seckillId;
+        try {
+            seckillId = Long.valueOf(body.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            log.warn("无效的秒杀状态消息: {}", body);
+            return;
+        }
+
+        ActivityState state = states.get(seckillId);
+        switch (type) {
+            case SOLD_OUT -> {
+                if (state != null) {
+                    state.soldOut.set(true);
+                }
+            }
+            case RESET -> {
+                if (state != null) {
+                    state.soldOut.set(false);
+                }
+            }
+            case EVICT -> {
+                states.remove(seckillId);
+                missing.invalidate(seckillId);
+            }
+            default -> log.warn("未知的秒杀状态消息: {}", body);
+        }
+    }
+
+    private void publish(String type, Long seckillId) {
+        try {
+            stringRedisTemplate.convertAndSend(STATE_CHANNEL, type + ":" + seckillId);
+        } catch (Exception e) {
+            // 广播失败不影响本节点判断，其他节点仍会由Lua脚本兜底
+            log.warn("广播秒杀状态失败: type={}, seckillId={}", type, seckillId, e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.xiaomimall.service;
+
+import com.xiaomimall.util.BloomFilter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 秒杀参与索引
+ * 每个活动一个布隆过滤器：本地过滤器判定，Redis位图在节点间共享。
+ * 下单成功时写入，已购用户的重复请求在本节点内即可拦截，不再访问MySQL。
+ * 布隆过滤器存在误判且无法删除（回滚后仍为阳性），阳性结果再用Redis用户集合确认。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SeckillParticipationIndex {
+
+    private static final String SECKILL_BLOOM_PREFIX = "seckill:bloom:";
+    private static final long BLOOM_EXPIRE_HOURS = 24;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final SeckillStockManager seckillStockManager;
+
+    @Value("${seckill.participation.bits:1048576}")// 每个活动的位图大小（位），默认128KB
+    private int numBits;
+
+    @Value("${seckill.participation.hash-functions:5}")// 哈希函数个数
+    private int numHashes;
+
+    private final Map<Long, BloomFilter> filters = new ConcurrentHashMap<>();
+
+    // 用户是否已参与该活动（确定结果）
+    public boolean hasParticipated(Long seckillId, Long userId) {
+        if (!filter(seckillId).mightContain(userId)) {
+            return false;
+        }
+        // 布隆阳性，用Redis用户集合确认（排除误判和已回滚的记录）
+        return seckillStockManager.isParticipant(seckillId, userId);
+    }
+
+    // 记录参与（抢购成功或Lua判定重复时调用），本地立即生效，Redis位图供其他节点同步
+    public void record(Long seckillId, Long userId) {
+        BloomFilter filter = filter(seckillId);
+        filter.put(userId);
+        String key = SECKILL_BLOOM_PREFIX + seckillId;
+        long[] positions = filter.positions(userId);
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (long position : positions) {
+                    conn.setBit(key, position, true);
+                }
+                conn.expire(key, TimeUnit.HOURS.toSeconds(BLOOM_EXPIRE_HOURS));
+                return null;
+            });
+        } catch (Exception e) {
+            // 写Redis失败只影响其他节点的拦截效果，Lua脚本仍会判重
+            log.warn("写入秒杀参与位图失败: seckillId={}, userId={}", seckillId, userId, e);
+        }
+    }
+
+    // 活动删除时清理
+    public void clear(Long seckillId) {
+        filters.remove(seckillId);
+        stringRedisTemplate.delete(SECKILL_BLOOM_PREFIX + seckillId);
+    }
+
+    // 定时把Redis位图合并到本地，获取其他节点记录的参与用户
+    @Scheduled(fixedDelayString = "${seckill.participation.sync-interval:10000}")
+    public void syncFromRedis() {
+        for (Map.Entry<Long, BloomFilter> entry : filters.entrySet()) {
+            try {
+                mergeFromRedis(entry.getKey(), entry.getValue());
+            } catch (Exception e) {
+                log.warn("同步秒杀参与位图失败: seckillId={}", entry.getKey(), e);
+            }
+        }
+    }
+
+    // 获取活动的本地过滤器，首次创建时从Redis加载
+    private BloomFilter filter(Long seckillId) {
+        BloomFilter filter = filters.get(seckillId);
+        if (filter != null) {
+            return filter;
+        }
+        return filters.computeIfAbsent(seckillId, id -> {
+            BloomFilter created = new BloomFilter(numBits, numHashes);
+            try {
+                mergeFromRedis(id, created);
+            } catch (Exception e) {
+                log.warn("加载秒杀参与位图失败: seckillId={}", id, e);
+            }
+            return created;
+        });
+    }
+
+    private void mergeFromRedis(Long seckillId, BloomFilter filter) {
+        byte[] key = (SECKILL_BLOOM_PREFIX + seckillId).getBytes(StandardCharsets.UTF_8);
+        byte[] bitmap = stringRedisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().get(key));
+        if (bitmap != null) {
+            filter.merge(bitmap);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.xiaomimall.service;
+
+import com.xiaomimall.redis.RedisScriptRegistry;
+import com.xiaomimall.util.TokenBucket;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 秒杀限流
+ * 第一层：每个节点按活动维护无锁令牌桶，挡掉超出单节点能力的突发流量；
+ * 第二层：Redis滑动窗口计数，按用户和按活动做全局限流，两个维度在同一Lua脚本内判断，都通过才计数。
+ * 限流值优先取活动配置，未配置时使用全局默认值。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SeckillRateLimiter {
+
+    public enum Decision {
+        ADMITTED, REJECTED_LOCAL, REJECTED_ACTIVITY, REJECTED_USER
+    }
+
+    private static final String RATE_LIMIT_PREFIX = "seckill:limit:";
+
+    // Lua脚本：滑动窗口计数（resources/lua）
+    private static final String SLIDING_WINDOW_SCRIPT = "seckill_rate_limit";
+
+    // 脚本返回值
+    private static final long WINDOW_ADMITTED = 1;
+    private static final long WINDOW_REJECTED_USER = 2;
+    private static final long WINDOW_REJECTED_ACTIVITY = 3;
+
+    private final RedisScriptRegistry redisScriptRegistry;
+
+    @Value("${seckill.rate-limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${seckill.rate-limit.window-ms:1000}")// 滑动窗口长度（毫秒）
+    private long windowMillis;
+
+    @Value("${seckill.rate-limit.default-user-limit:5}")// 每个用户每个窗口允许的请求数，0表示不限
+    private int defaultUserLimit;
+
+    @Value("${seckill.rate-limit.default-activity-limit:0}")// 每个活动每个窗口允许的请求数，0表示不限
+    private int defaultActivityLimit;
+
+    // 活动ID -> 本节点令牌桶
+    private final Map<Long, TokenBucket> localBuckets = new ConcurrentHashMap<>();
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejectedLocal = new LongAdder();
+    private final LongAdder rejectedActivity = new LongAdder();
+    private final LongAdder rejectedUser = new LongAdder();
+    private final LongAdder redisErrors = new LongAdder();
+
+    // 判断本次请求是否放行
+    public Decision tryAcquire(Long seckillId, Long userId, Integer activityLimit, Integer userLimit) {
+        if (!enabled) {
+            return Decision.ADMITTED;
+        }
+        int perActivity = activityLimit != null && activityLimit > 0 ? activityLimit : defaultActivityLimit;
+        int perUser = userLimit != null && userLimit > 0 ? userLimit : defaultUserLimit;
+
+        // 1. 本地令牌桶（纯内存）
+        if (perActivity > 0 && !localBucket(seckillId, perActivity).tryAcquire()) {
+            rejectedLocal.increment();
+            return Decision.REJECTED_LOCAL;
+        }
+
+        // 2. Redis滑动窗口：按用户和按活动
+        int userWindowLimit = userId != null ? perUser : 0;
+        if (userWindowLimit > 0 || perActivity > 0) {
+            long result = acquireWindows(seckillId, userId, userWindowLimit, perActivity);
+            if (result == WINDOW_REJECTED_USER) {
+                rejectedUser.increment();
+                return Decision.REJECTED_USER;
+            }
+            if (result == WINDOW_REJECTED_ACTIVITY) {
+                rejectedActivity.increment();
+                return Decision.REJECTED_ACTIVITY;
+            }
+        }
+
+        admitted.increment();
+        return Decision.ADMITTED;
+    }
+
+    // 限流计数
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("admitted", admitted.sum());
+        stats.put("rejectedLocal", rejectedLocal.sum());
+        stats.put("rejectedActivity", rejectedActivity.sum());
+        stats.put("rejectedUser", rejectedUser.sum());
+        stats.put("redisErrors", redisErrors.sum());
+        return stats;
+    }
+
+    // 获取活动的本地令牌桶，限流值变化时重建
+    private TokenBucket localBucket(Long seckillId, int permitsPerWindow) {
+        long permitsPerSecond = Math.max(1, permitsPerWindow * 1000L / windowMillis);
+        TokenBucket bucket = localBuckets.get(seckillId);
+        if (bucket == null || bucket.getPermitsPerSecond() != permitsPerSecond) {
+            bucket = new TokenBucket(permitsPerSecond, permitsPerSecond);
+            localBuckets.put(seckillId, bucket);
+        }
+        return bucket;
+    }
+
+    // Redis滑动窗口计数，Redis异常时放行（由后续Lua扣减兜底）
+    private long acquireWindows(Long seckillId, Long userId, int userLimit, int activityLimit) {
+        long now = System.currentTimeMillis();
+        long window = now / windowMillis;
+        double weight = 1.0 - (double) (now % windowMillis) / windowMillis;
+        // 同一活动的用户与活动窗口键使用相同哈希标签，保证落在同一槽位
+        String prefix = RATE_LIMIT_PREFIX + "{" + seckillId + "}:";
+        String userPrefix = prefix + "u:" + userId + ":";
+        String activityPrefix = prefix + "a:";
+        try {
+            Long result = redisScriptRegistry.execute(SLIDING_WINDOW_SCRIPT,
+                    Arrays.asList(userPrefix + window, userPrefix + (window - 1),
+                            activityPrefix + window, activityPrefix + (window - 1)),
+                    String.valueOf(weight), String.valueOf(userLimit), String.valueOf(activityLimit),
+                    String.valueOf(windowMillis * 2));
+            return result == null ? WINDOW_ADMITTED : result;
+        } catch (Exception e) {
+            redisErrors.increment();
+            log.warn("秒杀限流Redis计数失败，放行请求: seckillId={}, userId={}", seckillId, userId, e);
+            return WINDOW_ADMITTED;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.xiaomimall.service;
 
 import com.xiaomimall.dto.SeckillActivityDTO;
+import com.xiaomimall.dto.SeckillOrderMessage;
 import com.xiaomimall.dto.SeckillResultDTO;
 import com.xiaomimall.entity.PaymentType;
 
@@ -13,6 +14,12 @@ import java.util.List;
 public interface SeckillService {
     SeckillResultDTO executeSeckill(Long userId, Long seckillId, PaymentType paymentType);//执行秒杀
 
+    SeckillResultDTO getSeckillResult(Long userId, Long seckillId);//查询秒杀结果（异步模式轮询）
+
+    void persistQueuedOrders(List<SeckillOrderMessage> messages);//批量落库排队中的秒杀订单
+
+    void rejectQueuedOrder(SeckillOrderMessage message, String reason);//落库失败时回滚Redis并标记失败
+
     List<SeckillActivityDTO> getActiveSeckills();//获取进行中的秒杀活动
 
     List<SeckillActivityDTO> getUpcomingSeckills();//获取即将进行的秒杀活动
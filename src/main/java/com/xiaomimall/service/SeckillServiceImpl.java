@@ -1,7 +1,9 @@
 package com.xiaomimall.service;
 
+import com.xiaomimall.config.RabbitMQConfig;
 import com.xiaomimall.dto.ProductDTO;
 import com.xiaomimall.dto.SeckillActivityDTO;
+import com.xiaomimall.dto.SeckillOrderMessage;
 import com.xiaomimall.dto.SeckillResultDTO;
 import com.xiaomimall.entity.*;
 import com.xiaomimall.exception.SeckillException;
@@ -11,10 +13,14 @@ import com.xiaomimall.mapper.SeckillOrderMapper;
 import com.xiaomimall.util.OrderNoGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -34,113 +40,231 @@ public class SeckillServiceImpl implements SeckillService {
     private final SeckillOrderMapper seckillOrderMapper;
     private final ProductMapper productMapper;
     private final RedisTemplate<String, Object> redisTemplate;
+    private final RabbitTemplate rabbitTemplate;
+    private final SeckillActivityStateHolder activityStateHolder;
+    private final SeckillStockManager seckillStockManager;
+    private final SeckillStockWriteBehind seckillStockWriteBehind;
+    private final SeckillParticipationIndex participationIndex;
+    private final SeckillWaitingRoom seckillWaitingRoom;
+    private final OrderNoGenerator orderNoGenerator;
 
+    @Value("${seckill.async.enabled:false}")// 是否启用异步下单（Redis预扣 + MQ落库）
+    private boolean asyncEnabled;
 
     // Redis键前缀
-    private static final String SECKILL_STOCK_PREFIX = "seckill:stock:";
-    private static final String SECKILL_USER_PREFIX = "seckill:user:";
     private static final String SECKILL_ACTIVITY_PREFIX = "seckill:activity:";
-    
-    // Lua脚本：原子性执行秒杀操作
-    private static final String SECKILL_SCRIPT =
-        "local stockKey = KEYS[1] " +
-        "local userKey = KEYS[2] " +
-        "local userId = ARGV[1] " +
-        "local quantity = tonumber(ARGV[2]) " +
-        "local activityId = ARGV[3] " +
-        " " +
-        "local stock = redis.call('get', stockKey) " +
-        "if not stock or tonumber(stock) < quantity then " +
-        "    return 0 " +
-        "end " +
-        " " +
-        "if redis.call('sismember', userKey, userId) == 1 then " +
-        "    return 2 " +
-        "end " +
-        " " +
-        "redis.call('decrby', stockKey, quantity) " +
-        "redis.call('sadd', userKey, userId) " +
-        "redis.call('expire', userKey, 86400) " + // 24小时过期
-        "return 1 ";
+    private static final String SECKILL_RESULT_PREFIX = "seckill:result:";
 
+    // 异步下单结果状态
+    private static final String RESULT_QUEUED = "QUEUED";
+    private static final String RESULT_SUCCESS_PREFIX = "SUCCESS:";
+    private static final String RESULT_FAILED_PREFIX = "FAILED:";
+    private static final long RESULT_EXPIRE_HOURS = 24;
+    private static final long RESULT_POLL_INTERVAL_MS = 500;
+    
     @Override
-    @Transactional
     public SeckillResultDTO executeSeckill(Long userId, Long seckillId,PaymentType paymentType) {
-        // 1. 验证秒杀活动
-        SeckillActivity activity = seckillActivityMapper.findById(seckillId);
-        if (activity == null || !activity.getIsActive()) {
+        // 0. 本节点已知售罄，直接拒绝（不访问MySQL和Redis）
+        if (activityStateHolder.isSoldOut(seckillId)) {
+            return new SeckillResultDTO(false, "秒杀失败，库存不足", null, 0L);
+        }
+
+        // 1. 验证秒杀活动（使用本地活动快照）
+        SeckillActivityStateHolder.Snapshot activity = activityStateHolder.getSnapshot(seckillId);
+        if (activity == null || !activity.active()) {
             return new SeckillResultDTO(false, "秒杀活动不存在", null, 0L);
         }
         
         LocalDateTime now = LocalDateTime.now();
-        if (now.isBefore(activity.getStartTime())) {
-            long waitTime = java.time.Duration.between(now, activity.getStartTime()).toMillis();
+        if (now.isBefore(activity.startTime())) {
+            long waitTime = java.time.Duration.between(now, activity.startTime()).toMillis();
             return new SeckillResultDTO(false, "秒杀尚未开始", null, waitTime);
         }
         
-        if (now.isAfter(activity.getEndTime())) {
+        if (now.isAfter(activity.endTime())) {
             return new SeckillResultDTO(false, "秒杀已结束", null, 0L);
         }
         
-        // 2. 检查用户是否已经参与过秒杀
-        SeckillOrder existingOrder = seckillOrderMapper.findByUserIdAndSeckillId(userId, seckillId);
-        if (existingOrder != null) {
+        // 1.1 启用排队时，只接受持有有效放行凭证的用户
+        if (seckillWaitingRoom.isEnabled()) {
+            // 凭证一次有效，校验时即原子收回，无论结果如何名额都留给队列中的下一位
+            if (!seckillWaitingRoom.tryConsumePass(seckillId, userId)) {
+                return new SeckillResultDTO(false, "请先排队，放行后再发起秒杀", null, 0L);
+            }
+        }
+
+        // 2. 检查用户是否已经参与过秒杀（参与索引，不访问MySQL；最终由Lua脚本和唯一索引保证）
+        if (participationIndex.hasParticipated(seckillId, userId)) {
             return new SeckillResultDTO(false, "您已经参与过本次秒杀", null, 0L);
         }
         
-        // 3. 使用Redis Lua脚本原子性执行秒杀操作
-        String stockKey = SECKILL_STOCK_PREFIX + seckillId;
-        String userKey = SECKILL_USER_PREFIX + seckillId;
-        
-        DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>(SECKILL_SCRIPT, Long.class);
-        Long result = redisTemplate.execute(redisScript, 
-            Arrays.asList(stockKey, userKey),
-            userId.toString(), "1", seckillId.toString());
+        // 3. 使用Redis Lua脚本原子性执行秒杀操作（分片模式下只访问用户所属分片）
+        long result = seckillStockManager.deduct(seckillId, userId, 1);
         
         // 4. 处理秒杀结果
-        if (result == null || result == 0) {
+        if (result == SeckillStockManager.RESULT_NOT_READY) {
+            return new SeckillResultDTO(false, "秒杀库存未就绪，请稍后重试", null, 0L);
+        } else if (result == SeckillStockManager.RESULT_SOLD_OUT) {
+            // 首次发现库存耗尽，置位售罄标记并广播
+            activityStateHolder.markSoldOut(seckillId);
             return new SeckillResultDTO(false, "秒杀失败，库存不足", null, 0L);
-        } else if (result == 2) {
+        } else if (result == SeckillStockManager.RESULT_DUPLICATE) {
+            // 其他节点记录的参与，补记到本地索引
+            participationIndex.record(seckillId, userId);
             return new SeckillResultDTO(false, "您已经参与过本次秒杀", null, 0L);
         }
 
-        // 修改后的try-catch块
+        participationIndex.record(seckillId, userId);
+
+        // 5. 异步模式：Redis已完成资格判定，投递MQ后立即返回排队凭证
+        if (asyncEnabled) {
+            return enqueueSeckillOrder(userId, seckillId, paymentType);
+        }
+
+        String orderNo = orderNoGenerator.generateOrderNo();
         try {
-            // 5. 秒杀成功，创建秒杀订单
+            // 6. 秒杀成功，创建秒杀订单
             SeckillOrder seckillOrder = new SeckillOrder();
             seckillOrder.setUserId(userId);
             seckillOrder.setSeckillId(seckillId);
-            seckillOrder.setOrderNo(OrderNoGenerator.generateOrderNo());
+            seckillOrder.setOrderNo(orderNo);
             seckillOrder.setStatus(0);
             seckillOrderMapper.insert(seckillOrder); // 写入数据库订单
 
-            // 6. 更新数据库库存 (如果此步失败，下面的catch会回滚Redis和订单)
-            int updateCount = seckillActivityMapper.reduceStock(seckillId, 1);
-            if (updateCount == 0) {
-                // 极端情况：库存扣减为0，说明已经卖完，需要回滚
-                throw new RuntimeException("Database stock reduction failed");
-            }
+            // 7. 数据库库存扣减交给写后合并，按周期批量落库
+            seckillStockWriteBehind.record(seckillId, 1);
 
-            return new SeckillResultDTO(true, "秒杀成功", seckillOrder.getOrderNo(), 0L);
+            return new SeckillResultDTO(true, "秒杀成功", orderNo, 0L);
 
+        } catch (DuplicateKeyException e) {
+            // 唯一索引兜底：数据库已有该用户的秒杀订单（如Redis数据丢失），归还本次扣减的库存
+            releaseRedisStock(userId, seckillId);
+            log.warn("秒杀订单重复，已归还库存: userId={}, seckillId={}", userId, seckillId);
+            return new SeckillResultDTO(false, "您已经参与过本次秒杀", null, 0L);
         } catch (Exception e) {
-            // 【关键修改】回滚Redis前，先尝试删除可能已经创建的数据库订单
-            SeckillOrder seckillOrder = seckillOrderMapper.findByOrderNo(OrderNoGenerator.generateOrderNo());
-            if (seckillOrder != null && seckillOrder.getOrderNo() != null) {
-                try {
-                    seckillOrderMapper.deleteByOrderNo(seckillOrder.getOrderNo());
-                } catch (Exception ex) {
-                    log.error("回滚删除订单失败，需要人工干预！orderNo: {}", seckillOrder.getOrderNo(), ex);
-                }
-            }
-            // 回滚Redis库存和用户记录
-            redisTemplate.opsForValue().increment(stockKey, 1);
-            redisTemplate.opsForSet().remove(userKey, userId.toString());
+            // 订单未写入，回滚Redis库存和用户记录
+            rollbackRedisStock(userId, seckillId);
 
             log.error("秒杀流程异常，已回滚: userId={}, seckillId={}", userId, seckillId, e);
             return new SeckillResultDTO(false, "系统异常，请重试", null, 0L);
         }
     }
+
+    // 投递异步下单消息，返回排队中的结果
+    private SeckillResultDTO enqueueSeckillOrder(Long userId, Long seckillId, PaymentType paymentType) {
+        String orderNo = orderNoGenerator.generateOrderNo();
+        String resultKey = getResultKey(seckillId, userId);
+        try {
+            redisTemplate.opsForValue().set(resultKey, RESULT_QUEUED, RESULT_EXPIRE_HOURS, TimeUnit.HOURS);
+            rabbitTemplate.convertAndSend(RabbitMQConfig.SECKILL_EXCHANGE, RabbitMQConfig.SECKILL_ORDER_ROUTING_KEY,
+                    new SeckillOrderMessage(userId, seckillId, orderNo, paymentType));
+        } catch (Exception e) {
+            // 消息未投递成功，归还Redis名额
+            rollbackRedisStock(userId, seckillId);
+            redisTemplate.delete(resultKey);
+            log.error("秒杀下单消息投递失败，已回滚: userId={}, seckillId={}", userId, seckillId, e);
+            return new SeckillResultDTO(false, "系统繁忙，请重试", null, 0L);
+        }
+        return new SeckillResultDTO(true, "排队中，请稍后查询结果", orderNo, RESULT_POLL_INTERVAL_MS, true);
+    }
+
+    @Override
+    public SeckillResultDTO getSeckillResult(Long userId, Long seckillId) {
+        Object value = redisTemplate.opsForValue().get(getResultKey(seckillId, userId));
+        if (value != null) {
+            String state = value.toString();
+            if (RESULT_QUEUED.equals(state)) {
+                return new SeckillResultDTO(true, "排队中，请稍后查询结果", null, RESULT_POLL_INTERVAL_MS, true);
+            }
+            if (state.startsWith(RESULT_SUCCESS_PREFIX)) {
+                return new SeckillResultDTO(true, "秒杀成功", state.substring(RESULT_SUCCESS_PREFIX.length()), 0L);
+            }
+            if (state.startsWith(RESULT_FAILED_PREFIX)) {
+                return new SeckillResultDTO(false, state.substring(RESULT_FAILED_PREFIX.length()), null, 0L);
+            }
+        }
+
+        // 结果缓存已过期或同步模式下单，以数据库为准
+        SeckillOrder order = seckillOrderMapper.findByUserIdAndSeckillId(userId, seckillId);
+        if (order != null) {
+            return new SeckillResultDTO(true, "秒杀成功", order.getOrderNo(), 0L);
+        }
+        return new SeckillResultDTO(false, "未查询到秒杀记录", null, 0L);
+    }
+
+    @Override
+    @Transactional
+    public void persistQueuedOrders(List<SeckillOrderMessage> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+
+        // 1. 批量写入秒杀订单
+        List<SeckillOrder> orders = messages.stream().map(message -> {
+            SeckillOrder order = new SeckillOrder();
+            order.setUserId(message.getUserId());
+            order.setSeckillId(message.getSeckillId());
+            order.setOrderNo(message.getOrderNo());
+            order.setPaymentType(message.getPaymentType());
+            order.setStatus(0);
+            return order;
+        }).collect(Collectors.toList());
+        seckillOrderMapper.insertBatch(orders);
+
+        // 2. 事务提交后记录库存扣减（由写后合并批量落库），并写入结果，避免轮询方看到未提交的订单号
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                for (SeckillOrderMessage message : messages) {
+                    seckillStockWriteBehind.record(message.getSeckillId(), 1);
+                    redisTemplate.opsForValue().set(getResultKey(message.getSeckillId(), message.getUserId()),
+                            RESULT_SUCCESS_PREFIX + message.getOrderNo(), RESULT_EXPIRE_HOURS, TimeUnit.HOURS);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void rejectQueuedOrder(SeckillOrderMessage message, String reason) {
+        SeckillOrder existing = seckillOrderMapper.findByUserIdAndSeckillId(message.getUserId(), message.getSeckillId());
+        String resultKey = getResultKey(message.getSeckillId(), message.getUserId());
+        if (existing != null) {
+            if (existing.getOrderNo().equals(message.getOrderNo())) {
+                // 消息被重复投递，订单已落库时视为成功
+                redisTemplate.opsForValue().set(resultKey, RESULT_SUCCESS_PREFIX + existing.getOrderNo(),
+                        RESULT_EXPIRE_HOURS, TimeUnit.HOURS);
+            } else {
+                // 唯一索引冲突：用户已有其他秒杀订单，只归还本次扣减的库存
+                releaseRedisStock(message.getUserId(), message.getSeckillId());
+                redisTemplate.opsForValue().set(resultKey, RESULT_FAILED_PREFIX + "您已经参与过本次秒杀",
+                        RESULT_EXPIRE_HOURS, TimeUnit.HOURS);
+            }
+            return;
+        }
+
+        rollbackRedisStock(message.getUserId(), message.getSeckillId());
+        redisTemplate.opsForValue().set(resultKey, RESULT_FAILED_PREFIX + reason, RESULT_EXPIRE_HOURS, TimeUnit.HOURS);
+        log.warn("秒杀订单落库失败，已回滚Redis: userId={}, seckillId={}, orderNo={}",
+                message.getUserId(), message.getSeckillId(), message.getOrderNo());
+    }
+
+    // 回滚Redis库存和用户记录
+    private void rollbackRedisStock(Long userId, Long seckillId) {
+        seckillStockManager.rollback(seckillId, userId, 1);
+        // 名额已归还，其他节点可能已看到售罄，需要一并清除
+        activityStateHolder.resetSoldOut(seckillId);
+    }
+
+    // 只归还Redis库存，保留用户参与记录
+    private void releaseRedisStock(Long userId, Long seckillId) {
+        seckillStockManager.releaseStock(seckillId, userId, 1);
+        activityStateHolder.resetSoldOut(seckillId);
+    }
+
+    // 获取秒杀结果Redis键
+    private String getResultKey(Long seckillId, Long userId) {
+        return SECKILL_RESULT_PREFIX + seckillId + ":" + userId;
+    }
     
     @Override
     public List<SeckillActivityDTO> getActiveSeckills() {
@@ -170,19 +294,14 @@ public class SeckillServiceImpl implements SeckillService {
         activity.setStartTime(activityDTO.getStartTime());
         activity.setEndTime(activityDTO.getEndTime());
         activity.setIsActive(activityDTO.getIsActive());
+        activity.setUserRateLimit(activityDTO.getUserRateLimit());
+        activity.setActivityRateLimit(activityDTO.getActivityRateLimit());
         seckillActivityMapper.insert(activity);
+        // 清除各节点可能记录的“活动不存在”
+        activityStateHolder.evict(activity.getId());
         
-        // 初始化Redis库存
-        String stockKey = SECKILL_STOCK_PREFIX + activity.getId();
-        redisTemplate.opsForValue().set(stockKey, activity.getStock());
-        // 设置Redis键过期时间（活动结束后24小时）
-        long expireSeconds = java.time.Duration.between(LocalDateTime.now(), activity.getEndTime())
-                .plusHours(24).getSeconds();
-// 确保过期时间至少为1秒
-        if (expireSeconds <= 0) {
-            expireSeconds = 24 * 60 * 60; // 默认24小时
-        }
-        redisTemplate.expire(stockKey, expireSeconds, java.util.concurrent.TimeUnit.SECONDS);
+        // 初始化Redis库存（分片模式下拆分到多个子键）
+        seckillStockManager.initStock(activity.getId(), activity.getStock(), stockExpireSeconds(activity));
         
         return convertToActivityDTO(activity, product);
     }
@@ -201,12 +320,14 @@ public class SeckillServiceImpl implements SeckillService {
         activity.setStartTime(activityDTO.getStartTime());
         activity.setEndTime(activityDTO.getEndTime());
         activity.setIsActive(activityDTO.getIsActive());
+        activity.setUserRateLimit(activityDTO.getUserRateLimit());
+        activity.setActivityRateLimit(activityDTO.getActivityRateLimit());
         
         seckillActivityMapper.update(activity);
+        activityStateHolder.evict(id);
         
         // 更新Redis库存
-        String stockKey = SECKILL_STOCK_PREFIX + id;
-        redisTemplate.opsForValue().set(stockKey, activity.getStock());
+        seckillStockManager.initStock(id, activity.getStock(), stockExpireSeconds(activity));
         Product product = productMapper.findById(activity.getProductId());
         if (!activity.getStock().equals(activityDTO.getStock())) {
             return updateSeckillStock(id, activityDTO.getStock());
@@ -228,21 +349,11 @@ public class SeckillServiceImpl implements SeckillService {
             throw new SeckillException("库存更新失败");
         }
 
-        // 3. 同步更新Redis库存
-        String stockKey = SECKILL_STOCK_PREFIX + activityId;
-        redisTemplate.opsForValue().set(stockKey, newStock);
-
-        // 4. 重新计算过期时间（活动结束时间+24小时）
-        long expireSeconds = java.time.Duration.between(
-                LocalDateTime.now(),
-                activity.getEndTime()
-        ).plusHours(24).getSeconds();
+        // 3. 同步更新Redis库存（过期时间为活动结束时间+24小时）
+        seckillStockManager.initStock(activityId, newStock, stockExpireSeconds(activity));
+        activityStateHolder.evict(activityId);
 
-        if (expireSeconds > 0) {
-            redisTemplate.expire(stockKey, expireSeconds, TimeUnit.SECONDS);
-        }
-
-        // 5. 返回更新后的活动信息
+        // 4. 返回更新后的活动信息
         return convertToActivityDTO(activity, productMapper.findById(activity.getProductId()));
     }
     @Override
@@ -265,14 +376,22 @@ public class SeckillServiceImpl implements SeckillService {
         }
 
         // 4. 清理Redis缓存
-        String stockKey = SECKILL_STOCK_PREFIX + id;
-        String userKey = SECKILL_USER_PREFIX + id;
-        String activityKey = SECKILL_ACTIVITY_PREFIX + id;
-
-        redisTemplate.delete(Arrays.asList(stockKey, userKey, activityKey));
+        seckillStockManager.clear(id);
+        seckillStockWriteBehind.discard(id);
+        participationIndex.clear(id);
+        seckillWaitingRoom.clear(id);
+        redisTemplate.delete(SECKILL_ACTIVITY_PREFIX + id);
+        activityStateHolder.evict(id);
 
     }
     
+    // Redis库存过期时间：活动结束后24小时，已结束的活动默认保留24小时
+    private long stockExpireSeconds(SeckillActivity activity) {
+        long expireSeconds = java.time.Duration.between(LocalDateTime.now(), activity.getEndTime())
+                .plusHours(24).getSeconds();
+        return expireSeconds > 0 ? expireSeconds : 24 * 60 * 60;
+    }
+    
     // 转换秒杀活动列表为DTO
     private List<SeckillActivityDTO> convertToActivityDTOs(List<SeckillActivity> activities) {
         // 提取所有商品ID
@@ -305,6 +424,8 @@ public class SeckillServiceImpl implements SeckillService {
         dto.setStartTime(activity.getStartTime());
         dto.setEndTime(activity.getEndTime());
         dto.setIsActive(activity.getIsActive());
+        dto.setUserRateLimit(activity.getUserRateLimit());
+        dto.setActivityRateLimit(activity.getActivityRateLimit());
         
         // 设置商品信息
         ProductDTO productDTO = new ProductDTO();
@@ -0,0 +1,216 @@
+package com.xiaomimall.service;
+
+import com.xiaomimall.redis.RedisScriptRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 秒杀库存管理（Redis）
+ * 负责秒杀库存的初始化、原子扣减、回滚与清理。
+ * 分片模式下库存拆分到多个子键，用户按哈希路由到固定分片，本分片售罄时先从其他分片借出库存再补到本分片。
+ * 每个分片的库存键与用户集合使用独立的哈希标签{活动ID:分片}，Redis Cluster下各分片分散到不同槽位，
+ * 扣减脚本只访问本分片的两个键；借库存跨槽位，分为借出、补入两步，补入失败时归还给借出的分片。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SeckillStockManager {
+
+    // 扣减结果
+    public static final long RESULT_NOT_READY = -1;
+    public static final long RESULT_SOLD_OUT = 0;
+    public static final long RESULT_SUCCESS = 1;
+    public static final long RESULT_DUPLICATE = 2;
+
+    // Redis键前缀，单键模式即只有分片0
+    private static final String SECKILL_STOCK_PREFIX = "seckill:stock:";
+    private static final String SECKILL_USER_PREFIX = "seckill:user:";
+    // 记录活动初始化时使用的分片数
+    private static final String SECKILL_SHARDS_PREFIX = "seckill:shards:";
+
+    // Lua脚本（resources/lua）
+    private static final String DEDUCT_SCRIPT = "seckill_deduct";
+    private static final String BORROW_SCRIPT = "seckill_borrow";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisScriptRegistry redisScriptRegistry;
+
+    @Value("${seckill.stock.shards:1}")// 新建活动的库存分片数，1表示不分片
+    private int configuredShards;
+
+    // 活动ID -> 分片数（活动初始化后固定不变）
+    private final Map<Long, Integer> shardCounts = new ConcurrentHashMap<>();
+
+    // 初始化（或重置）活动库存，分片数沿用活动首次初始化时的值
+    public void initStock(Long seckillId, int stock, long expireSeconds) {
+        int shards = resolveShardCount(seckillId);
+        if (shards <= 0) {
+            shards = Math.max(1, Math.min(configuredShards, Math.max(stock, 1)));
+        }
+
+        // 平均拆分，余数分给前面的分片
+        int base = stock / shards;
+        int remainder = stock % shards;
+        for (int i = 0; i < shards; i++) {
+            int shardStock = base + (i < remainder ? 1 : 0);
+            stringRedisTemplate.opsForValue().set(stockKey(seckillId, i), String.valueOf(shardStock),
+                    expireSeconds, TimeUnit.SECONDS);
+        }
+        stringRedisTemplate.opsForValue().set(SECKILL_SHARDS_PREFIX + seckillId, String.valueOf(shards),
+                expireSeconds, TimeUnit.SECONDS);
+        shardCounts.put(seckillId, shards);
+    }
+
+    // 原子扣减库存并记录用户，返回RESULT_*结果码
+    public long deduct(Long seckillId, Long userId, int quantity) {
+        int shards = shardCount(seckillId);
+        int home = homeShard(userId, shards);
+        long result = executeDeduct(seckillId, home, userId, quantity);
+        if (result != RESULT_SOLD_OUT || shards == 1) {
+            return result;
+        }
+
+        // 本分片售罄，依次向其他分片借库存后重试；借不到说明整体售罄
+        for (int offset = 1; offset < shards; offset++) {
+            int donor = (home + offset) % shards;
+            if (!borrow(seckillId, donor, home, quantity)) {
+                continue;
+            }
+            result = executeDeduct(seckillId, home, userId, quantity);
+            if (result != RESULT_SOLD_OUT) {
+                return result;
+            }
+        }
+        return RESULT_SOLD_OUT;
+    }
+
+    // 从donor分片借出库存补到home分片，先扣借出方，补入失败时归还
+    private boolean borrow(Long seckillId, int donor, int home, int quantity) {
+        String donorKey = stockKey(seckillId, donor);
+        Long borrowed = redisScriptRegistry.execute(BORROW_SCRIPT, Collections.singletonList(donorKey),
+                String.valueOf(quantity));
+        if (borrowed == null || borrowed <= 0) {
+            return false;
+        }
+        try {
+            stringRedisTemplate.opsForValue().increment(stockKey(seckillId, home), borrowed);
+            return true;
+        } catch (RuntimeException e) {
+            try {
+                stringRedisTemplate.opsForValue().increment(donorKey, borrowed);
+            } catch (RuntimeException ex) {
+                log.error("借库存补偿失败，需对账修正: seckillId={}, donor={}, quantity={}", seckillId, donor, borrowed, ex);
+            }
+            throw e;
+        }
+    }
+
+    private long executeDeduct(Long seckillId, int shard, Long userId, int quantity) {
+        Long result = redisScriptRegistry.execute(DEDUCT_SCRIPT,
+                Arrays.asList(stockKey(seckillId, shard), userKey(seckillId, shard)),
+                userId.toString(), String.valueOf(quantity));
+        return result == null ? RESULT_NOT_READY : result;
+    }
+
+    // 回滚库存和用户记录（落库失败时调用）
+    public void rollback(Long seckillId, Long userId, int quantity) {
+        int shards = shardCount(seckillId);
+        int home = homeShard(userId, shards);
+        stringRedisTemplate.opsForValue().increment(stockKey(seckillId, home), quantity);
+        stringRedisTemplate.opsForSet().remove(userKey(seckillId, home), userId.toString());
+    }
+
+    // 只归还库存、保留用户记录（用户确已参与，本次请求重复时调用）
+    public void releaseStock(Long seckillId, Long userId, int quantity) {
+        int shards = shardCount(seckillId);
+        stringRedisTemplate.opsForValue().increment(stockKey(seckillId, homeShard(userId, shards)), quantity);
+    }
+
+    // 用户是否在活动的已购集合中
+    public boolean isParticipant(Long seckillId, Long userId) {
+        int shards = shardCount(seckillId);
+        Boolean member = stringRedisTemplate.opsForSet()
+                .isMember(userKey(seckillId, homeShard(userId, shards)), userId.toString());
+        return Boolean.TRUE.equals(member);
+    }
+
+    // 查询剩余库存（各分片之和），库存未初始化返回null
+    public Long remainingStock(Long seckillId) {
+        int shards = shardCount(seckillId);
+        List<String> keys = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            keys.add(stockKey(seckillId, i));
+        }
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(keys);
+        if (values == null || values.stream().allMatch(v -> v == null)) {
+            return null;
+        }
+        return values.stream().filter(v -> v != null).mapToLong(Long::parseLong).sum();
+    }
+
+    // 清理活动相关的库存与用户键
+    public void clear(Long seckillId) {
+        int shards = shardCount(seckillId);
+        List<String> keys = new ArrayList<>(Arrays.asList(SECKILL_SHARDS_PREFIX + seckillId));
+        for (int i = 0; i < shards; i++) {
+            keys.add(stockKey(seckillId, i));
+            keys.add(userKey(seckillId, i));
+        }
+        stringRedisTemplate.delete(keys);
+        shardCounts.remove(seckillId);
+    }
+
+    // 获取活动分片数，未初始化的活动按单键处理
+    private int shardCount(Long seckillId) {
+        int shards = resolveShardCount(seckillId);
+        return shards > 0 ? shards : 1;
+    }
+
+    // 从本地或Redis读取活动分片数，不存在返回0
+    private int resolveShardCount(Long seckillId) {
+        Integer cached = shardCounts.get(seckillId);
+        if (cached != null) {
+            return cached;
+        }
+        String value = stringRedisTemplate.opsForValue().get(SECKILL_SHARDS_PREFIX + seckillId);
+        if (value == null) {
+            return 0;
+        }
+        int shards = Integer.parseInt(value);
+        shardCounts.put(seckillId, shards);
+        return shards;
+    }
+
+    // 用户固定路由到一个分片，保证去重集合只需查本分片
+    private int homeShard(Long userId, int shards) {
+        if (shards == 1) {
+            return 0;
+        }
+        long mixed = userId * 0x9E3779B97F4A7C15L;
+        return Math.floorMod((int) (mixed ^ (mixed >>> 32)), shards);
+    }
+
+    private String stockKey(Long seckillId, int shard) {
+        return SECKILL_STOCK_PREFIX + hashTag(seckillId, shard);
+    }
+
+    private String userKey(Long seckillId, int shard) {
+        return SECKILL_USER_PREFIX + hashTag(seckillId, shard);
+    }
+
+    // Redis Cluster哈希标签：同一分片的库存键与用户集合落在同一槽位，不同分片分散到不同槽位
+    private String hashTag(Long seckillId, int shard) {
+        return "{" + seckillId + ":" + shard + "}";
+    }
+}
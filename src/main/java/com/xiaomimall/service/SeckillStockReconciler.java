@@ -0,0 +1,108 @@
+package com.xiaomimall.service;
+
+import com.xiaomimall.dto.StockReconciliationDTO;
+import com.xiaomimall.entity.SeckillActivity;
+import com.xiaomimall.mapper.SeckillActivityMapper;
+import com.xiaomimall.mapper.SeckillOrderMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 秒杀库存对账
+ * 定时对比Redis库存、数据库库存与秒杀订单数并输出报告。
+ * 偏差按全部节点未落库的扣减计算：本节点取内存中的值，其他节点取它们发布到Redis的值。
+ * Redis是库存判定的依据，开启修复后，同一偏差连续两轮出现（排除在途消息）才校正数据库库存：
+ * 目标值为Redis库存加上全部节点未落库的扣减，并以本轮读到的数据库库存为条件更新，
+ * 期间其他节点落库过扣减时放弃本轮校正，不会覆盖它们的结果。
+ * 因数据库库存不足而搁置的扣减，在数据库库存足够后重新落库。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SeckillStockReconciler {
+
+    private final SeckillActivityMapper seckillActivityMapper;
+    private final SeckillOrderMapper seckillOrderMapper;
+    private final SeckillStockManager seckillStockManager;
+    private final SeckillStockWriteBehind seckillStockWriteBehind;
+
+    @Value("${seckill.reconcile.repair:false}")// 是否自动修复数据库库存
+    private boolean repairEnabled;
+
+    // 最近一次对账结果
+    private volatile List<StockReconciliationDTO> lastReport = List.of();
+    // 上一轮发现的偏差，用于确认偏差稳定
+    private final Map<Long, Long> previousDrifts = new ConcurrentHashMap<>();
+
+    @Scheduled(initialDelayString = "${seckill.reconcile.interval:60000}",
+            fixedDelayString = "${seckill.reconcile.interval:60000}")
+    public void scheduledReconcile() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            log.warn("秒杀库存对账失败", e);
+        }
+    }
+
+    // 执行一轮对账并返回报告
+    public List<StockReconciliationDTO> reconcile() {
+        // 先落库本节点的扣减，减少误报
+        seckillStockWriteBehind.flush();
+
+        List<StockReconciliationDTO> report = new ArrayList<>();
+        for (SeckillActivity activity : seckillActivityMapper.findActiveActivities()) {
+            Long seckillId = activity.getId();
+            seckillStockWriteBehind.unparkIfCovered(seckillId, activity.getStock());
+            long pendingBefore = seckillStockWriteBehind.pending(seckillId);
+            Long redisStock = seckillStockManager.remainingStock(seckillId);
+            if (redisStock == null) {
+                // 库存尚未加载（由预热任务负责），不参与对账
+                continue;
+            }
+            int orderCount = seckillOrderMapper.countBySeckillId(seckillId);
+            long localPending = seckillStockWriteBehind.pending(seckillId);
+            // 读取Redis库存期间本节点没有新的扣减，pending与redisStock才能对应
+            boolean quiet = localPending == pendingBefore;
+            long pending = localPending + seckillStockWriteBehind.otherNodesPending(seckillId);
+            long drift = redisStock - (activity.getStock() - pending);
+
+            boolean repaired = false;
+            if (drift == 0) {
+                previousDrifts.remove(seckillId);
+            } else {
+                log.warn("秒杀库存存在偏差: seckillId={}, redisStock={}, dbStock={}, orderCount={}, pending={}, drift={}",
+                        seckillId, redisStock, activity.getStock(), orderCount, pending, drift);
+                Long previous = previousDrifts.put(seckillId, drift);
+                if (repairEnabled && previous != null && previous == drift && quiet) {
+                    // 各节点未落库的扣减之后仍会写入，校正值需要把它们加回去
+                    int target = (int) (redisStock + pending);
+                    repaired = seckillActivityMapper.compareAndSetStock(seckillId, activity.getStock(), target) == 1;
+                    previousDrifts.remove(seckillId);
+                    if (repaired) {
+                        log.warn("秒杀数据库库存已按Redis校正: seckillId={}, stock={}, target={}",
+                                seckillId, activity.getStock(), target);
+                    } else {
+                        log.warn("秒杀数据库库存在对账期间已变化，放弃本轮校正: seckillId={}", seckillId);
+                    }
+                }
+            }
+            report.add(new StockReconciliationDTO(seckillId, redisStock, activity.getStock(), orderCount,
+                    pending, drift, repaired, LocalDateTime.now()));
+        }
+        lastReport = report;
+        return report;
+    }
+
+    public List<StockReconciliationDTO> getLastReport() {
+        return lastReport;
+    }
+}
@@ -0,0 +1,156 @@
+package com.xiaomimall.service;
+
+import com.xiaomimall.mapper.SeckillActivityMapper;
+import com.xiaomimall.util.DeltaAccumulator;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 秒杀库存写后合并
+ * Redis完成库存判定后，数据库库存的扣减先在内存中按活动累加，
+ * 每个周期每个活动只执行一次UPDATE，写库次数从O(成交数)降为O(周期数)。
+ * 节点异常退出丢失的增量由对账任务发现并修复；活动已删除的增量直接丢弃；
+ * 数据库库存不足而未能扣减的增量搁置，不再每个周期重试，等对账校正数据库库存后再落库。
+ * 每个周期把本节点未落库的数量发布到Redis（活动一个Hash，字段为节点），对账时计入其他节点的在途扣减。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SeckillStockWriteBehind {
+
+    private static final String PENDING_KEY_PREFIX = "seckill:stock:pending:";
+    private static final long PENDING_KEY_EXPIRE_HOURS = 24;
+
+    private final SeckillActivityMapper seckillActivityMapper;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    @Value("${seckill.write-behind.pending-ttl-ms:10000}")// 节点发布的未落库数量超过该时长未刷新视为节点已退出（毫秒）
+    private long pendingTtlMillis;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final DeltaAccumulator pendingDecrements = new DeltaAccumulator();
+    // 因数据库库存不足而搁置的扣减
+    private final Map<Long, Long> parked = new ConcurrentHashMap<>();
+    // 上个周期发布过未落库数量的活动
+    private final Set<Long> published = ConcurrentHashMap.newKeySet();
+
+    // 记录一次库存扣减
+    public void record(Long seckillId, int quantity) {
+        pendingDecrements.add(seckillId, quantity);
+    }
+
+    // 本节点尚未落库的扣减数量（含搁置的）
+    public long pending(Long seckillId) {
+        return pendingDecrements.pending(seckillId) + parked.getOrDefault(seckillId, 0L);
+    }
+
+    // 其他节点发布的未落库扣减之和，超时未刷新的记录视为节点已退出并清除
+    public long otherNodesPending(Long seckillId) {
+        String key = PENDING_KEY_PREFIX + seckillId;
+        long now = System.currentTimeMillis();
+        long sum = 0;
+        for (Map.Entry<Object, Object> entry : stringRedisTemplate.opsForHash().entries(key).entrySet()) {
+            String node = (String) entry.getKey();
+            if (nodeId.equals(node)) {
+                continue;
+            }
+            String[] parts = ((String) entry.getValue()).split(":");
+            if (parts.length != 2 || now - Long.parseLong(parts[1]) > pendingTtlMillis) {
+                stringRedisTemplate.opsForHash().delete(key, node);
+                continue;
+            }
+            sum += Long.parseLong(parts[0]);
+        }
+        return sum;
+    }
+
+    // 数据库库存已足够扣减搁置的数量时（对账校正或人工修正后），放回累加器等待落库
+    public void unparkIfCovered(Long seckillId, int dbStock) {
+        Long quantity = parked.get(seckillId);
+        if (quantity != null && dbStock >= quantity && parked.remove(seckillId, quantity)) {
+            pendingDecrements.add(seckillId, quantity);
+            log.info("搁置的秒杀库存扣减重新落库: seckillId={}, quantity={}", seckillId, quantity);
+        }
+    }
+
+    // 活动删除后丢弃未落库的扣减
+    public void discard(Long seckillId) {
+        pendingDecrements.remove(seckillId);
+        parked.remove(seckillId);
+        published.remove(seckillId);
+        stringRedisTemplate.delete(PENDING_KEY_PREFIX + seckillId);
+    }
+
+    // 定时把累计的扣减合并写入数据库
+    @Scheduled(fixedDelayString = "${seckill.write-behind.flush-interval:1000}")
+    public void flush() {
+        Map<Long, Long> drained = pendingDecrements.drain();
+        drained.forEach((seckillId, quantity) -> {
+            try {
+                int updateCount = seckillActivityMapper.reduceStock(seckillId, quantity.intValue());
+                if (updateCount == 0) {
+                    park(seckillId, quantity);
+                }
+            } catch (Exception e) {
+                // 写库异常，放回累加器下个周期重试
+                pendingDecrements.add(seckillId, quantity);
+                log.warn("秒杀库存合并扣减异常，下个周期重试: seckillId={}, quantity={}", seckillId, quantity, e);
+            }
+        });
+        publishPending(drained.keySet());
+    }
+
+    // 应用关闭前落库剩余的扣减
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    // 扣减未生效：活动已删除则丢弃，否则说明两边已出现偏差，搁置等待对账
+    private void park(Long seckillId, Long quantity) {
+        if (seckillActivityMapper.findById(seckillId) == null) {
+            log.warn("秒杀活动已删除，丢弃未落库的扣减: seckillId={}, quantity={}", seckillId, quantity);
+            return;
+        }
+        parked.merge(seckillId, quantity, Long::sum);
+        log.error("秒杀库存合并扣减失败，数据库库存不足，搁置等待对账校正: seckillId={}, quantity={}",
+                seckillId, quantity);
+    }
+
+    // 发布本节点各活动未落库的扣减数量，值为“数量:发布时间”，数量归零的删除
+    private void publishPending(Set<Long> flushed) {
+        Set<Long> seckillIds = new HashSet<>(flushed);
+        seckillIds.addAll(parked.keySet());
+        seckillIds.addAll(published);
+        long now = System.currentTimeMillis();
+        for (Long seckillId : seckillIds) {
+            String key = PENDING_KEY_PREFIX + seckillId;
+            try {
+                long pending = pending(seckillId);
+                if (pending == 0) {
+                    stringRedisTemplate.opsForHash().delete(key, nodeId);
+                    published.remove(seckillId);
+                } else {
+                    stringRedisTemplate.opsForHash().put(key, nodeId, pending + ":" + now);
+                    stringRedisTemplate.expire(key, PENDING_KEY_EXPIRE_HOURS, TimeUnit.HOURS);
+                    published.add(seckillId);
+                }
+            } catch (Exception e) {
+                log.warn("发布秒杀库存未落库数量失败: seckillId={}", seckillId, e);
+            }
+        }
+    }
+}
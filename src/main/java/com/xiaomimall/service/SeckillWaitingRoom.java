@@ -0,0 +1,176 @@
+package com.xiaomimall.service;
+
+import com.xiaomimall.dto.WaitingRoomStatusDTO;
+import com.xiaomimall.redis.RedisScriptRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 秒杀排队（虚拟等候室）
+ * 访客先领取排队号（Redis有序集合，分数为领号顺序），定时任务按剩余库存放行队首用户，
+ * 放行凭证写入另一个有序集合（分数为过期时间），秒杀接口只接受持有有效凭证的用户。
+ * 库存为0时自动关闭排队，库存回补后重新开放。Lua和数据库的峰值负载因此由放行速率决定。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SeckillWaitingRoom {
+
+    // 参与排队的活动集合
+    private static final String QUEUE_ACTIVITIES_KEY = "seckill:queue:activities";
+    private static final String QUEUE_PREFIX = "seckill:queue:";
+    private static final long QUEUE_EXPIRE_SECONDS = 86400;
+
+    private static final long RESULT_CLOSED = -1;
+    private static final long RESULT_ADMITTED = 0;
+    private static final long RESULT_NOT_QUEUED = -2;
+
+    // Lua脚本（resources/lua）
+    private static final String JOIN_SCRIPT = "waiting_room_join";
+    private static final String STATUS_SCRIPT = "waiting_room_status";
+    private static final String ADMIT_SCRIPT = "waiting_room_admit";
+    private static final String CONSUME_SCRIPT = "waiting_room_consume";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisScriptRegistry redisScriptRegistry;
+    private final SeckillStockManager seckillStockManager;
+
+    @Value("${seckill.waiting-room.enabled:false}")// 是否要求先排队再秒杀
+    private boolean enabled;
+
+    @Value("${seckill.waiting-room.admission-interval:200}")// 放行周期（毫秒）
+    private long admissionInterval;
+
+    @Value("${seckill.waiting-room.pass-ttl-ms:30000}")// 放行凭证有效期（毫秒）
+    private long passTtlMillis;
+
+    @Value("${seckill.waiting-room.admit-factor:2}")// 同时持有凭证的人数上限 = 剩余库存 * 放行系数
+    private int admitFactor;
+
+    @Value("${seckill.waiting-room.max-batch:500}")// 每个周期最多放行人数
+    private int maxBatch;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // 领取排队号
+    public WaitingRoomStatusDTO join(Long seckillId, Long userId) {
+        Long result = redisScriptRegistry.execute(JOIN_SCRIPT, queueKeys(seckillId),
+                userId.toString(), String.valueOf(System.currentTimeMillis()), String.valueOf(QUEUE_EXPIRE_SECONDS));
+        stringRedisTemplate.opsForSet().add(QUEUE_ACTIVITIES_KEY, seckillId.toString());
+        return toStatus(result == null ? RESULT_NOT_QUEUED : result);
+    }
+
+    // 查询排队状态（单次Lua调用，不访问数据库）
+    public WaitingRoomStatusDTO status(Long seckillId, Long userId) {
+        Long result = redisScriptRegistry.execute(STATUS_SCRIPT, queueKeys(seckillId),
+                userId.toString(), String.valueOf(System.currentTimeMillis()));
+        return toStatus(result == null ? RESULT_NOT_QUEUED : result);
+    }
+
+    // 使用放行凭证：持有有效凭证时原子地收回并返回true，并发请求中只有一个能用到同一凭证
+    public boolean tryConsumePass(Long seckillId, Long userId) {
+        Long result = redisScriptRegistry.execute(CONSUME_SCRIPT, List.of(admittedKey(seckillId)),
+                userId.toString(), String.valueOf(System.currentTimeMillis()));
+        return result != null && result == 1;
+    }
+
+    // 活动删除时清理排队数据
+    public void clear(Long seckillId) {
+        List<String> keys = queueKeys(seckillId);
+        stringRedisTemplate.delete(keys);
+        stringRedisTemplate.delete(keyOf(seckillId, "tick"));
+        stringRedisTemplate.opsForSet().remove(QUEUE_ACTIVITIES_KEY, seckillId.toString());
+    }
+
+    // 定时放行：各节点都会执行，由Lua中的周期锁保证每个周期只放行一次
+    @Scheduled(fixedDelayString = "${seckill.waiting-room.admission-interval:200}")
+    public void admit() {
+        if (!enabled) {
+            return;
+        }
+        Set<String> activityIds = stringRedisTemplate.opsForSet().members(QUEUE_ACTIVITIES_KEY);
+        if (activityIds == null) {
+            return;
+        }
+        for (String id : activityIds) {
+            try {
+                admit(Long.valueOf(id));
+            } catch (Exception e) {
+                log.warn("秒杀排队放行失败: seckillId={}", id, e);
+            }
+        }
+    }
+
+    private void admit(Long seckillId) {
+        Long remaining = seckillStockManager.remainingStock(seckillId);
+        String closedKey = keyOf(seckillId, "closed");
+        if (remaining == null) {
+            // 库存键已不存在（活动结束或被删除），停止跟踪
+            stringRedisTemplate.opsForSet().remove(QUEUE_ACTIVITIES_KEY, seckillId.toString());
+            return;
+        }
+        if (remaining <= 0) {
+            // 售罄：关闭排队并清空队列，排队中的用户查询时直接得到结果
+            if (Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(closedKey, "1"))) {
+                stringRedisTemplate.expire(closedKey, Duration.ofSeconds(QUEUE_EXPIRE_SECONDS));
+                stringRedisTemplate.delete(queueKey(seckillId));
+                log.info("秒杀库存已售罄，关闭排队: seckillId={}", seckillId);
+            }
+            return;
+        }
+        // 库存回补（回滚、补货）后重新开放
+        stringRedisTemplate.delete(closedKey);
+
+        long capacity = remaining * admitFactor;
+        redisScriptRegistry.execute(ADMIT_SCRIPT,
+                Arrays.asList(queueKey(seckillId), admittedKey(seckillId), closedKey, keyOf(seckillId, "tick")),
+                String.valueOf(System.currentTimeMillis()), String.valueOf(passTtlMillis),
+                String.valueOf(capacity), String.valueOf(maxBatch),
+                String.valueOf(Math.max(1, admissionInterval - 10)), String.valueOf(QUEUE_EXPIRE_SECONDS));
+    }
+
+    private WaitingRoomStatusDTO toStatus(long result) {
+        if (result == RESULT_CLOSED) {
+            return new WaitingRoomStatusDTO(WaitingRoomStatusDTO.CLOSED, 0L, 0L);
+        }
+        if (result == RESULT_ADMITTED) {
+            return new WaitingRoomStatusDTO(WaitingRoomStatusDTO.ADMITTED, 0L, 0L);
+        }
+        if (result == RESULT_NOT_QUEUED) {
+            return new WaitingRoomStatusDTO(WaitingRoomStatusDTO.NOT_QUEUED, 0L, 0L);
+        }
+        // 按每个周期最多放行maxBatch人估算等待时间，限定在1~5秒之间
+        long rounds = (result + maxBatch - 1) / maxBatch;
+        long suggested = Math.min(5000, Math.max(1000, rounds * admissionInterval));
+        return new WaitingRoomStatusDTO(WaitingRoomStatusDTO.WAITING, result, suggested);
+    }
+
+    // 同一活动的排队键使用相同哈希标签，保证Lua脚本的键落在同一槽位
+    private String keyOf(Long seckillId, String suffix) {
+        return QUEUE_PREFIX + "{" + seckillId + "}:" + suffix;
+    }
+
+    private String queueKey(Long seckillId) {
+        return keyOf(seckillId, "tickets");
+    }
+
+    private String admittedKey(Long seckillId) {
+        return keyOf(seckillId, "admitted");
+    }
+
+    private List<String> queueKeys(Long seckillId) {
+        return Arrays.asList(queueKey(seckillId), admittedKey(seckillId), keyOf(seckillId, "closed"),
+                keyOf(seckillId, "seq"));
+    }
+}
@@ -0,0 +1,137 @@
+package com.xiaomimall.service;
+
+import com.xiaomimall.entity.SeckillActivity;
+import com.xiaomimall.mapper.SeckillActivityMapper;
+import com.xiaomimall.redis.RedisScriptRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 秒杀预热调度
+ * 在活动开始前的一段时间内，把库存、活动元数据、商品信息加载到Redis和本地缓存，
+ * 并提前SCRIPT LOAD秒杀链路的Lua脚本，最后逐项校验，避免开场第一秒承担冷启动开销。
+ * 每轮都会重新校验，开场前Redis被清空或键过期也能自动补齐。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SeckillWarmUpScheduler {
+
+    private static final String SECKILL_ACTIVITY_PREFIX = "seckill:activity:";
+
+    private final SeckillActivityMapper seckillActivityMapper;
+    private final SeckillStockManager seckillStockManager;
+    private final SeckillActivityStateHolder activityStateHolder;
+    private final RedisScriptRegistry redisScriptRegistry;
+    private final ProductService productService;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    @Value("${seckill.warm-up.enabled:true}")
+    private boolean enabled;
+
+    @Value("${seckill.warm-up.lead-time-seconds:600}")// 活动开始前多久开始预热（秒）
+    private long leadTimeSeconds;
+
+    @Scheduled(initialDelayString = "${seckill.warm-up.initial-delay:5000}",
+            fixedDelayString = "${seckill.warm-up.check-interval:30000}")
+    public void warmUpUpcomingActivities() {
+        if (!enabled) {
+            return;
+        }
+        List<SeckillActivity> activities;
+        try {
+            activities = seckillActivityMapper.findUpcomingActivities();
+        } catch (Exception e) {
+            log.warn("查询即将开始的秒杀活动失败，跳过本轮预热", e);
+            return;
+        }
+
+        LocalDateTime deadline = LocalDateTime.now().plusSeconds(leadTimeSeconds);
+        List<SeckillActivity> due = new ArrayList<>();
+        for (SeckillActivity activity : activities) {
+            if (!activity.getStartTime().isAfter(deadline)) {
+                due.add(activity);
+            }
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+
+        // 脚本与活动无关，每轮加载一次即可（Redis重启后脚本缓存会丢失）
+        redisScriptRegistry.loadAll();
+
+        for (SeckillActivity activity : due) {
+            try {
+                warmUp(activity);
+                List<String> missing = verify(activity);
+                if (missing.isEmpty()) {
+                    log.info("秒杀活动预热完成: seckillId={}, startTime={}", activity.getId(), activity.getStartTime());
+                } else {
+                    log.warn("秒杀活动预热校验未通过，下轮重试: seckillId={}, missing={}", activity.getId(), missing);
+                }
+            } catch (Exception e) {
+                log.error("秒杀活动预热失败: seckillId={}", activity.getId(), e);
+            }
+        }
+    }
+
+    // 预热单个活动，所有步骤均为幂等操作
+    private void warmUp(SeckillActivity activity) {
+        Long seckillId = activity.getId();
+        long expireSeconds = Duration.between(LocalDateTime.now(), activity.getEndTime()).plusHours(24).getSeconds();
+
+        // 1. 库存：仅在Redis中缺失时从数据库加载，不覆盖已有库存
+        if (seckillStockManager.remainingStock(seckillId) == null) {
+            seckillStockManager.initStock(seckillId, activity.getStock(), expireSeconds);
+            log.info("秒杀库存已从数据库加载: seckillId={}, stock={}", seckillId, activity.getStock());
+        }
+
+        // 2. 活动元数据
+        String activityKey = SECKILL_ACTIVITY_PREFIX + seckillId;
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("productId", String.valueOf(activity.getProductId()));
+        metadata.put("seckillPrice", activity.getSeckillPrice().toPlainString());
+        metadata.put("startTime", activity.getStartTime().toString());
+        metadata.put("endTime", activity.getEndTime().toString());
+        metadata.put("stock", String.valueOf(activity.getStock()));
+        stringRedisTemplate.opsForHash().putAll(activityKey, metadata);
+        stringRedisTemplate.expire(activityKey, expireSeconds, TimeUnit.SECONDS);
+
+        // 3. 本地活动快照
+        activityStateHolder.preload(activity);
+
+        // 4. 商品详情（走商品缓存）
+        productService.getProductById(activity.getProductId());
+    }
+
+    // 校验预热结果，返回缺失项
+    private List<String> verify(SeckillActivity activity) {
+        List<String> missing = new ArrayList<>();
+        if (seckillStockManager.remainingStock(activity.getId()) == null) {
+            missing.add("stock");
+        }
+        if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(SECKILL_ACTIVITY_PREFIX + activity.getId()))) {
+            missing.add("activity");
+        }
+        if (!activityStateHolder.isLoaded(activity.getId())) {
+            missing.add("localSnapshot");
+        }
+        List<String> missingScripts = redisScriptRegistry.missingScripts();
+        if (!missingScripts.isEmpty()) {
+            missing.add("scripts" + missingScripts);
+        }
+        return missing;
+    }
+}
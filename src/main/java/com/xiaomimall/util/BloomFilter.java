@@ -0,0 +1,122 @@
+package com.xiaomimall.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁布隆过滤器（long型元素）
+ * 位下标与Redis位图一致：第n位对应字节n/8中从高位起的第n%8位，
+ * 因此可以直接对Redis执行SETBIT，也可以用GET取回的字节合并到本地。
+ */
+public class BloomFilter {
+
+    private final int numBits;
+    private final int numHashes;
+    private final AtomicLongArray words;
+
+    public BloomFilter(int numBits, int numHashes) {
+        if (numBits <= 0 || numHashes <= 0) {
+            throw new IllegalArgumentException("numBits and numHashes must be positive");
+        }
+        this.numBits = numBits;
+        this.numHashes = numHashes;
+        this.words = new AtomicLongArray((numBits + 63) >>> 6);
+    }
+
+    // 计算元素对应的全部位下标（双重哈希：h1 + i*h2）
+    public long[] positions(long value) {
+        long h1 = mix(value);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        long[] positions = new long[numHashes];
+        for (int i = 0; i < numHashes; i++) {
+            positions[i] = Math.floorMod(h1 + i * h2, (long) numBits);
+        }
+        return positions;
+    }
+
+    public void put(long value) {
+        for (long position : positions(value)) {
+            setBit(position);
+        }
+    }
+
+    // 返回false表示一定不存在，true表示可能存在
+    public boolean mightContain(long value) {
+        for (long position : positions(value)) {
+            if (!getBit(position)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 合并Redis位图（GET返回的原始字节）
+    public void merge(byte[] bitmap) {
+        int length = Math.min(bitmap.length, (numBits + 7) >>> 3);
+        for (int i = 0; i < length; i++) {
+            int b = bitmap[i] & 0xFF;
+            if (b == 0) {
+                continue;
+            }
+            for (int bit = 0; bit < 8; bit++) {
+                if ((b & (0x80 >>> bit)) != 0) {
+                    setBit((long) i * 8 + bit);
+                }
+            }
+        }
+    }
+
+    // 导出为Redis位图字节（与merge互逆），用于把本地构建的过滤器写入Redis
+    public byte[] toBytes() {
+        byte[] bitmap = new byte[(numBits + 7) >>> 3];
+        for (int index = 0; index < words.length(); index++) {
+            long word = words.get(index);
+            while (word != 0) {
+                long position = ((long) index << 6) + Long.numberOfTrailingZeros(word);
+                bitmap[(int) (position >>> 3)] |= (byte) (0x80 >>> (position & 7));
+                word &= word - 1;
+            }
+        }
+        return bitmap;
+    }
+
+    // 按预计元素个数和误判率计算位数：m = -n * ln(p) / (ln2)^2
+    public static int optimalNumBits(long expectedInsertions, double fpp) {
+        return (int) Math.min(Integer.MAX_VALUE - 63,
+                Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2))));
+    }
+
+    // 哈希函数个数：k = m / n * ln2
+    public static int optimalNumHashes(long expectedInsertions, int numBits) {
+        return Math.max(1, (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+    }
+
+    public int getNumBits() {
+        return numBits;
+    }
+
+    private void setBit(long position) {
+        int index = (int) (position >>> 6);
+        long mask = 1L << (position & 63);
+        long current;
+        do {
+            current = words.get(index);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!words.compareAndSet(index, current, current | mask));
+    }
+
+    private boolean getBit(long position) {
+        return (words.get((int) (position >>> 6)) & (1L << (position & 63))) != 0;
+    }
+
+    // MurmurHash3 64位终结混合函数
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,44 @@
+package com.xiaomimall.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 增量累加器
+ * 按key在内存中累加增量，定时取出合并后的结果批量落库（写后合并）。
+ * 累加使用LongAdder，高并发写入下无锁竞争。
+ */
+public class DeltaAccumulator {
+
+    private final Map<Long, LongAdder> deltas = new ConcurrentHashMap<>();
+
+    // 累加增量
+    public void add(Long key, long delta) {
+        deltas.computeIfAbsent(key, k -> new LongAdder()).add(delta);
+    }
+
+    // 取出所有非零增量并清零
+    public Map<Long, Long> drain() {
+        Map<Long, Long> drained = new HashMap<>();
+        for (Map.Entry<Long, LongAdder> entry : deltas.entrySet()) {
+            long value = entry.getValue().sumThenReset();
+            if (value != 0) {
+                drained.put(entry.getKey(), value);
+            }
+        }
+        return drained;
+    }
+
+    // 查询尚未取出的增量
+    public long pending(Long key) {
+        LongAdder adder = deltas.get(key);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    // 移除不再使用的key（如活动已删除）
+    public void remove(Long key) {
+        deltas.remove(key);
+    }
+}
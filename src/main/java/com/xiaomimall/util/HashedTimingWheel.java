@@ -0,0 +1,101 @@
+package com.xiaomimall.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 哈希时间轮
+ * 按截止时间把任务散列到固定数量的槽位，每个刻度只检查一个槽位，
+ * 添加与到期均为O(1)，超过一圈的任务用剩余圈数表示。
+ * 添加可在任意线程调用（先进入无锁队列），推进由单一线程调用advance完成。
+ */
+public class HashedTimingWheel<T> {
+
+    private final long tickMillis;
+    private final List<LinkedList<Entry<T>>> buckets;
+    private final long startMillis;
+    private final Queue<Entry<T>> pendingAdds = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private long currentTick;
+
+    private static final class Entry<T> {
+        private final T task;
+        private final long deadline;
+        private long remainingRounds;
+
+        private Entry(T task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * @param tickMillis 每个刻度的时长（毫秒）
+     * @param wheelSize 槽位数
+     * @param startMillis 时间轮起点（毫秒时间戳）
+     */
+    public HashedTimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("刻度时长和槽位数必须大于0");
+        }
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new LinkedList<>());
+        }
+    }
+
+    // 添加任务，deadline已过的任务在下次推进时立即到期
+    public void add(T task, long deadlineMillis) {
+        pendingAdds.add(new Entry<>(task, deadlineMillis));
+        size.incrementAndGet();
+    }
+
+    // 推进到指定时间，返回期间到期的任务
+    public List<T> advance(long nowMillis) {
+        List<T> expired = new ArrayList<>();
+        transferPendingAdds(nowMillis, expired);
+        long targetTick = (nowMillis - startMillis) / tickMillis;
+        while (currentTick <= targetTick) {
+            Iterator<Entry<T>> iterator = buckets.get((int) (currentTick % buckets.size())).iterator();
+            while (iterator.hasNext()) {
+                Entry<T> entry = iterator.next();
+                if (entry.remainingRounds <= 0) {
+                    iterator.remove();
+                    expired.add(entry.task);
+                } else {
+                    entry.remainingRounds--;
+                }
+            }
+            currentTick++;
+        }
+        size.addAndGet(-expired.size());
+        return expired;
+    }
+
+    // 时间轮中尚未到期的任务数
+    public int size() {
+        return size.get();
+    }
+
+    // 已到期的新任务直接返回，不必等到下一个刻度
+    private void transferPendingAdds(long nowMillis, List<T> expired) {
+        Entry<T> entry;
+        while ((entry = pendingAdds.poll()) != null) {
+            if (entry.deadline <= nowMillis) {
+                expired.add(entry.task);
+                continue;
+            }
+            // 向上取整到刻度，保证不早于截止时间触发
+            long tick = Math.max(currentTick, Math.floorDiv(entry.deadline - startMillis + tickMillis - 1, tickMillis));
+            entry.remainingRounds = (tick - currentTick) / buckets.size();
+            buckets.get((int) (tick % buckets.size())).add(entry);
+        }
+    }
+}
@@ -1,27 +1,46 @@
 package com.xiaomimall.util;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Random;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
 
 /**
  * 订单号生成器
- * 生成唯一的订单号
+ * 基于雪花ID生成全局唯一、按时间递增的编号，节点ID由NodeIdLease从Redis租用，租约失效后拒绝生成。
+ * 普通订单、秒杀订单和支付流水共用同一序列。
  */
+@Component
 public class OrderNoGenerator {
-    
+
+    private final SnowflakeIdGenerator generator;
+
+    public OrderNoGenerator(@Value("${id-generator.max-borrow-ms:5000}") long maxBorrowMillis) {
+        // 租到节点ID前使用0号节点，应用对外服务前租约已完成
+        this.generator = new SnowflakeIdGenerator(0, maxBorrowMillis);
+    }
+
     /**
      * 生成订单号
-     * 格式: yyyyMMddHHmmss + 6位随机数
+     * 格式: 雪花ID的十进制字符串（19位以内）
      */
-    public static String generateOrderNo() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMddHHmmss");
-        String dateStr = sdf.format(new Date());
-        
-        // 生成6位随机数
-        Random random = new Random();
-        int randomNum = random.nextInt(900000) + 100000;
-        
-        return dateStr + randomNum;
+    public String generateOrderNo() {
+        return Long.toString(generator.nextId());
+    }
+
+    // 生成支付流水号
+    public String generatePaymentNo() {
+        return Long.toString(generator.nextId());
+    }
+
+    public void setNodeId(int nodeId) {
+        generator.setNodeId(nodeId);
+    }
+
+    // 节点ID租约有效期，NodeIdLease每次续期成功后延长
+    public void setValidUntil(long validUntilMillis) {
+        generator.setValidUntil(validUntilMillis);
+    }
+
+    public int getNodeId() {
+        return generator.getNodeId();
     }
-}
\ No newline at end of file
+}
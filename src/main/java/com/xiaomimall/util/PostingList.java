@@ -0,0 +1,70 @@
+package com.xiaomimall.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * 压缩倒排列表
+ * 文档号严格递增追加，按与前一个文档号的差值做变长编码（每字节7位，最高位表示后续还有字节），
+ * 相邻文档号通常只占1字节。不支持删除，删除由调用方的存活位图过滤。
+ * 非线程安全，由调用方加锁。
+ */
+public class PostingList {
+
+    private byte[] data = new byte[4];
+    private int length;
+    private int size;
+    private int last = -1;
+
+    // 追加文档号，必须大于已有的最大文档号
+    public void add(int doc) {
+        if (doc <= last) {
+            throw new IllegalArgumentException("doc must be increasing: " + doc + " <= " + last);
+        }
+        int delta = doc - last;
+        if (length + 5 > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length << 1, length + 5));
+        }
+        while ((delta & ~0x7F) != 0) {
+            data[length++] = (byte) ((delta & 0x7F) | 0x80);
+            delta >>>= 7;
+        }
+        data[length++] = (byte) delta;
+        last = doc;
+        size++;
+    }
+
+    // 解码全部文档号并置位到target
+    public void orInto(BitSet target) {
+        int doc = -1;
+        int pos = 0;
+        while (pos < length) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            doc += delta;
+            target.set(doc);
+        }
+    }
+
+    // 批量构建完成后释放多余容量
+    public void trim() {
+        if (data.length > length) {
+            data = Arrays.copyOf(data, length);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // 编码后占用的字节数
+    public int bytes() {
+        return length;
+    }
+}
@@ -0,0 +1,144 @@
+package com.xiaomimall.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 搜索分词器（中日韩二元切分）
+ * 文本先做NFKC规范化（全角转半角）并转小写，再按字符类别切成连续片段：
+ * 中日韩文字片段索引每个单字和相邻两字（“小米手机” -> 小、米、手、机、小米、米手、手机），
+ * 英文字母和数字片段索引每个后缀（最多取前16个字符，“iphone” -> iphone、phone、hone…），其余字符作为分隔符；
+ * 两类片段直接相连时（中间没有分隔符）再索引交界处的两个字符（“小米14” -> 米1）。
+ * 查询时中文片段只取二元词（单字片段取单字），英文数字片段按前缀匹配后缀，相当于片段内的子串匹配（“phone”能找到“iphone”），
+ * 相连的片段同时要求命中交界词（“米14”要求“米”与“14”相连出现），全部命中才算匹配。
+ */
+public final class SearchTokenizer {
+
+    // 英文数字后缀的最大长度，更长的查询词截断后按前缀匹配
+    private static final int MAX_TERM_LENGTH = 16;
+
+    // 查询词，prefix为true表示按前缀匹配
+    public record Term(String text, boolean prefix) {
+    }
+
+    private SearchTokenizer() {
+    }
+
+    // 索引用分词，返回去重后的词
+    public static Set<String> indexTerms(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+        List<Run> runs = runs(normalize(text));
+        for (int r = 0; r < runs.size(); r++) {
+            Run run = runs.get(r);
+            int[] chars = run.text().codePoints().toArray();
+            if (run.cjk()) {
+                for (int i = 0; i < chars.length; i++) {
+                    terms.add(new String(chars, i, 1));
+                    if (i + 1 < chars.length) {
+                        terms.add(new String(chars, i, 2));
+                    }
+                }
+            } else {
+                for (int i = 0; i < chars.length; i++) {
+                    terms.add(new String(chars, i, Math.min(chars.length - i, MAX_TERM_LENGTH)));
+                }
+            }
+            if (r > 0 && run.joined()) {
+                terms.add(boundary(runs.get(r - 1), run));
+            }
+        }
+        return terms;
+    }
+
+    // 查询用分词，关键词中没有可索引字符时返回空列表
+    public static List<Term> queryTerms(String keyword) {
+        Set<Term> terms = new LinkedHashSet<>();
+        if (keyword == null || keyword.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Run> runs = runs(normalize(keyword));
+        for (int r = 0; r < runs.size(); r++) {
+            Run run = runs.get(r);
+            int[] chars = run.text().codePoints().toArray();
+            if (!run.cjk()) {
+                terms.add(new Term(new String(chars, 0, Math.min(chars.length, MAX_TERM_LENGTH)), true));
+            } else if (chars.length == 1) {
+                terms.add(new Term(run.text(), false));
+            } else {
+                for (int i = 0; i + 1 < chars.length; i++) {
+                    terms.add(new Term(new String(chars, i, 2), false));
+                }
+            }
+            if (r > 0 && run.joined()) {
+                terms.add(new Term(boundary(runs.get(r - 1), run), false));
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    // joined为true表示与前一个片段直接相连
+    private record Run(String text, boolean cjk, boolean joined) {
+    }
+
+    // 相连片段交界处的两个字符
+    private static String boundary(Run previous, Run next) {
+        String text = previous.text();
+        return new StringBuilder()
+                .appendCodePoint(text.codePointBefore(text.length()))
+                .appendCodePoint(next.text().codePointAt(0))
+                .toString();
+    }
+
+    private static String normalize(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    }
+
+    // 按字符类别切分为连续片段
+    private static List<Run> runs(String text) {
+        List<Run> runs = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean currentCjk = false;
+        // 当前片段是否紧接在前一个片段之后
+        boolean joined = false;
+        for (int i = 0; i < text.length(); ) {
+            int ch = text.codePointAt(i);
+            i += Character.charCount(ch);
+            boolean cjk = isCjk(ch);
+            if (!cjk && !Character.isLetterOrDigit(ch)) {
+                flush(runs, current, currentCjk, joined);
+                joined = false;
+                continue;
+            }
+            if (current.length() > 0 && cjk != currentCjk) {
+                flush(runs, current, currentCjk, joined);
+                joined = true;
+            }
+            currentCjk = cjk;
+            current.appendCodePoint(ch);
+        }
+        flush(runs, current, currentCjk, joined);
+        return runs;
+    }
+
+    private static void flush(List<Run> runs, StringBuilder current, boolean cjk, boolean joined) {
+        if (current.length() > 0) {
+            runs.add(new Run(current.toString(), cjk, joined));
+            current.setLength(0);
+        }
+    }
+
+    private static boolean isCjk(int ch) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(ch);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
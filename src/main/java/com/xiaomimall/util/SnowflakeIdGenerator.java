@@ -0,0 +1,107 @@
+package com.xiaomimall.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * 雪花ID生成器
+ * 64位ID = 41位毫秒时间（自定义纪元起） + 10位节点ID + 12位序列号，单节点每毫秒4096个。
+ * 时间与序列号打包在一个AtomicLong中，通过CAS推进，不加锁、不分配对象。
+ * 同一毫秒序列号用尽或时钟回拨时，继续沿用上次的逻辑时间向后借用；
+ * 领先系统时钟超过容忍值时等待时钟追上，回拨幅度超过两倍容忍值才拒绝生成，避免重复。
+ * 节点ID来自租约时可设置有效期，ID中的时间到达有效期后拒绝生成，直到续期成功。
+ */
+public class SnowflakeIdGenerator {
+
+    public static final int NODE_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIMESTAMP_SHIFT = NODE_BITS + SEQUENCE_BITS;
+
+    // 2024-01-01T00:00:00Z，41位时间可用到2093年
+    public static final long EPOCH_MILLIS = 1704067200000L;
+
+    private final LongSupplier clock;
+    private final long maxBorrowMillis;
+    private volatile long nodeBits;
+    // 节点ID有效期（毫秒时间戳），默认不限
+    private volatile long validUntilMillis = Long.MAX_VALUE;
+
+    // 逻辑时间（相对纪元） << 12 | 序列号
+    private final AtomicLong state = new AtomicLong();
+
+    /**
+     * @param nodeId 节点ID（0 ~ 1023）
+     * @param maxBorrowMillis 逻辑时间最多领先系统时钟多少毫秒（容忍时钟回拨和突发）
+     */
+    public SnowflakeIdGenerator(int nodeId, long maxBorrowMillis) {
+        this(nodeId, maxBorrowMillis, System::currentTimeMillis);
+    }
+
+    public SnowflakeIdGenerator(int nodeId, long maxBorrowMillis, LongSupplier clock) {
+        this.clock = clock;
+        this.maxBorrowMillis = maxBorrowMillis;
+        setNodeId(nodeId);
+    }
+
+    // 切换节点ID（节点租约重新分配后调用）
+    public void setNodeId(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("节点ID超出范围: " + nodeId);
+        }
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+    }
+
+    // 设置节点ID有效期，生成时间不早于该时间的ID将被拒绝
+    public void setValidUntil(long validUntilMillis) {
+        this.validUntilMillis = validUntilMillis;
+    }
+
+    public int getNodeId() {
+        return (int) (nodeBits >>> SEQUENCE_BITS);
+    }
+
+    public long nextId() {
+        while (true) {
+            long now = clock.getAsLong() - EPOCH_MILLIS;
+            long current = state.get();
+            long lastMillis = current >>> SEQUENCE_BITS;
+            long next;
+            if (now > lastMillis) {
+                next = now << SEQUENCE_BITS;
+            } else {
+                // 同一毫秒或时钟回拨：序列号+1，溢出时自然进位到下一毫秒
+                next = current + 1;
+                long excess = (next >>> SEQUENCE_BITS) - now - maxBorrowMillis;
+                if (excess > 0) {
+                    waitForClock(excess);
+                    continue;
+                }
+            }
+            long millis = next >>> SEQUENCE_BITS;
+            if (millis + EPOCH_MILLIS >= validUntilMillis) {
+                throw new IllegalStateException("节点ID租约已失效，暂停生成ID: nodeId=" + getNodeId());
+            }
+            if (state.compareAndSet(current, next)) {
+                return (millis << TIMESTAMP_SHIFT) | nodeBits | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    // 逻辑时间领先过多：短暂等待系统时钟追上；超出部分比容忍值还大，说明时钟大幅回拨，直接拒绝
+    private void waitForClock(long excessMillis) {
+        if (excessMillis > maxBorrowMillis) {
+            throw new IllegalStateException("时钟回拨过大，逻辑时间领先系统时钟 " + (excessMillis + maxBorrowMillis) + " 毫秒");
+        }
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(excessMillis));
+    }
+
+    // 从ID中解析生成时间（毫秒时间戳）
+    public static long timestampOf(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + EPOCH_MILLIS;
+    }
+}
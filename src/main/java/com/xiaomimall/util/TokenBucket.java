@@ -0,0 +1,48 @@
+package com.xiaomimall.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁令牌桶
+ * 采用GCRA（通用信元速率算法）实现：只维护一个“理论到达时间”，
+ * 每次获取令牌通过一次CAS推进，不加锁、不分配对象。
+ */
+public class TokenBucket {
+
+    private final long permitsPerSecond;
+    private final long intervalNanos;   // 产生一个令牌所需的时间
+    private final long burstNanos;      // 允许透支的时间（= 桶容量 × 间隔）
+    private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+
+    /**
+     * @param permitsPerSecond 每秒产生的令牌数
+     * @param capacity 桶容量（允许的突发请求数）
+     */
+    public TokenBucket(long permitsPerSecond, long capacity) {
+        if (permitsPerSecond <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("令牌速率和桶容量必须大于0");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.intervalNanos = Math.max(1, 1_000_000_000L / permitsPerSecond);
+        this.burstNanos = intervalNanos * capacity;
+    }
+
+    // 尝试获取一个令牌，获取失败立即返回false
+    public boolean tryAcquire() {
+        while (true) {
+            long now = System.nanoTime();
+            long tat = theoreticalArrival.get();
+            long next = Math.max(tat, now) + intervalNanos;
+            if (next - now > burstNanos) {
+                return false;
+            }
+            if (theoreticalArrival.compareAndSet(tat, next)) {
+                return true;
+            }
+        }
+    }
+
+    public long getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+}
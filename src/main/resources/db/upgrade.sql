@@ -0,0 +1,61 @@
+-- 数据库结构升级脚本（按需求顺序追加，已执行过的语句不要重复执行）
+
+-- 秒杀活动限流配置（为空时使用全局默认值）
+ALTER TABLE seckill_activities
+    ADD COLUMN user_rate_limit INT NULL COMMENT '每个用户每秒允许的请求数',
+    ADD COLUMN activity_rate_limit INT NULL COMMENT '整个活动每秒允许的请求数';
+
+-- 秒杀订单唯一约束：同一用户同一活动只能有一个订单（参与索引与Lua判重之外的最终兜底）
+ALTER TABLE seckill_orders
+    ADD UNIQUE KEY uk_user_seckill (user_id, seckill_id);
+
+-- 商品库存预占模式：开启后下单在Redis预占库存，由后台批量结算到products.stock
+ALTER TABLE products
+    ADD COLUMN stock_cache_enabled TINYINT(1) NOT NULL DEFAULT 0 COMMENT '是否启用Redis库存预占';
+
+-- 订单历史键集分页：按(created_at, id)倒序定位
+ALTER TABLE orders
+    ADD INDEX idx_user_created (user_id, created_at, id);
+
+-- 订单事件发件箱：与订单状态变更同事务写入，由中继按ID顺序投递到MQ
+CREATE TABLE IF NOT EXISTS order_outbox (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    order_id BIGINT NOT NULL COMMENT '订单ID，决定投递分区',
+    event_type VARCHAR(64) NOT NULL COMMENT '事件类型',
+    payload TEXT NOT NULL COMMENT '事件消息JSON',
+    status TINYINT NOT NULL DEFAULT 0 COMMENT '0-待投递 1-已投递',
+    attempts INT NOT NULL DEFAULT 0 COMMENT '投递失败次数',
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    sent_at DATETIME NULL,
+    INDEX idx_status_id (status, id),
+    INDEX idx_status_sent (status, sent_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='订单事件发件箱';
+
+-- 管理员订单导出：按下单时间范围流式扫描
+ALTER TABLE orders
+    ADD INDEX idx_created_at (created_at);
+
+-- 商品搜索键集分页：按(排序列, id)从游标位置继续扫描
+ALTER TABLE products
+    ADD INDEX idx_deleted_price (is_deleted, price, id),
+    ADD INDEX idx_deleted_sales (is_deleted, sales, id);
+
+-- 超时未支付订单兜底扫描：按状态和下单时间定位
+ALTER TABLE orders
+    ADD INDEX idx_status_created (status, created_at);
+
+-- 订单事件消费去重：与消费处理同一事务登记事件ID，重复投递的事件插入失败直接跳过
+CREATE TABLE IF NOT EXISTS order_event_consumed (
+    event_id VARCHAR(64) NOT NULL PRIMARY KEY COMMENT '事件ID',
+    consumed_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_consumed_at (consumed_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='订单事件消费记录';
+
+-- 普通商品库存结算流水：预占模式下下单（正数）和取消（负数）与订单同事务写入，任一节点批量结算到products后删除
+CREATE TABLE IF NOT EXISTS product_stock_journal (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    product_id BIGINT NOT NULL COMMENT '商品ID',
+    quantity INT NOT NULL COMMENT '待扣减数量，负数表示归还',
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_product_id (product_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='商品库存结算流水';
@@ -0,0 +1,12 @@
+-- 更新购物车商品数量（商品不在购物车中时不写入）
+-- KEYS[1] 购物车键  ARGV[1] 商品ID  ARGV[2] 数量
+-- 返回 0商品不存在 / 1更新成功
+local cartKey = KEYS[1]
+local productId = ARGV[1]
+local quantity = tonumber(ARGV[2])
+local exists = redis.call('HEXISTS', cartKey, productId)
+if exists == 0 then
+    return 0
+end
+redis.call('HSET', cartKey, productId, quantity)
+return 1
@@ -0,0 +1,7 @@
+-- 释放租约：只有持有者才能删除
+-- KEYS[1] 租约键  ARGV[1] 持有者标识
+-- 返回 1已释放 / 0租约已不属于当前持有者
+if redis.call('get', KEYS[1]) == ARGV[1] then
+    return redis.call('del', KEYS[1])
+end
+return 0
@@ -0,0 +1,8 @@
+-- 续期租约：只有持有者才能续期
+-- KEYS[1] 租约键  ARGV[1] 持有者标识  ARGV[2] 租约时长（毫秒）
+-- 返回 1续期成功 / 0租约已不属于当前持有者
+if redis.call('get', KEYS[1]) == ARGV[1] then
+    redis.call('pexpire', KEYS[1], ARGV[2])
+    return 1
+end
+return 0
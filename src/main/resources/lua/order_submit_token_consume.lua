@@ -0,0 +1,16 @@
+-- 消费下单令牌：NEW -> PENDING 原子切换，保证同一令牌只有一个请求执行下单事务
+-- 处理中状态带本次请求的标识（PENDING:标识），回滚时只恢复仍由本次请求持有的令牌
+-- KEYS[1] 令牌键  ARGV[1] 处理中状态的过期时间（毫秒）  ARGV[2] 本次请求标识
+-- 返回 {0}令牌无效或已过期 / {1}消费成功 / {2}首个请求仍在处理 / {3, 订单ID}已成功下单
+local state = redis.call('get', KEYS[1])
+if not state then
+    return {'0'}
+end
+if state == 'NEW' then
+    redis.call('set', KEYS[1], 'PENDING:' .. ARGV[2], 'PX', ARGV[1])
+    return {'1'}
+end
+if string.sub(state, 1, 7) == 'PENDING' then
+    return {'2'}
+end
+return {'3', state}
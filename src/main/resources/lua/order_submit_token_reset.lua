@@ -0,0 +1,9 @@
+-- 恢复下单令牌：只有令牌仍处于本次请求设置的处理中状态时才恢复为NEW
+-- 处理中状态已过期或已被其他结果覆盖时不做任何修改
+-- KEYS[1] 令牌键  ARGV[1] 本次请求设置的处理中状态  ARGV[2] 令牌有效期（毫秒）
+-- 返回 1已恢复 / 0未修改
+if redis.call('get', KEYS[1]) == ARGV[1] then
+    redis.call('set', KEYS[1], 'NEW', 'PX', ARGV[2])
+    return 1
+end
+return 0
@@ -0,0 +1,21 @@
+-- 认领到期的订单超时任务
+-- KEYS[1] 待处理ZSET（member=订单ID，score=截止时间）  KEYS[2] 处理中ZSET（score=租约到期时间）
+-- ARGV[1] 当前时间  ARGV[2] 认领截止时间上限（当前时间+预读窗口）  ARGV[3] 最多认领条数  ARGV[4] 租约时长（毫秒）
+-- 返回 {订单ID1, 截止时间1, 订单ID2, 截止时间2, ...}
+local now = tonumber(ARGV[1])
+
+-- 租约过期的任务（认领节点宕机或处理失败）放回待处理队列，立即到期
+-- 每次最多回收ARGV[3]条，避免大量节点同时宕机后单次脚本执行过久阻塞Redis
+local expired = redis.call('zrangebyscore', KEYS[2], '-inf', now, 'LIMIT', 0, tonumber(ARGV[3]))
+for _, member in ipairs(expired) do
+    redis.call('zadd', KEYS[1], now, member)
+    redis.call('zrem', KEYS[2], member)
+end
+
+local claimed = redis.call('zrangebyscore', KEYS[1], '-inf', ARGV[2], 'WITHSCORES', 'LIMIT', 0, tonumber(ARGV[3]))
+local lease = tonumber(ARGV[4])
+for i = 1, #claimed, 2 do
+    redis.call('zadd', KEYS[2], tonumber(claimed[i + 1]) + lease, claimed[i])
+    redis.call('zrem', KEYS[1], claimed[i])
+end
+return claimed
@@ -0,0 +1,7 @@
+-- 普通商品校正库存：按对账偏差调整已加载的库存键
+-- KEYS[1] 库存键  ARGV[1] 调整量
+-- 返回调整后的库存，键不存在时返回nil（下次预占从数据库重新加载）
+if redis.call('exists', KEYS[1]) == 0 then
+    return false
+end
+return redis.call('incrby', KEYS[1], ARGV[1])
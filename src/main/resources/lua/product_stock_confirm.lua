@@ -0,0 +1,16 @@
+-- 普通商品确认预占：订单事务提交后（结算流水已落库）减去在途数量并删除登记
+-- KEYS[1] 在途数量哈希  KEYS[2] 预占登记哈希  KEYS[3] 预占时间ZSET
+-- ARGV[1] 订单号
+-- 返回 1已确认 / 0预占已处理过
+local entry = redis.call('hget', KEYS[2], ARGV[1])
+if not entry then
+    return 0
+end
+for productId, quantity in string.gmatch(entry, '(%d+):(%d+)') do
+    if redis.call('hincrby', KEYS[1], productId, -tonumber(quantity)) <= 0 then
+        redis.call('hdel', KEYS[1], productId)
+    end
+end
+redis.call('hdel', KEYS[2], ARGV[1])
+redis.call('zrem', KEYS[3], ARGV[1])
+return 1
@@ -0,0 +1,9 @@
+-- 普通商品加载库存键：键不存在时写入并递增加载代数
+-- KEYS[1] 库存键  KEYS[2] 加载代数哈希
+-- ARGV[1] 库存  ARGV[2] 商品ID
+-- 返回 1已加载 / 0键已存在
+if redis.call('setnx', KEYS[1], ARGV[1]) == 0 then
+    return 0
+end
+redis.call('hincrby', KEYS[2], ARGV[2], 1)
+return 1
@@ -0,0 +1,22 @@
+-- 普通商品撤销预占：订单事务回滚（或对账确认订单不存在）时归还库存并减去在途数量
+-- 只有登记仍在时才执行，确认过或已撤销的预占不会重复归还；库存键不存在时下次从数据库重新加载即可
+-- KEYS[i] 第i个商品的库存键（i = 1..n）  KEYS[n+1] 在途数量哈希  KEYS[n+2] 预占登记哈希  KEYS[n+3] 预占时间ZSET
+-- ARGV[i] 第i个商品的数量  ARGV[n+i] 第i个商品ID  ARGV[2n+1] 订单号
+-- 返回实际归还的键数，预占已处理过时返回-1
+local n = #KEYS - 3
+if redis.call('hdel', KEYS[n + 2], ARGV[2 * n + 1]) == 0 then
+    return -1
+end
+redis.call('zrem', KEYS[n + 3], ARGV[2 * n + 1])
+
+local released = 0
+for i = 1, n do
+    if redis.call('exists', KEYS[i]) == 1 then
+        redis.call('incrby', KEYS[i], ARGV[i])
+        released = released + 1
+    end
+    if redis.call('hincrby', KEYS[n + 1], ARGV[n + i], -tonumber(ARGV[i])) <= 0 then
+        redis.call('hdel', KEYS[n + 1], ARGV[n + i])
+    end
+end
+return released
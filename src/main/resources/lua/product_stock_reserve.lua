@@ -0,0 +1,25 @@
+-- 普通商品批量预占库存：所有商品库存都充足才一起扣减（全有或全无）
+-- 扣减的同时记入在途数量并按订单号登记预占，订单事务结束后确认或归还；节点中途退出时由对账任务按订单是否存在处理
+-- KEYS[i] 第i个商品的库存键（i = 1..n）  KEYS[n+1] 在途数量哈希  KEYS[n+2] 预占登记哈希  KEYS[n+3] 预占时间ZSET
+-- ARGV[i] 第i个商品的购买数量  ARGV[n+i] 第i个商品ID  ARGV[2n+1] 订单号  ARGV[2n+2] 当前时间（毫秒）
+-- 返回 0成功 / -i 第i个库存键未加载 / i 第i个商品库存不足
+local n = #KEYS - 3
+for i = 1, n do
+    local stock = redis.call('get', KEYS[i])
+    if not stock then
+        return -i
+    end
+    if tonumber(stock) < tonumber(ARGV[i]) then
+        return i
+    end
+end
+
+local entries = {}
+for i = 1, n do
+    redis.call('decrby', KEYS[i], ARGV[i])
+    redis.call('hincrby', KEYS[n + 1], ARGV[n + i], ARGV[i])
+    entries[i] = ARGV[n + i] .. ':' .. ARGV[i]
+end
+redis.call('hset', KEYS[n + 2], ARGV[2 * n + 1], table.concat(entries, ','))
+redis.call('zadd', KEYS[n + 3], ARGV[2 * n + 2], ARGV[2 * n + 1])
+return 0
@@ -0,0 +1,15 @@
+-- 普通商品归还库存：订单取消事务提交后（归还流水已落库）加回Redis库存
+-- 只归还到取消前就已加载的库存键：加载代数变化说明键在此期间按数据库重新加载过，已包含本次归还
+-- KEYS[i] 第i个商品的库存键（i = 1..n）  KEYS[n+1] 加载代数哈希
+-- ARGV[i] 第i个商品的归还数量  ARGV[n+i] 第i个商品ID  ARGV[2n+i] 取消前读到的加载代数
+-- 返回实际归还的键数
+local n = #KEYS - 1
+local released = 0
+for i = 1, n do
+    local generation = redis.call('hget', KEYS[n + 1], ARGV[n + i]) or '0'
+    if generation == ARGV[2 * n + i] and redis.call('exists', KEYS[i]) == 1 then
+        redis.call('incrby', KEYS[i], ARGV[i])
+        released = released + 1
+    end
+end
+return released
@@ -0,0 +1,11 @@
+-- 普通商品库存快照：同一时刻读取各商品的Redis库存与在途数量（库存对账）
+-- KEYS[i] 第i个商品的库存键（i = 1..n）  KEYS[n+1] 在途数量哈希
+-- ARGV[i] 第i个商品ID
+-- 返回 {库存1, 在途1, 库存2, 在途2, ...}，库存键未加载时库存为空串
+local n = #KEYS - 1
+local result = {}
+for i = 1, n do
+    result[2 * i - 1] = redis.call('get', KEYS[i]) or ''
+    result[2 * i] = redis.call('hget', KEYS[n + 1], ARGV[i]) or '0'
+end
+return result
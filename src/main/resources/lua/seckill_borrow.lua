@@ -0,0 +1,9 @@
+-- 分片借库存：从KEYS[1]借出一半剩余库存（至少补足本次缺口），返回借出数量
+-- ARGV[1] 本次缺口
+local stock = tonumber(redis.call('get', KEYS[1]) or '0')
+if stock <= 0 then
+    return 0
+end
+local take = math.min(stock, math.max(tonumber(ARGV[1]), math.floor(stock / 2)))
+redis.call('decrby', KEYS[1], take)
+return take
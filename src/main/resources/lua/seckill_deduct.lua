@@ -0,0 +1,25 @@
+-- 秒杀扣减：原子性校验库存、判重、扣减并记录用户（只访问用户所在分片的两个键，同一槽位）
+-- KEYS[1] 库存键  KEYS[2] 已购用户集合
+-- ARGV[1] 用户ID  ARGV[2] 购买数量
+-- 返回 -1库存未初始化 / 0库存不足 / 1成功 / 2重复参与
+local stockKey = KEYS[1]
+local userKey = KEYS[2]
+local userId = ARGV[1]
+local quantity = tonumber(ARGV[2])
+
+local stock = redis.call('get', stockKey)
+if not stock then
+    return -1
+end
+if tonumber(stock) < quantity then
+    return 0
+end
+
+if redis.call('sismember', userKey, userId) == 1 then
+    return 2
+end
+
+redis.call('decrby', stockKey, quantity)
+redis.call('sadd', userKey, userId)
+redis.call('expire', userKey, 86400) -- 24小时过期
+return 1
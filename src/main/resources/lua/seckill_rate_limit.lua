@@ -0,0 +1,30 @@
+-- 滑动窗口计数：当前窗口计数 + 上一窗口计数按剩余比例加权
+-- 用户与活动两个维度在同一脚本内判断，两者都通过才计数，被活动限流拒绝的请求不占用用户配额
+-- KEYS[1] 用户当前窗口键  KEYS[2] 用户上一窗口键  KEYS[3] 活动当前窗口键  KEYS[4] 活动上一窗口键
+-- ARGV[1] 上一窗口权重  ARGV[2] 用户限流值（0不限）  ARGV[3] 活动限流值（0不限）  ARGV[4] 键过期时间（毫秒）
+-- 返回 1放行 / 2用户限流 / 3活动限流
+local weight = tonumber(ARGV[1])
+local userLimit = tonumber(ARGV[2])
+local activityLimit = tonumber(ARGV[3])
+
+local function exceeded(currentKey, previousKey, limit)
+    local current = tonumber(redis.call('get', currentKey) or '0')
+    local previous = tonumber(redis.call('get', previousKey) or '0')
+    return previous * weight + current >= limit
+end
+
+if userLimit > 0 and exceeded(KEYS[1], KEYS[2], userLimit) then
+    return 2
+end
+if activityLimit > 0 and exceeded(KEYS[3], KEYS[4], activityLimit) then
+    return 3
+end
+if userLimit > 0 then
+    redis.call('incr', KEYS[1])
+    redis.call('pexpire', KEYS[1], ARGV[4])
+end
+if activityLimit > 0 then
+    redis.call('incr', KEYS[3])
+    redis.call('pexpire', KEYS[3], ARGV[4])
+end
+return 1
@@ -0,0 +1,22 @@
+-- 放行一批队首用户，每个周期只允许一个节点执行（SET NX PX）
+-- 放行数 = min(单批上限, 剩余库存 * 放行系数 - 未过期的凭证数)
+-- KEYS[1] 排队集合  KEYS[2] 放行凭证集合  KEYS[3] 关闭标记  KEYS[4] 周期锁
+-- ARGV[1] 当前时间（毫秒）  ARGV[2] 凭证有效期（毫秒）  ARGV[3] 凭证容量  ARGV[4] 单批上限
+-- ARGV[5] 周期锁时长（毫秒）  ARGV[6] 键过期时间（秒）
+-- 返回 -1本周期已执行 / 放行人数
+if not redis.call('set', KEYS[4], '1', 'NX', 'PX', ARGV[5]) then
+    return -1
+end
+local now = tonumber(ARGV[1])
+redis.call('zremrangebyscore', KEYS[2], '-inf', now)
+local budget = math.min(tonumber(ARGV[4]), tonumber(ARGV[3]) - redis.call('zcard', KEYS[2]))
+if budget <= 0 then
+    return 0
+end
+local popped = redis.call('zpopmin', KEYS[1], budget)
+local expireAt = now + tonumber(ARGV[2])
+for i = 1, #popped, 2 do
+    redis.call('zadd', KEYS[2], expireAt, popped[i])
+end
+redis.call('expire', KEYS[2], ARGV[6])
+return #popped / 2
@@ -0,0 +1,13 @@
+-- 领取并收回放行凭证：校验与删除在同一脚本内完成，同一凭证只能被一个请求使用
+-- KEYS[1] 放行凭证有序集合（分数为过期时间）
+-- ARGV[1] 用户ID  ARGV[2] 当前时间（毫秒）
+-- 返回 1凭证有效并已收回 / 0没有有效凭证（过期凭证同时清除）
+local pass = redis.call('zscore', KEYS[1], ARGV[1])
+if not pass then
+    return 0
+end
+redis.call('zrem', KEYS[1], ARGV[1])
+if tonumber(pass) > tonumber(ARGV[2]) then
+    return 1
+end
+return 0
@@ -0,0 +1,20 @@
+-- 领取排队号（已排队返回原位置）
+-- KEYS[1] 排队集合  KEYS[2] 放行凭证集合  KEYS[3] 关闭标记  KEYS[4] 排队序号
+-- ARGV[1] 用户ID  ARGV[2] 当前时间（毫秒）  ARGV[3] 键过期时间（秒）
+-- 返回 -1已关闭 / 0已放行 / >0排队位置
+if redis.call('exists', KEYS[3]) == 1 then
+    return -1
+end
+local pass = redis.call('zscore', KEYS[2], ARGV[1])
+if pass and tonumber(pass) > tonumber(ARGV[2]) then
+    return 0
+end
+local rank = redis.call('zrank', KEYS[1], ARGV[1])
+if not rank then
+    local seq = redis.call('incr', KEYS[4])
+    redis.call('zadd', KEYS[1], seq, ARGV[1])
+    redis.call('expire', KEYS[1], ARGV[3])
+    redis.call('expire', KEYS[4], ARGV[3])
+    rank = redis.call('zrank', KEYS[1], ARGV[1])
+end
+return rank + 1
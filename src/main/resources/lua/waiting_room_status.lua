@@ -0,0 +1,15 @@
+-- 查询排队状态
+-- KEYS同waiting_room_join.lua  ARGV[1] 用户ID  ARGV[2] 当前时间（毫秒）
+-- 返回 -1已关闭 / 0已放行 / -2未排队 / >0排队位置
+if redis.call('exists', KEYS[3]) == 1 then
+    return -1
+end
+local pass = redis.call('zscore', KEYS[2], ARGV[1])
+if pass and tonumber(pass) > tonumber(ARGV[2]) then
+    return 0
+end
+local rank = redis.call('zrank', KEYS[1], ARGV[1])
+if not rank then
+    return -2
+end
+return rank + 1
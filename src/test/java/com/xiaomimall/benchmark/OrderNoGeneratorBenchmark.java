@@ -0,0 +1,76 @@
+package com.xiaomimall.benchmark;
+
+import com.xiaomimall.util.OrderNoGenerator;
+import com.xiaomimall.util.SnowflakeIdGenerator;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单号生成基准测试（JMH）
+ * 对比旧实现（每次新建SimpleDateFormat和Random）与雪花ID的单线程/多线程吞吐，
+ * 运行：mvn test -Pbenchmark，结果写入 target/benchmark/order-no.json
+ */
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderNoGeneratorBenchmark {
+
+    private final OrderNoGenerator orderNoGenerator = new OrderNoGenerator(5000);
+    private final SnowflakeIdGenerator snowflake = new SnowflakeIdGenerator(1, 5000);
+
+    @Benchmark
+    public String legacyDateRandom() {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMddHHmmss");
+        return sdf.format(new Date()) + (new Random().nextInt(900000) + 100000);
+    }
+
+    @Benchmark
+    public long snowflakeId() {
+        return snowflake.nextId();
+    }
+
+    @Benchmark
+    public String snowflakeOrderNo() {
+        return orderNoGenerator.generateOrderNo();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long snowflakeIdContended() {
+        return snowflake.nextId();
+    }
+
+    @Test
+    void run() throws RunnerException {
+        new File("target/benchmark").mkdirs();
+        new Runner(new OptionsBuilder()
+                .include(OrderNoGeneratorBenchmark.class.getSimpleName())
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/benchmark/order-no.json")
+                .build()).run();
+    }
+}
@@ -0,0 +1,380 @@
+package com.xiaomimall.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.xiaomimall.dto.SeckillActivityDTO;
+import com.xiaomimall.entity.User;
+import com.xiaomimall.redis.RedisScriptRegistry;
+import com.xiaomimall.security.JwtTokenUtil;
+import com.xiaomimall.service.SeckillService;
+import com.xiaomimall.service.SeckillStockManager;
+import com.xiaomimall.service.SeckillStockWriteBehind;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 秒杀压测
+ * 使用H2（MySQL模式）和内嵌Redis启动完整应用，用虚拟线程模拟并发抢购 POST /api/seckill/{id}，
+ * 输出延迟分位数、吞吐量、超卖/少卖校验和数据库读写次数，报告写入 target/loadtest/ 下的JSON文件。
+ *
+ * 运行：mvn test -Ploadtest -Dloadtest.buyers=2000 -Dloadtest.stock=100 -Dloadtest.concurrency=500
+ */
+@Slf4j
+@Tag("loadtest")
+@ActiveProfiles("loadtest")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class SeckillLoadTest {
+
+    private static final int BUYERS = Integer.getInteger("loadtest.buyers", 2000);
+    private static final int STOCK = Integer.getInteger("loadtest.stock", 100);
+    private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 500);
+    private static final int ATTEMPTS_PER_BUYER = Integer.getInteger("loadtest.attempts-per-buyer", 2);
+    private static final boolean WARMUP = Boolean.parseBoolean(System.getProperty("loadtest.warmup", "true"));
+    private static final Path REPORT_DIR = Paths.get(System.getProperty("loadtest.report-dir", "target/loadtest"));
+
+    private static RedisServer redisServer;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private JwtTokenUtil jwtTokenUtil;
+    @Autowired
+    private SeckillService seckillService;
+    @Autowired
+    private SeckillStockManager seckillStockManager;
+    @Autowired
+    private SeckillStockWriteBehind seckillStockWriteBehind;
+    @Autowired
+    private SqlStatementCounter sqlStatementCounter;
+    @Autowired
+    private RedisScriptRegistry redisScriptRegistry;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TestConfiguration
+    static class LoadTestConfig {
+        @Bean
+        SqlStatementCounter sqlStatementCounter() {
+            return new SqlStatementCounter();
+        }
+
+        // 内嵌Redis随应用上下文关闭而停止；阶段最低，在Redis连接工厂等组件停止之后才停止，
+        // 避免Lettuce在Redis停止后不断重连
+        @Bean
+        SmartLifecycle embeddedRedisLifecycle() {
+            return new SmartLifecycle() {
+                private volatile boolean running;
+
+                @Override
+                public void start() {
+                    running = true;
+                }
+
+                @Override
+                public void stop() {
+                    running = false;
+                    try {
+                        redisServer.stop();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+
+                @Override
+                public boolean isRunning() {
+                    return running;
+                }
+
+                @Override
+                public int getPhase() {
+                    return Integer.MIN_VALUE;
+                }
+            };
+        }
+    }
+
+    @DynamicPropertySource
+    static void redisProperties(DynamicPropertyRegistry registry) throws IOException {
+        int redisPort = freePort();
+        redisServer = new RedisServer(redisPort);
+        redisServer.start();
+        registry.add("spring.data.redis.port", () -> redisPort);
+    }
+
+    @Test
+    void seckillUnderLoad() throws Exception {
+        // 1. 准备数据：商品、用户、进行中的秒杀活动
+        Long productId = insertProduct();
+        List<User> buyers = insertBuyers(BUYERS);
+        List<String> tokens = buyers.stream().map(jwtTokenUtil::generateToken).toList();
+        Long seckillId = createActivity(productId);
+
+        // 2. 预热（独立活动，结果不计入报告），随后并发抢购
+        if (WARMUP) {
+            fire(createActivity(productId), tokens, 1);
+        }
+        sqlStatementCounter.reset();
+        RunStats stats = fire(seckillId, tokens, ATTEMPTS_PER_BUYER);
+
+        // 3. 落库写后合并的扣减，再做一致性校验
+        seckillStockWriteBehind.flush();
+        int orderCount = queryInt("SELECT COUNT(*) FROM seckill_orders WHERE seckill_id = ?", seckillId);
+        int distinctBuyers = queryInt("SELECT COUNT(DISTINCT user_id) FROM seckill_orders WHERE seckill_id = ?", seckillId);
+        int dbStock = queryInt("SELECT stock FROM seckill_activities WHERE id = ?", seckillId);
+        Long redisStock = seckillStockManager.remainingStock(seckillId);
+
+        int recorded = stats.latencyIndex.get();
+        long[] sorted = Arrays.copyOf(stats.latencies, recorded);
+        Arrays.sort(sorted);
+        double seconds = stats.elapsedNanos / 1_000_000_000.0;
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", LocalDateTime.now().toString());
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("buyers", BUYERS);
+        config.put("stock", STOCK);
+        config.put("concurrency", CONCURRENCY);
+        config.put("attemptsPerBuyer", ATTEMPTS_PER_BUYER);
+        config.put("warmup", WARMUP);
+        report.put("config", config);
+
+        Map<String, Object> requests = new LinkedHashMap<>();
+        requests.put("total", recorded);
+        requests.put("succeeded", stats.succeeded.sum());
+        requests.put("rejected", stats.rejected.sum());
+        requests.put("throttled", stats.throttled.sum());
+        requests.put("errors", stats.errors.sum());
+        requests.put("firstError", stats.firstError.get());
+        requests.put("elapsedMs", stats.elapsedNanos / 1_000_000);
+        requests.put("throughputPerSecond", seconds > 0 ? recorded / seconds : 0);
+        report.put("requests", requests);
+
+        Map<String, Object> latencyMs = new LinkedHashMap<>();
+        latencyMs.put("p50", percentileMillis(sorted, 0.50));
+        latencyMs.put("p99", percentileMillis(sorted, 0.99));
+        latencyMs.put("p999", percentileMillis(sorted, 0.999));
+        latencyMs.put("max", sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1_000_000.0);
+        report.put("latencyMs", latencyMs);
+
+        Map<String, Object> consistency = new LinkedHashMap<>();
+        consistency.put("orders", orderCount);
+        consistency.put("distinctBuyers", distinctBuyers);
+        consistency.put("dbStock", dbStock);
+        consistency.put("redisStock", redisStock);
+        consistency.put("oversold", orderCount > STOCK);
+        consistency.put("undersold", BUYERS >= STOCK && orderCount < STOCK);
+        report.put("consistency", consistency);
+
+        Map<String, Object> database = new LinkedHashMap<>();
+        database.put("writes", sqlStatementCounter.totalWrites());
+        database.put("reads", sqlStatementCounter.totalReads());
+        database.put("writesByStatement", sqlStatementCounter.getWrites());
+        database.put("readsByStatement", sqlStatementCounter.getReads());
+        report.put("database", database);
+        report.put("redisScripts", redisScriptRegistry.getStats());
+
+        Path reportFile = writeReport(report);
+        log.info("秒杀压测报告: {}", reportFile.toAbsolutePath());
+
+        // 4. 校验：不超卖、不少卖、一人一单、三方库存一致
+        assertTrue(orderCount <= STOCK, "超卖: orders=" + orderCount);
+        if (BUYERS >= STOCK) {
+            assertEquals(STOCK, orderCount, "少卖");
+        }
+        assertEquals(orderCount, distinctBuyers, "同一用户存在多笔秒杀订单");
+        assertEquals(stats.succeeded.sum(), orderCount, "成功响应数与订单数不一致");
+        assertEquals(STOCK - orderCount, dbStock, "数据库库存与订单数不一致");
+        assertEquals(Long.valueOf(STOCK - orderCount), redisStock, "Redis库存与订单数不一致");
+    }
+
+    // 单轮压测结果
+    private static final class RunStats {
+        private final long[] latencies;
+        private final AtomicInteger latencyIndex = new AtomicInteger();
+        private final LongAdder succeeded = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder throttled = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final AtomicReference<String> firstError = new AtomicReference<>();
+        private long elapsedNanos;
+
+        private RunStats(int totalRequests) {
+            this.latencies = new long[totalRequests];
+        }
+    }
+
+    // 每个买家发起attempts次抢购，由虚拟线程并发执行，同时在途请求数不超过CONCURRENCY
+    private RunStats fire(Long seckillId, List<String> tokens, int attempts) throws InterruptedException {
+        RunStats stats = new RunStats(tokens.size() * attempts);
+        Semaphore inFlight = new Semaphore(CONCURRENCY);
+        URI uri = URI.create("http://localhost:" + port + "/api/seckill/" + seckillId + "?payment=ALIPAY");
+
+        try (ExecutorService clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clientExecutor)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+            long startNanos = System.nanoTime();
+            for (int attempt = 0; attempt < attempts; attempt++) {
+                for (String token : tokens) {
+                    executor.submit(() -> {
+                        HttpRequest request = HttpRequest.newBuilder(uri)
+                                .header("Authorization", "Bearer " + token)
+                                .POST(HttpRequest.BodyPublishers.noBody())
+                                .timeout(Duration.ofSeconds(30))
+                                .build();
+                        inFlight.acquireUninterruptibly();
+                        long begin = System.nanoTime();
+                        try {
+                            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                            stats.latencies[stats.latencyIndex.getAndIncrement()] = System.nanoTime() - begin;
+                            if (!classify(response, stats)) {
+                                stats.errors.increment();
+                                stats.firstError.compareAndSet(null, response.statusCode() + " " + response.body());
+                            }
+                        } catch (Exception e) {
+                            stats.latencies[stats.latencyIndex.getAndIncrement()] = System.nanoTime() - begin;
+                            stats.errors.increment();
+                            stats.firstError.compareAndSet(null, e.toString());
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                }
+            }
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.MINUTES);
+            stats.elapsedNanos = System.nanoTime() - startNanos;
+        }
+        return stats;
+    }
+
+    // 统计响应结果，非预期的响应返回false
+    private boolean classify(HttpResponse<String> response, RunStats stats) throws IOException {
+        if (response.statusCode() == 429) {
+            stats.throttled.increment();
+            return true;
+        }
+        if (response.statusCode() != 200) {
+            return false;
+        }
+        JsonNode data = objectMapper.readTree(response.body()).path("data");
+        if (data.path("success").asBoolean(false)) {
+            stats.succeeded.increment();
+        } else {
+            stats.rejected.increment();
+        }
+        return true;
+    }
+
+    private Long insertProduct() {
+        jdbcTemplate.update("INSERT INTO products (name, price, stock, status) VALUES (?, ?, ?, 1)",
+                "压测商品", new BigDecimal("999.00"), STOCK);
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM products", Long.class);
+    }
+
+    private List<User> insertBuyers(int count) {
+        String prefix = "loadtest_" + System.nanoTime() + "_";
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[]{prefix + i, "{noop}password"});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (username, password, role) VALUES (?, ?, 'USER')", rows);
+        return jdbcTemplate.query("SELECT id, username, role FROM users WHERE username LIKE ? ORDER BY id",
+                (rs, rowNum) -> {
+                    User user = new User();
+                    user.setId(rs.getLong("id"));
+                    user.setUsername(rs.getString("username"));
+                    user.setRole(rs.getString("role"));
+                    return user;
+                }, prefix + "%");
+    }
+
+    private Long createActivity(Long productId) {
+        SeckillActivityDTO dto = new SeckillActivityDTO();
+        dto.setProductId(productId);
+        dto.setSeckillPrice(new BigDecimal("1.00"));
+        dto.setStock(STOCK);
+        dto.setStartTime(LocalDateTime.now().minusMinutes(1));
+        dto.setEndTime(LocalDateTime.now().plusHours(1));
+        dto.setIsActive(true);
+        return seckillService.createSeckillActivity(dto).getId();
+    }
+
+    private int queryInt(String sql, Object... args) {
+        Integer value = jdbcTemplate.queryForObject(sql, Integer.class, args);
+        return value == null ? 0 : value;
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1_000_000.0;
+    }
+
+    private Path writeReport(Map<String, Object> report) throws IOException {
+        Files.createDirectories(REPORT_DIR);
+        String name = "seckill-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json";
+        Path file = REPORT_DIR.resolve(name);
+        objectMapper.copy().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), report);
+        return file;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.xiaomimall.loadtest;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MyBatis拦截器：按语句统计数据库读写次数（压测报告使用）
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class})
+})
+public class SqlStatementCounter implements Interceptor {
+
+    private final Map<String, LongAdder> writes = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> reads = new ConcurrentHashMap<>();
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+        Map<String, LongAdder> target = "update".equals(invocation.getMethod().getName()) ? writes : reads;
+        target.computeIfAbsent(shortId(statement.getId()), k -> new LongAdder()).increment();
+        return invocation.proceed();
+    }
+
+    public void reset() {
+        writes.clear();
+        reads.clear();
+    }
+
+    public Map<String, Long> getWrites() {
+        return snapshot(writes);
+    }
+
+    public Map<String, Long> getReads() {
+        return snapshot(reads);
+    }
+
+    public long totalWrites() {
+        return writes.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    public long totalReads() {
+        return reads.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    private static Map<String, Long> snapshot(Map<String, LongAdder> counters) {
+        Map<String, Long> result = new TreeMap<>();
+        counters.forEach((id, counter) -> result.put(id, counter.sum()));
+        return result;
+    }
+
+    // com.xiaomimall.mapper.SeckillOrderMapper.insert -> SeckillOrderMapper.insert
+    private static String shortId(String id) {
+        int method = id.lastIndexOf('.');
+        int type = method > 0 ? id.lastIndexOf('.', method - 1) : -1;
+        return type >= 0 ? id.substring(type + 1) : id;
+    }
+}
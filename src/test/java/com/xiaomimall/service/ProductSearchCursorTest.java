@@ -0,0 +1,65 @@
+package com.xiaomimall.service;
+
+import com.xiaomimall.util.CursorCodec;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 商品搜索游标测试
+ * 覆盖编解码往返、排序参数识别，以及非Base64、段数不符、未知排序、排序不一致、排序键与排序方式不匹配、
+ * 数字格式错误等无效游标都抛出IllegalArgumentException。
+ */
+class ProductSearchCursorTest {
+
+    @Test
+    void roundTrips() {
+        ProductSearchCursor price = new ProductSearchCursor(ProductSearchCursor.Sort.PRICE_ASC, new BigDecimal("19.90"), 42);
+        assertEquals(price, ProductSearchCursor.decode(price.encode(), ProductSearchCursor.Sort.PRICE_ASC));
+        ProductSearchCursor id = new ProductSearchCursor(ProductSearchCursor.Sort.ID_DESC, null, 7);
+        assertEquals(id, ProductSearchCursor.decode(id.encode(), ProductSearchCursor.Sort.ID_DESC));
+        assertArrayEquals(new String[]{"a", "", "b"}, CursorCodec.decode(CursorCodec.encode("a", "", "b"), 3));
+    }
+
+    @Test
+    void sortOfFallsBackToIdDesc() {
+        assertEquals(ProductSearchCursor.Sort.SALES_DESC, ProductSearchCursor.Sort.of("sales", "desc"));
+        assertEquals(ProductSearchCursor.Sort.PRICE_ASC, ProductSearchCursor.Sort.of("price", "asc"));
+        assertEquals(ProductSearchCursor.Sort.ID_DESC, ProductSearchCursor.Sort.of("price", "DESC"));
+        assertEquals(ProductSearchCursor.Sort.ID_DESC, ProductSearchCursor.Sort.of("stock", "asc"));
+        assertEquals(ProductSearchCursor.Sort.ID_DESC, ProductSearchCursor.Sort.of(null, null));
+    }
+
+    @Test
+    void codecRejectsMalformedInput() {
+        assertThrows(IllegalArgumentException.class, () -> CursorCodec.decode("not base64!", 3));
+        assertThrows(IllegalArgumentException.class, () -> CursorCodec.decode(CursorCodec.encode("a", "b"), 3));
+        assertThrows(IllegalArgumentException.class, () -> CursorCodec.decode(CursorCodec.encode("a", "b", "c", "d"), 3));
+    }
+
+    @Test
+    void decodeRejectsInvalidCursors() {
+        ProductSearchCursor.Sort sort = ProductSearchCursor.Sort.PRICE_DESC;
+        // 非Base64、段数不符
+        assertInvalid("%%%", sort);
+        assertInvalid(CursorCodec.encode("PRICE_DESC", "19.90"), sort);
+        // 未知排序、与本次查询排序不一致
+        assertInvalid(CursorCodec.encode("STOCK_DESC", "1", "1"), sort);
+        assertInvalid(CursorCodec.encode("PRICE_ASC", "19.90", "1"), sort);
+        // 排序键与排序方式不匹配
+        assertInvalid(CursorCodec.encode("PRICE_DESC", "", "1"), sort);
+        assertInvalid(CursorCodec.encode("ID_DESC", "5", "1"), ProductSearchCursor.Sort.ID_DESC);
+        // 数字格式错误
+        assertInvalid(CursorCodec.encode("PRICE_DESC", "abc", "1"), sort);
+        assertInvalid(CursorCodec.encode("PRICE_DESC", "19.90", "x"), sort);
+        assertInvalid(CursorCodec.encode("PRICE_DESC", "19.90", ""), sort);
+    }
+
+    private static void assertInvalid(String cursor, ProductSearchCursor.Sort sort) {
+        assertThrows(IllegalArgumentException.class, () -> ProductSearchCursor.decode(cursor, sort), cursor);
+    }
+}
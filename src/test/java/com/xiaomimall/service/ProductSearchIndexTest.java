@@ -0,0 +1,142 @@
+package com.xiaomimall.service;
+
+import com.xiaomimall.cache.CacheInvalidationBus;
+import com.xiaomimall.dto.ProductQueryDTO;
+import com.xiaomimall.entity.Product;
+import com.xiaomimall.mapper.ProductMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 商品搜索内存索引测试
+ * 以SQL的筛选和ORDER BY规则（排序列加商品ID同方向）为基准，覆盖各排序方式的结果顺序、
+ * 按页码分页、按游标逐页翻到底，以及关键词与LIKE子串匹配、价格区间筛选的结果一致。
+ */
+class ProductSearchIndexTest {
+
+    private static final String[] NAMES = {"小米14 Pro 手机", "Apple iPhone 15 保护壳", "Redmi 充电器", "米色外壳 14寸"};
+
+    private final List<Product> products = new ArrayList<>();
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        for (long id = 1; id <= 60; id++) {
+            Product product = new Product();
+            product.setId(id);
+            product.setName(NAMES[(int) (id % NAMES.length)]);
+            product.setDescription(id % 5 == 0 ? "PHONE配件" : "");
+            product.setCategoryId(id % 3);
+            // 价格和销量取值很少，保证大量相同排序键
+            product.setPrice(new BigDecimal((id * 7) % 5 + "9.90"));
+            product.setSales((int) (id % 4) * 100);
+            product.setStatus(1);
+            products.add(product);
+        }
+        ProductMapper productMapper = mock(ProductMapper.class);
+        when(productMapper.findSearchDocsAfter(anyLong(), anyInt())).thenReturn(products);
+        index = new ProductSearchIndex(productMapper, mock(CacheInvalidationBus.class));
+        ReflectionTestUtils.setField(index, "enabled", true);
+        index.rebuild();
+    }
+
+    @Test
+    void orderingMatchesSql() {
+        for (ProductSearchCursor.Sort sort : ProductSearchCursor.Sort.values()) {
+            ProductSearchIndex.Hits hits = index.search(new ProductQueryDTO(), sort, null, 0, 100);
+            assertEquals(sqlResult(sort, p -> true), hits.productIds(), sort.name());
+            assertEquals(products.size(), hits.total());
+            assertNull(hits.nextCursor());
+        }
+    }
+
+    @Test
+    void offsetPagesMatchSqlLimitOffset() {
+        for (ProductSearchCursor.Sort sort : ProductSearchCursor.Sort.values()) {
+            List<Long> expected = sqlResult(sort, p -> true);
+            for (int offset = 0; offset < expected.size(); offset += 7) {
+                ProductSearchIndex.Hits hits = index.search(new ProductQueryDTO(), sort, null, offset, 7);
+                assertEquals(expected.subList(offset, Math.min(offset + 7, expected.size())), hits.productIds(),
+                        sort.name() + " offset=" + offset);
+            }
+        }
+    }
+
+    @Test
+    void cursorPagingChainsToFullList() {
+        for (ProductSearchCursor.Sort sort : ProductSearchCursor.Sort.values()) {
+            List<Long> collected = new ArrayList<>();
+            ProductSearchCursor after = null;
+            for (int round = 0; round < 20; round++) {
+                ProductSearchIndex.Hits hits = index.search(new ProductQueryDTO(), sort, after, 0, 7);
+                collected.addAll(hits.productIds());
+                if (hits.nextCursor() == null) {
+                    break;
+                }
+                // 经过编码再解码，与客户端传回的游标一致
+                after = ProductSearchCursor.decode(hits.nextCursor(), sort);
+            }
+            assertEquals(sqlResult(sort, p -> true), collected, sort.name());
+        }
+    }
+
+    @Test
+    void keywordMatchesLikeSubstring() {
+        for (String keyword : List.of("phone", "米14", "14 pro", "小米", "外壳", "redmi")) {
+            ProductQueryDTO query = new ProductQueryDTO();
+            query.setKeyword(keyword);
+            ProductSearchIndex.Hits hits = index.search(query, ProductSearchCursor.Sort.ID_DESC, null, 0, 100);
+            assertNotNull(hits);
+            String lower = keyword.toLowerCase(Locale.ROOT);
+            assertEquals(sqlResult(ProductSearchCursor.Sort.ID_DESC,
+                    p -> p.getName().toLowerCase(Locale.ROOT).contains(lower)
+                            || p.getDescription().toLowerCase(Locale.ROOT).contains(lower)),
+                    hits.productIds(), keyword);
+        }
+    }
+
+    @Test
+    void priceAndCategoryFilterMatchSql() {
+        ProductQueryDTO query = new ProductQueryDTO();
+        query.setCategoryId(1L);
+        query.setMinPrice(new BigDecimal("19.9"));
+        query.setMaxPrice(new BigDecimal("39.90"));
+        ProductSearchIndex.Hits hits = index.search(query, ProductSearchCursor.Sort.PRICE_DESC, null, 0, 100);
+        assertEquals(sqlResult(ProductSearchCursor.Sort.PRICE_DESC, p -> p.getCategoryId() == 1
+                && p.getPrice().compareTo(query.getMinPrice()) >= 0
+                && p.getPrice().compareTo(query.getMaxPrice()) <= 0), hits.productIds());
+    }
+
+    // 按SQL语义筛选并排序：ORDER BY 排序列 方向, id 同方向；无排序列时 ORDER BY id DESC
+    private List<Long> sqlResult(ProductSearchCursor.Sort sort, Predicate<Product> where) {
+        Comparator<Product> order;
+        if (sort.getColumn() == null) {
+            order = Comparator.comparing(Product::getId);
+        } else if ("price".equals(sort.getColumn())) {
+            order = Comparator.comparing(Product::getPrice).thenComparing(Product::getId);
+        } else {
+            order = Comparator.comparing(Product::getSales).thenComparing(Product::getId);
+        }
+        if (sort.isDescending()) {
+            order = order.reversed();
+        }
+        return products.stream().filter(where).sorted(order).map(Product::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,101 @@
+package com.xiaomimall.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 布隆过滤器测试
+ * 覆盖无漏判、误判率、与Redis位图的位序（SETBIT/GET）一致，以及toBytes与merge互逆。
+ */
+class BloomFilterTest {
+
+    @Test
+    void insertedValuesAreAlwaysFound() {
+        BloomFilter filter = new BloomFilter(1 << 16, 5);
+        for (long value = 1; value <= 5000; value++) {
+            filter.put(value * 7919);
+        }
+        for (long value = 1; value <= 5000; value++) {
+            assertTrue(filter.mightContain(value * 7919));
+        }
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTarget() {
+        int expected = 10_000;
+        int numBits = BloomFilter.optimalNumBits(expected, 0.01);
+        BloomFilter filter = new BloomFilter(numBits, BloomFilter.optimalNumHashes(expected, numBits));
+        for (long value = 0; value < expected; value++) {
+            filter.put(value);
+        }
+        int falsePositives = 0;
+        for (long value = expected; value < expected + 100_000; value++) {
+            if (filter.mightContain(value)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, "falsePositives=" + falsePositives);
+    }
+
+    @Test
+    void bitOrderMatchesRedisBitmap() {
+        // Redis SETBIT：第n位对应字节n/8中从高位起的第n%8位
+        BloomFilter filter = new BloomFilter(16, 1);
+        filter.merge(new byte[]{(byte) 0x80, 0x40});
+        assertArrayEquals(new byte[]{(byte) 0x80, 0x40}, filter.toBytes());
+
+        BloomFilter source = new BloomFilter(1024, 3);
+        byte[] bitmap = new byte[1024 / 8];
+        for (long position : source.positions(42L)) {
+            bitmap[(int) (position / 8)] |= (byte) (0x80 >>> (position % 8));
+        }
+        BloomFilter fromRedis = new BloomFilter(1024, 3);
+        fromRedis.merge(bitmap);
+        assertTrue(fromRedis.mightContain(42L));
+        source.put(42L);
+        assertArrayEquals(bitmap, source.toBytes());
+    }
+
+    @Test
+    void toBytesAndMergeRoundTrip() {
+        // 位数不是8的整数倍，最后一个字节只用到部分位
+        BloomFilter original = new BloomFilter(1001, 4);
+        for (long value = 0; value < 200; value++) {
+            original.put(value * 31 + 5);
+        }
+        byte[] bitmap = original.toBytes();
+        assertEquals((1001 + 7) / 8, bitmap.length);
+
+        BloomFilter copy = new BloomFilter(1001, 4);
+        copy.merge(bitmap);
+        assertArrayEquals(bitmap, copy.toBytes());
+        for (long value = 0; value < 200; value++) {
+            assertTrue(copy.mightContain(value * 31 + 5));
+        }
+    }
+
+    @Test
+    void mergeIgnoresBytesBeyondFilterSize() {
+        BloomFilter filter = new BloomFilter(8, 1);
+        filter.merge(new byte[]{0x01, (byte) 0xFF, (byte) 0xFF});
+        assertArrayEquals(new byte[]{0x01}, filter.toBytes());
+    }
+
+    @Test
+    void emptyFilterContainsNothing() {
+        BloomFilter filter = new BloomFilter(4096, 5);
+        assertFalse(filter.mightContain(1L));
+        assertArrayEquals(new byte[4096 / 8], filter.toBytes());
+    }
+
+    @Test
+    void rejectsNonPositiveArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(8, 0));
+    }
+}
@@ -0,0 +1,83 @@
+package com.xiaomimall.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 增量累加器测试
+ * 覆盖按key合并、取出后清零、跳过零值，以及并发累加与取出交错时不丢增量。
+ */
+class DeltaAccumulatorTest {
+
+    @Test
+    void drainMergesPerKeyAndResets() {
+        DeltaAccumulator accumulator = new DeltaAccumulator();
+        accumulator.add(1L, 3);
+        accumulator.add(1L, 2);
+        accumulator.add(2L, 7);
+        assertEquals(5, accumulator.pending(1L));
+
+        assertEquals(Map.of(1L, 5L, 2L, 7L), accumulator.drain());
+        assertEquals(0, accumulator.pending(1L));
+        assertTrue(accumulator.drain().isEmpty());
+    }
+
+    @Test
+    void drainSkipsKeysThatCancelOut() {
+        DeltaAccumulator accumulator = new DeltaAccumulator();
+        accumulator.add(1L, 4);
+        accumulator.add(1L, -4);
+        accumulator.add(2L, -1);
+        assertEquals(Map.of(2L, -1L), accumulator.drain());
+    }
+
+    @Test
+    void removeDropsPendingDelta() {
+        DeltaAccumulator accumulator = new DeltaAccumulator();
+        accumulator.add(1L, 4);
+        accumulator.remove(1L);
+        assertEquals(0, accumulator.pending(1L));
+        assertTrue(accumulator.drain().isEmpty());
+    }
+
+    @Test
+    void concurrentAddsAreNotLostAcrossDrains() throws Exception {
+        DeltaAccumulator accumulator = new DeltaAccumulator();
+        int threads = 8;
+        int addsPerThread = 100_000;
+        AtomicLong drainedTotal = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                long key = t % 3;
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < addsPerThread; i++) {
+                        accumulator.add(key, 1);
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            // 写入期间不断取出，模拟定时落库
+            while (!executor.awaitTermination(1, TimeUnit.MILLISECONDS)) {
+                accumulator.drain().values().forEach(drainedTotal::addAndGet);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        accumulator.drain().values().forEach(drainedTotal::addAndGet);
+        assertEquals((long) threads * addsPerThread, drainedTotal.get());
+    }
+}
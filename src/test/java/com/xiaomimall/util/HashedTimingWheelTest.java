@@ -0,0 +1,77 @@
+package com.xiaomimall.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 哈希时间轮测试
+ * 覆盖不早于截止时间触发、超过一圈的剩余圈数、已过期及推进后才添加的任务，以及一次推进跨越多圈。
+ */
+class HashedTimingWheelTest {
+
+    // 10ms一个刻度，8个槽位，一圈80ms
+    private final HashedTimingWheel<String> wheel = new HashedTimingWheel<>(10, 8, 0);
+
+    @Test
+    void taskNeverFiresBeforeDeadline() {
+        wheel.add("a", 15);
+        assertTrue(wheel.advance(14).isEmpty());
+        // 截止时间向上取整到刻度20
+        assertTrue(wheel.advance(19).isEmpty());
+        assertEquals(List.of("a"), wheel.advance(20));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void taskBeyondOneRoundWaitsForRemainingRounds() {
+        // 刻度25与刻度1、9、17落在同一槽位，前三次经过时只减少圈数
+        wheel.add("far", 250);
+        wheel.add("near", 10);
+        for (long now = 0; now < 250; now += 10) {
+            List<String> expired = wheel.advance(now);
+            assertEquals(now == 10 ? List.of("near") : List.of(), expired, "now=" + now);
+        }
+        assertEquals(List.of("far"), wheel.advance(250));
+    }
+
+    @Test
+    void singleAdvanceAcrossRoundsExpiresEverythingDue() {
+        wheel.add("a", 250);
+        wheel.add("b", 500);
+        wheel.add("c", 1000);
+        assertEquals(List.of("a", "b"), wheel.advance(600));
+        assertEquals(1, wheel.size());
+        assertEquals(List.of("c"), wheel.advance(1000));
+    }
+
+    @Test
+    void pastDeadlineFiresOnNextAdvance() {
+        wheel.advance(300);
+        wheel.add("late", 100);
+        assertEquals(1, wheel.size());
+        assertEquals(List.of("late"), wheel.advance(300));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void taskAddedAfterAdvanceCountsRoundsFromCurrentTick() {
+        wheel.advance(300);
+        // 当前刻度31，刻度48与40、32同槽位
+        wheel.add("x", 480);
+        for (long now = 310; now < 480; now += 10) {
+            assertTrue(wheel.advance(now).isEmpty(), "now=" + now);
+        }
+        assertEquals(List.of("x"), wheel.advance(480));
+    }
+
+    @Test
+    void rejectsInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new HashedTimingWheel<String>(0, 8, 0));
+        assertThrows(IllegalArgumentException.class, () -> new HashedTimingWheel<String>(10, 0, 0));
+    }
+}
@@ -0,0 +1,79 @@
+package com.xiaomimall.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 压缩倒排列表测试
+ * 覆盖跨越多字节边界的差值编解码、相邻文档号的编码长度、扩容与trim后的解码，以及非递增追加的校验。
+ */
+class PostingListTest {
+
+    @Test
+    void decodesDeltasAcrossVarintBoundaries() {
+        // 差值分别为1、127、1、16383、1、2097151、1，覆盖1到3字节编码的上限
+        int[] docs = {0, 127, 128, 16_511, 16_512, 2_113_663, 2_113_664};
+        PostingList postings = new PostingList();
+        for (int doc : docs) {
+            postings.add(doc);
+        }
+        BitSet expected = new BitSet();
+        for (int doc : docs) {
+            expected.set(doc);
+        }
+        BitSet decoded = new BitSet();
+        postings.orInto(decoded);
+        assertEquals(expected, decoded);
+        assertEquals(docs.length, postings.size());
+        assertEquals(1 + 1 + 1 + 2 + 1 + 3 + 1, postings.bytes());
+    }
+
+    @Test
+    void largeDeltasTakeUpToFiveBytes() {
+        PostingList postings = new PostingList();
+        postings.add(268_435_454);
+        assertEquals(4, postings.bytes());
+        postings.add(Integer.MAX_VALUE);
+        assertEquals(4 + 5, postings.bytes());
+    }
+
+    @Test
+    void adjacentDocsTakeOneByteEach() {
+        PostingList postings = new PostingList();
+        for (int doc = 0; doc < 1000; doc++) {
+            postings.add(doc);
+        }
+        assertEquals(1000, postings.bytes());
+        postings.trim();
+        BitSet decoded = new BitSet();
+        postings.orInto(decoded);
+        assertEquals(1000, decoded.cardinality());
+        assertEquals(1000, decoded.length());
+    }
+
+    @Test
+    void orIntoKeepsExistingBits() {
+        PostingList postings = new PostingList();
+        postings.add(3);
+        postings.add(200);
+        BitSet target = new BitSet();
+        target.set(5);
+        postings.orInto(target);
+        assertTrue(target.get(3) && target.get(5) && target.get(200));
+        assertEquals(3, target.cardinality());
+    }
+
+    @Test
+    void rejectsNonIncreasingDocs() {
+        PostingList postings = new PostingList();
+        postings.add(10);
+        assertThrows(IllegalArgumentException.class, () -> postings.add(10));
+        assertThrows(IllegalArgumentException.class, () -> postings.add(9));
+        assertEquals(1, postings.size());
+    }
+}
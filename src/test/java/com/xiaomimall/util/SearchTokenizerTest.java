@@ -0,0 +1,84 @@
+package com.xiaomimall.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 搜索分词测试
+ * 覆盖中文单字和二元词、英文数字片段的后缀及长度上限、相连片段的交界词、全角与大小写规范化，
+ * 以及查询词能在索引词中按前缀命中与LIKE子串匹配一致的场景。
+ */
+class SearchTokenizerTest {
+
+    @Test
+    void cjkRunIndexesUnigramsAndBigrams() {
+        assertEquals(Set.of("小", "米", "手", "机", "小米", "米手", "手机"), SearchTokenizer.indexTerms("小米手机"));
+        assertEquals(List.of(new SearchTokenizer.Term("小米", false), new SearchTokenizer.Term("米手", false),
+                new SearchTokenizer.Term("手机", false)), SearchTokenizer.queryTerms("小米手机"));
+        assertEquals(List.of(new SearchTokenizer.Term("米", false)), SearchTokenizer.queryTerms("米"));
+    }
+
+    @Test
+    void alphanumericRunIndexesSuffixes() {
+        assertEquals(Set.of("iphone", "phone", "hone", "one", "ne", "e"), SearchTokenizer.indexTerms("iPhone"));
+        assertEquals(List.of(new SearchTokenizer.Term("phone", true)), SearchTokenizer.queryTerms("phone"));
+    }
+
+    @Test
+    void longRunsAreCappedAtSixteenChars() {
+        String alphabet = "abcdefghijklmnopqrstuvwxyz";
+        Set<String> terms = SearchTokenizer.indexTerms(alphabet);
+        assertEquals(alphabet.length(), terms.size());
+        assertTrue(terms.contains("abcdefghijklmnop"));
+        assertTrue(terms.contains("klmnopqrstuvwxyz"));
+        assertFalse(terms.contains(alphabet));
+        assertEquals(List.of(new SearchTokenizer.Term("abcdefghijklmnop", true)), SearchTokenizer.queryTerms(alphabet));
+        assertTrue(matches(alphabet, "defghijklmnopqrstu"));
+    }
+
+    @Test
+    void adjacentRunsShareBoundaryBigram() {
+        assertTrue(SearchTokenizer.indexTerms("小米14").contains("米1"));
+        assertFalse(SearchTokenizer.indexTerms("小米 14").contains("米1"));
+        assertEquals(List.of(new SearchTokenizer.Term("米", false), new SearchTokenizer.Term("14", true),
+                new SearchTokenizer.Term("米1", false)), SearchTokenizer.queryTerms("米14"));
+    }
+
+    @Test
+    void normalizesFullWidthAndCase() {
+        assertEquals(List.of(new SearchTokenizer.Term("phone", true)), SearchTokenizer.queryTerms("ＰＨＯＮＥ"));
+        assertEquals(SearchTokenizer.indexTerms("iphone"), SearchTokenizer.indexTerms("ｉＰｈｏｎｅ"));
+    }
+
+    @Test
+    void separatorsProduceNoTerms() {
+        assertTrue(SearchTokenizer.queryTerms(" -/ ").isEmpty());
+        assertTrue(SearchTokenizer.queryTerms(null).isEmpty());
+        assertTrue(SearchTokenizer.indexTerms("").isEmpty());
+    }
+
+    @Test
+    void matchesLikeSubstringSemantics() {
+        assertTrue(matches("Apple iPhone 15", "phone"));
+        assertTrue(matches("小米14 Pro", "米14"));
+        assertTrue(matches("小米14 Pro", "14 pro"));
+        assertTrue(matches("Redmi K70", "70"));
+        assertFalse(matches("米色外壳 14寸", "米14"));
+        assertFalse(matches("小米手机", "米机"));
+    }
+
+    // 与索引的匹配规则一致：每个查询词都在索引词中命中（前缀词按前缀）
+    private static boolean matches(String text, String keyword) {
+        Set<String> indexed = SearchTokenizer.indexTerms(text);
+        List<SearchTokenizer.Term> terms = SearchTokenizer.queryTerms(keyword);
+        return !terms.isEmpty() && terms.stream().allMatch(term -> term.prefix()
+                ? indexed.stream().anyMatch(t -> t.startsWith(term.text()))
+                : indexed.contains(term.text()));
+    }
+}
@@ -0,0 +1,109 @@
+package com.xiaomimall.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 雪花ID生成器测试
+ * 多线程并发生成校验全局唯一与单线程内递增，并覆盖序列号溢出与时钟回拨。
+ */
+class SnowflakeIdGeneratorTest {
+
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 250_000;
+
+    @Test
+    void concurrentIdsAreUniqueAndIncreasingPerThread() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7, 5000);
+        long[][] ids = new long[THREADS][IDS_PER_THREAD];
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                long[] out = ids[t];
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < out.length; i++) {
+                        out[i] = generator.nextId();
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long[] all = new long[THREADS * IDS_PER_THREAD];
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 1; i < IDS_PER_THREAD; i++) {
+                assertTrue(ids[t][i] > ids[t][i - 1], "同一线程内ID必须递增");
+            }
+            System.arraycopy(ids[t], 0, all, t * IDS_PER_THREAD, IDS_PER_THREAD);
+        }
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertTrue(all[i] != all[i - 1], "出现重复ID: " + all[i]);
+        }
+        assertEquals(7, (int) ((all[0] >>> SnowflakeIdGenerator.SEQUENCE_BITS) & SnowflakeIdGenerator.MAX_NODE_ID));
+    }
+
+    @Test
+    void sequenceOverflowBorrowsNextMillisecond() {
+        AtomicLong clock = new AtomicLong(SnowflakeIdGenerator.EPOCH_MILLIS + 1000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, 5000, clock::get);
+
+        long last = 0;
+        for (int i = 0; i < 3 * 4096; i++) {
+            long id = generator.nextId();
+            assertTrue(id > last);
+            last = id;
+        }
+        // 时钟未前进，逻辑时间借用了后面两毫秒
+        assertEquals(clock.get() + 2, SnowflakeIdGenerator.timestampOf(last));
+    }
+
+    @Test
+    void clockMovingBackwardsKeepsIdsIncreasingWithinTolerance() {
+        AtomicLong clock = new AtomicLong(SnowflakeIdGenerator.EPOCH_MILLIS + 10_000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, 100, clock::get);
+
+        long before = generator.nextId();
+        clock.addAndGet(-50);
+        long after = generator.nextId();
+        assertTrue(after > before, "时钟回拨后ID仍需递增");
+
+        clock.addAndGet(-300);
+        assertThrows(IllegalStateException.class, generator::nextId);
+
+        clock.addAndGet(400);
+        assertTrue(generator.nextId() > after);
+    }
+
+    @Test
+    void refusesIdsOnceNodeLeaseExpires() {
+        AtomicLong clock = new AtomicLong(SnowflakeIdGenerator.EPOCH_MILLIS + 10_000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, 100, clock::get);
+        generator.setValidUntil(clock.get() + 1000);
+
+        long before = generator.nextId();
+        clock.addAndGet(1000);
+        assertThrows(IllegalStateException.class, generator::nextId);
+
+        // 续期成功后恢复生成
+        generator.setValidUntil(clock.get() + 1000);
+        assertTrue(generator.nextId() > before);
+    }
+}
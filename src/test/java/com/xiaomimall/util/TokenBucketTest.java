@@ -0,0 +1,77 @@
+package com.xiaomimall.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 令牌桶测试
+ * 覆盖突发容量、按速率补充令牌，以及多线程争抢时不超发。
+ */
+class TokenBucketTest {
+
+    @Test
+    void burstIsLimitedToCapacity() {
+        // 每秒1个令牌，测试期间几乎不会补充
+        TokenBucket bucket = new TokenBucket(1, 10);
+        int acquired = 0;
+        for (int i = 0; i < 100; i++) {
+            if (bucket.tryAcquire()) {
+                acquired++;
+            }
+        }
+        assertEquals(10, acquired);
+    }
+
+    @Test
+    void permitsRefillAtConfiguredRate() throws Exception {
+        TokenBucket bucket = new TokenBucket(20, 1);
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+        TimeUnit.MILLISECONDS.sleep(80);
+        assertTrue(bucket.tryAcquire());
+    }
+
+    @Test
+    void concurrentAcquiresNeverExceedCapacity() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 100);
+        AtomicInteger acquired = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int t = 0; t < 8; t++) {
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 1000; i++) {
+                        if (bucket.tryAcquire()) {
+                            acquired.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        // 运行期间最多补充1个令牌
+        assertTrue(acquired.get() >= 100 && acquired.get() <= 101, "acquired=" + acquired.get());
+    }
+
+    @Test
+    void rejectsNonPositiveArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0));
+    }
+}